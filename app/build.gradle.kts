@@ -25,9 +25,19 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Input trace ring (TraceRing); call sites check this constant, so it compiles out when false
+        buildConfigField("boolean", "HID_TRACE", "false")
+    }
+
+    buildFeatures {
+        buildConfig = true
     }
 
     buildTypes {
+        debug {
+            buildConfigField("boolean", "HID_TRACE", "true")
+        }
         release {
             isMinifyEnabled = false
             proguardFiles(
@@ -48,6 +58,9 @@ android {
 }
 
 dependencies {
+    // Platform-independent HID logic
+    implementation(project(":hid-core"))
+
     // Core Android libraries
     implementation("androidx.appcompat:appcompat:1.6.1")
     implementation("androidx.constraintlayout:constraintlayout:2.1.4")
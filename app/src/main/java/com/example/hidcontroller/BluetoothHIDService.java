@@ -4,33 +4,73 @@ import android.annotation.SuppressLint;
 import android.app.Service;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothProfile;
-import android.bluetooth.BluetoothHidDevice;
-import android.bluetooth.BluetoothHidDeviceAppSdpSettings;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 
+import com.example.hidcontroller.core.HIDKeyCode;
+import com.example.hidcontroller.core.HidDescriptors;
+import com.example.hidcontroller.core.HidReports;
+import com.example.hidcontroller.core.HidTransport;
+import com.example.hidcontroller.core.KeyCombo;
+import com.example.hidcontroller.core.LatencyHistogram;
+import com.example.hidcontroller.core.LatencyStats;
+import com.example.hidcontroller.core.LinkCongestion;
+import com.example.hidcontroller.core.ReportSender;
+import com.example.hidcontroller.core.ReportSink;
+import com.example.hidcontroller.core.TextTyper;
+import com.example.hidcontroller.core.TraceRing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 @SuppressLint("MissingPermission")
 public class BluetoothHIDService extends Service {
     private static final String TAG = "BluetoothHIDService";
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothHidDevice hidDevice;
-    private BluetoothDevice connectedDevice;
-    private boolean isConnected = false;
-    private boolean isHIDRegistered = false;
+    @Nullable
+    private HidTransport transport;
+    private volatile BluetoothDevice connectedDevice;
+    private volatile boolean isConnected = false;
     private Handler handler = new Handler(Looper.getMainLooper());
     private static final byte MOUSE_BTN_LEFT = 0x01;
 
+    // Reused report buffer (UI thread only); the sender copies it on enqueue
+    private final byte[] mouseReport = new byte[HidReports.MOUSE_REPORT_LENGTH];
+    // Input events and sends, in place of per-event logs. Only exists when BuildConfig.HID_TRACE
+    // is set; every record() call site checks that constant, so release builds carry no tracing.
+    private static final int TRACE_CAPACITY = 8192;
+    @Nullable
+    private final TraceRing trace = BuildConfig.HID_TRACE ? new TraceRing(TRACE_CAPACITY) : null;
+
+    // All reports go through the sender thread so a slow sendReport() never blocks the UI
+    private final ReportSink transportSink = (reportId, report) -> {
+        HidTransport t = transport;
+        return t != null && t.sendReport(reportId, report);
+    };
+    private final ReportSender reportSender = new ReportSender(transportSink, runnable -> {
+        Thread t = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_DISPLAY);
+            runnable.run();
+        }, "HidReportSender");
+        t.setDaemon(true);
+        return t;
+    });
+
     public interface ConnectionCallback {
         void onConnected(BluetoothDevice device);
         void onError(@Nullable BluetoothDevice device, String message);
@@ -38,27 +78,8 @@ public class BluetoothHIDService extends Service {
 
     private ConnectionCallback currentCallback;
 
-    // ----- Profile listener -----
-    private final BluetoothProfile.ServiceListener hidProfileListener =
-            new BluetoothProfile.ServiceListener() {
-                @Override
-                public void onServiceConnected(int profile, BluetoothProfile proxy) {
-                    if (profile == BluetoothProfile.HID_DEVICE) {
-                        hidDevice = (BluetoothHidDevice) proxy;
-                        Log.d(TAG, "HID Device profile connected");
-                        registerHIDApp();
-                    }
-                }
-
-                @Override
-                public void onServiceDisconnected(int profile) {
-                    if (profile == BluetoothProfile.HID_DEVICE) {
-                        hidDevice = null;
-                        isHIDRegistered = false;
-                        Log.d(TAG, "HID Device profile disconnected");
-                    }
-                }
-            };
+    // Main thread only
+    private final List<LinkCongestion.Listener> congestionListeners = new ArrayList<>();
 
     // ----- Binder -----
     public class LocalBinder extends Binder {
@@ -73,13 +94,19 @@ public class BluetoothHIDService extends Service {
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "Service created");
+        if (BuildConfig.HID_TRACE) reportSender.setTrace(trace);
+        reportSender.setAutoTick(true);
+        reportSender.getCongestion().setListener(state -> handler.post(() -> {
+            Log.d(TAG, "Link congestion state=" + state);
+            for (LinkCongestion.Listener listener : congestionListeners) {
+                listener.onCongestionChanged(state);
+            }
+        }));
+        reportSender.start();
         bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         if (bluetoothAdapter != null) {
-            bluetoothAdapter.getProfileProxy(
-                    this,
-                    hidProfileListener,
-                    BluetoothProfile.HID_DEVICE
-            );
+            Executor executor = ContextCompat.getMainExecutor(this);
+            setTransport(new BluetoothHidTransport(this, bluetoothAdapter, executor));
         }
     }
 
@@ -95,107 +122,64 @@ public class BluetoothHIDService extends Service {
         return binder;
     }
 
-    // ----- Register HID App -----
-    private void registerHIDApp() {
-        if (hidDevice == null) {
-            Log.e(TAG, "Cannot register: hidDevice is null");
-            return;
-        }
+    // ----- Transport -----
+    /**
+     * Swap the link all reports go out on (Bluetooth by default) and register the HID descriptor with it.
+     */
+    public void setTransport(@Nullable HidTransport newTransport) {
+        HidTransport old = transport;
+        if (old != null) old.close();
+        isConnected = false;
 
-        if (isHIDRegistered) {
-            Log.d(TAG, "HID app already registered");
-            return;
+        transport = newTransport;
+        if (newTransport != null) {
+            newTransport.setCallback(transportCallback);
+            boolean started = newTransport.register(HidDescriptors.keyboardMouse());
+            Log.d(TAG, "register() started=" + started);
         }
+    }
 
-        try {
-            byte[] descriptor = getKeyboardMouseDescriptor();
-
-            BluetoothHidDeviceAppSdpSettings sdp = new BluetoothHidDeviceAppSdpSettings(
-                    "HID Controller",
-                    "Android HID Keyboard/Mouse",
-                    "HID Controller",
-                    (byte) 0x04,  // SUBCLASS_COMBO
-                    descriptor
-            );
-
-            Executor executor = ContextCompat.getMainExecutor(this);
-
-            boolean registered = hidDevice.registerApp(sdp, null, null, executor, hidCallback);
-            Log.d(TAG, "registerApp() returned: " + registered);
-            isHIDRegistered = registered;
+    // ----- HID transport callback (main thread) -----
+    private final HidTransport.Callback transportCallback = new HidTransport.Callback() {
+        @Override
+        public void onRegistrationChanged(boolean registered) {
+            Log.d(TAG, "HID app registered=" + registered);
+        }
 
-            if (!registered) {
-                Log.e(TAG, "Failed to register HID app");
+        @Override
+        public void onConnectionStateChanged(String address, int state) {
+            BluetoothDevice device = connectedDevice;
+            if (device == null || !address.equals(device.getAddress())) return;
+
+            if (state == HidTransport.STATE_CONNECTED) {
+                isConnected = true;
+                Log.d(TAG, "HID connected to " + device.getName());
+                if (currentCallback != null) currentCallback.onConnected(device);
+            } else if (state == HidTransport.STATE_DISCONNECTED) {
+                isConnected = false;
+                resetHostState();
+                Log.d(TAG, "HID disconnected from " + device.getName());
+                if (currentCallback != null) {
+                    currentCallback.onError(device, "Disconnected");
+                }
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error registering HID app: " + e.getMessage(), e);
         }
-    }
 
-    /**
-     * USB HID Descriptor for Keyboard + Mouse
-     * Report ID 1: Keyboard [Modifiers, Reserved, KeyCode1-6] = 8 bytes
-     * Report ID 2: Mouse [Buttons, X, Y, Wheel] = 5 bytes
-     */
-    private byte[] getKeyboardMouseDescriptor() {
-        return new byte[]{
-                // ===== Keyboard (Report ID 1) =====
-                (byte) 0x05, (byte) 0x01,        // Usage Page (Generic Desktop)
-                (byte) 0x09, (byte) 0x06,        // Usage (Keyboard)
-                (byte) 0xa1, (byte) 0x01,        // Collection (Application)
-                (byte) 0x85, (byte) 0x01,        // Report ID (1)
-                (byte) 0x05, (byte) 0x07,        // Usage Page (Keyboard/Keypad)
-                (byte) 0x19, (byte) 0xe0,        // Usage Minimum (Keyboard Left Control)
-                (byte) 0x29, (byte) 0xe7,        // Usage Maximum (Keyboard Right GUI)
-                (byte) 0x15, (byte) 0x00,        // Logical Minimum (0)
-                (byte) 0x25, (byte) 0x01,        // Logical Maximum (1)
-                (byte) 0x75, (byte) 0x01,        // Report Size (1 bit)
-                (byte) 0x95, (byte) 0x08,        // Report Count (8 = modifiers)
-                (byte) 0x81, (byte) 0x02,        // Input (Data, Variable, Absolute)
-                (byte) 0x95, (byte) 0x01,        // Report Count (1)
-                (byte) 0x75, (byte) 0x08,        // Report Size (8 bits)
-                (byte) 0x81, (byte) 0x01,        // Input (Constant) = reserved
-                (byte) 0x95, (byte) 0x06,        // Report Count (6 keys)
-                (byte) 0x75, (byte) 0x08,        // Report Size (8 bits each)
-                (byte) 0x15, (byte) 0x00,        // Logical Minimum (0)
-                (byte) 0x25, (byte) 0x65,        // Logical Maximum (101)
-                (byte) 0x05, (byte) 0x07,        // Usage Page (Keyboard/Keypad)
-                (byte) 0x19, (byte) 0x00,        // Usage Minimum
-                (byte) 0x29, (byte) 0x65,        // Usage Maximum
-                (byte) 0x81, (byte) 0x00,        // Input (Data, Array, Absolute)
-                (byte) 0xc0,                     // End Collection (Keyboard)
-
-                // ===== Mouse (Report ID 2) =====
-                (byte) 0x05, (byte) 0x01,        // Usage Page (Generic Desktop)
-                (byte) 0x09, (byte) 0x02,        // Usage (Mouse)
-                (byte) 0xa1, (byte) 0x01,        // Collection (Application)
-                (byte) 0x85, (byte) 0x02,        // Report ID (2)
-                (byte) 0x09, (byte) 0x01,        // Usage (Pointer)
-                (byte) 0xa1, (byte) 0x00,        // Collection (Physical)
-                (byte) 0x05, (byte) 0x09,        // Usage Page (Button)
-                (byte) 0x19, (byte) 0x01,        // Usage Minimum (Button 1)
-                (byte) 0x29, (byte) 0x03,        // Usage Maximum (Button 3)
-                (byte) 0x15, (byte) 0x00,        // Logical Minimum (0)
-                (byte) 0x25, (byte) 0x01,        // Logical Maximum (1)
-                (byte) 0x75, (byte) 0x01,        // Report Size (1 bit each)
-                (byte) 0x95, (byte) 0x03,        // Report Count (3 buttons)
-                (byte) 0x81, (byte) 0x02,        // Input (Data, Variable, Absolute)
-                (byte) 0x95, (byte) 0x01,        // Report Count (1)
-                (byte) 0x75, (byte) 0x05,        // Report Size (5 bits padding)
-                (byte) 0x81, (byte) 0x01,        // Input (Constant)
-                (byte) 0x05, (byte) 0x01,        // Usage Page (Generic Desktop)
-                (byte) 0x09, (byte) 0x30,        // Usage (X)
-                (byte) 0x09, (byte) 0x31,        // Usage (Y)
-                (byte) 0x09, (byte) 0x38,        // Usage (Wheel)
-                (byte) 0x15, (byte) 0x81,        // Logical Minimum (-127)
-                (byte) 0x25, (byte) 0x7f,        // Logical Maximum (127)
-                (byte) 0x75, (byte) 0x08,        // Report Size (8 bits each)
-                (byte) 0x95, (byte) 0x03,        // Report Count (3 = X, Y, Wheel)
-                (byte) 0x81, (byte) 0x06,        // Input (Data, Variable, Relative)
-                (byte) 0xc0,                     // End Collection (Physical)
-                (byte) 0xc0                      // End Collection (Mouse)
-        };
-    }
+        @Override
+        public void onGetReport(int type, int reportId, int bufferSize) {
+            // Keyboard: the held keys; mouse: no button held between reports
+            HidTransport t = transport;
+            if (t == null) return;
+            byte[] reply;
+            if (reportId == HidReports.KEYBOARD_REPORT_ID) {
+                reply = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+                reportSender.readKeyboardReport(reply);
+            } else {
+                reply = new byte[HidReports.MOUSE_REPORT_LENGTH];
+            }
+            t.replyReport(type, reportId, reply);
+        }
+    };
 
     // ----- Paired devices -----
     public BluetoothDevice[] getPairedDevices() {
@@ -217,42 +201,23 @@ public class BluetoothHIDService extends Service {
 
         connectedDevice = device;
 
-        if (hidDevice == null) {
+        HidTransport t = transport;
+        if (t == null) {
             Log.e(TAG, "HID profile not ready when trying to connect");
             if (currentCallback != null) currentCallback.onError(device, "HID profile not ready");
             return;
         }
 
-        if (!isHIDRegistered) {
+        if (!t.isRegistered()) {
             Log.e(TAG, "HID app not registered yet");
             if (currentCallback != null) currentCallback.onError(device, "HID not registered");
             return;
         }
 
-        boolean started = hidDevice.connect(device);
-        Log.d(TAG, "hidDevice.connect() started=" + started);
-    }
-
-    // ----- HID connection state callback -----
-    private final BluetoothHidDevice.Callback hidCallback =
-            new BluetoothHidDevice.Callback() {
-                @Override
-                public void onConnectionStateChanged(BluetoothDevice device, int state) {
-                    if (connectedDevice == null || !device.equals(connectedDevice)) return;
-
-                    if (state == BluetoothProfile.STATE_CONNECTED) {
-                        isConnected = true;
-                        Log.d(TAG, "HID connected to " + device.getName());
-                        if (currentCallback != null) currentCallback.onConnected(device);
-                    } else if (state == BluetoothProfile.STATE_DISCONNECTED) {
-                        isConnected = false;
-                        Log.d(TAG, "HID disconnected from " + device.getName());
-                        if (currentCallback != null) {
-                            currentCallback.onError(device, "Disconnected");
-                        }
-                    }
-                }
-            };
+        boolean started = t.connect(device.getAddress());
+        Log.d(TAG, "transport.connect() started=" + started);
+        if (!started && currentCallback != null) currentCallback.onError(device, "Connect failed");
+    }
 
     public boolean isConnected() {
         return isConnected;
@@ -265,12 +230,15 @@ public class BluetoothHIDService extends Service {
 
     public void disconnect() {
         Log.d(TAG, "Disconnecting from device");
-        if (hidDevice != null && connectedDevice != null) {
-            hidDevice.disconnect(connectedDevice);
+        HidTransport t = transport;
+        BluetoothDevice device = connectedDevice;
+        if (t != null && device != null) {
+            t.disconnect(device.getAddress());
         }
 
         isConnected = false;
         connectedDevice = null;
+        resetHostState();
     }
 
     // ===== KEYBOARD METHODS =====
@@ -279,7 +247,7 @@ public class BluetoothHIDService extends Service {
      * Sends PRESS report, waits 10ms, then RELEASE report
      */
     public void sendKeyPress(String key) {
-        if (!isConnected || connectedDevice == null || hidDevice == null) {
+        if (!isConnected) {
             Log.w(TAG, "sendKeyPress: not connected");
             return;
         }
@@ -290,24 +258,7 @@ public class BluetoothHIDService extends Service {
             return;
         }
 
-        // Build PRESS report: [modifiers(0), reserved, keyCode, 0, 0, 0, 0, 0]
-        byte[] reportPress = new byte[8];
-        reportPress[0] = 0x00;  // no modifiers
-        reportPress[1] = 0x00;  // reserved
-        reportPress[2] = (byte) hidCode;
-
-        Log.d(TAG, "sendKeyPress '" + key + "' code=0x" + String.format("%02X", hidCode) + " PRESS");
-        hidDevice.sendReport(connectedDevice, 1, reportPress);
-
-        // Use Handler.postDelayed() instead of Thread.sleep() - doesn't block UI!
-        handler.postDelayed(() -> {
-            if (isConnected && connectedDevice != null && hidDevice != null) {
-                // RELEASE report (all zeros)
-                byte[] reportRelease = new byte[8];
-                Log.d(TAG, "sendKeyPress '" + key + "' RELEASE");
-                hidDevice.sendReport(connectedDevice, 1, reportRelease);
-            }
-        }, 10);  // 10ms delay
+        sendKeyboardTap(0x00, hidCode);
     }
 
     /**
@@ -316,7 +267,7 @@ public class BluetoothHIDService extends Service {
      * FIXED: Now sends PRESS + RELEASE reports with proper timing using Handler
      */
     public void sendKeyPress(String[] keys) {
-        if (!isConnected || connectedDevice == null || hidDevice == null) {
+        if (!isConnected) {
             Log.w(TAG, "sendKeyPress: not connected");
             return;
         }
@@ -326,84 +277,123 @@ public class BluetoothHIDService extends Service {
             return;
         }
 
-        // Extract modifiers and the main key
-        byte modifiers = 0x00;
-        int mainKeyCode = 0x00;
-        for (String key : keys) {
-            switch (key) {
-                case "Ctrl":
-                    modifiers |= 0x01;  // LEFT_CTRL
-                    break;
-                case "Shift":
-                    modifiers |= 0x02;  // LEFT_SHIFT
-                    break;
-                case "Alt":
-                    modifiers |= 0x04;  // LEFT_ALT
-                    break;
-                case "GUI":
-                    modifiers |= 0x08;  // LEFT_GUI
-                    break;
-                default:
-                    mainKeyCode = HIDKeyCode.getHIDCode(key);
-                    break;
-            }
-        }
-
-        if (mainKeyCode == 0x00) {
+        int combo = KeyCombo.parse(keys);
+        if (combo == KeyCombo.NONE) {
             Log.w(TAG, "sendKeyPress: could not find main key in: " + java.util.Arrays.toString(keys));
             return;
         }
+        int modifiers = KeyCombo.modifiers(combo);
+        int mainKeyCode = KeyCombo.keyCode(combo);
 
-        // Build PRESS report: [modifiers, reserved, keyCode1-6]
-        byte[] reportPress = new byte[8];
-        reportPress[0] = modifiers;
-        reportPress[1] = 0x00;  // reserved
-        reportPress[2] = (byte) mainKeyCode;
-
-        Log.d(TAG, "sendKeyPress combo " + java.util.Arrays.toString(keys)
-                + " modifiers=0x" + String.format("%02X", modifiers)
-                + " keyCode=0x" + String.format("%02X", mainKeyCode) + " PRESS");
-
-        // SEND PRESS REPORT
-        hidDevice.sendReport(connectedDevice, 1, reportPress);
-
-        // Use Handler.postDelayed() instead of Thread.sleep()
-        handler.postDelayed(() -> {
-            if (isConnected && connectedDevice != null && hidDevice != null) {
-                // RELEASE report (all zeros) - THIS IS THE CRITICAL FIX!
-                byte[] reportRelease = new byte[8];
-                Log.d(TAG, "sendKeyPress combo RELEASE");
-                hidDevice.sendReport(connectedDevice, 1, reportRelease);
-            }
-        }, 10);  // 10ms delay
+        sendKeyboardTap(modifiers, mainKeyCode);
     }
 
     /**
      * Send by HID code (for advanced use)
      */
     public void sendKeyPress(int keyCode) {
-        if (!isConnected || connectedDevice == null || hidDevice == null) {
+        if (!isConnected) {
             Log.w(TAG, "sendKeyPress: not connected");
             return;
         }
 
-        // PRESS
-        byte[] reportPress = new byte[8];
-        reportPress[0] = 0x00;  // no modifiers
-        reportPress[1] = 0x00;  // reserved
-        reportPress[2] = (byte) keyCode;
-
-        Log.d(TAG, "sendKeyPress 0x" + String.format("%02X", keyCode) + " PRESS");
-        hidDevice.sendReport(connectedDevice, 1, reportPress);
-
-        // RELEASE with Handler
-        handler.postDelayed(() -> {
-            if (isConnected && connectedDevice != null && hidDevice != null) {
-                byte[] reportRelease = new byte[8];
-                Log.d(TAG, "sendKeyPress 0x" + String.format("%02X", keyCode) + " RELEASE");
-                hidDevice.sendReport(connectedDevice, 1, reportRelease);
+        sendKeyboardTap(0x00, keyCode);
+    }
+
+    /**
+     * Tap a key by HID usage plus modifiers held with it. Modifier usages (0xE0-0xE7)
+     * go into the modifier byte. This is the hot path for the on-screen
+     * keyboard: usages are resolved once at bind time, so no string lookups here.
+     */
+    public void sendKey(int usage, int modifiers) {
+        if (!isConnected) {
+            Log.w(TAG, "sendKey: not connected");
+            return;
+        }
+
+        sendKeyboardTap(modifiers, usage);
+    }
+
+    /**
+     * Hold a key down until {@link #releaseKey(int)}, e.g. while a finger is on it.
+     * Modifiers passed here are released together with the key.
+     */
+    public void pressKey(int usage, int modifiers) {
+        if (!isConnected) {
+            Log.w(TAG, "pressKey: not connected");
+            return;
+        }
+        if (BuildConfig.HID_TRACE) trace.record(TraceRing.KEY_DOWN, usage, modifiers, 0);
+        reportSender.keyDown(usage, modifiers);
+    }
+
+    public void releaseKey(int usage) {
+        if (BuildConfig.HID_TRACE) trace.record(TraceRing.KEY_UP, usage, 0, 0);
+        reportSender.keyUp(usage);
+    }
+
+    /**
+     * Let every key up, held or tapped. Safe to call at any time, e.g. when the keyboard is hidden.
+     */
+    public void releaseAllKeys() {
+        reportSender.releaseAllKeys();
+    }
+
+    /**
+     * Press now, release 10 ms later on the sender thread's timer wheel. Other held keys
+     * stay down, so overlapping taps roll over instead of the first release wiping out the second press.
+     */
+    private void sendKeyboardTap(int modifiers, int keyCode) {
+        if (keyCode == HIDKeyCode.KEY_NONE) return;
+        if (BuildConfig.HID_TRACE) trace.record(TraceRing.KEY_TAP, keyCode, modifiers, 0);
+        reportSender.keyTap(keyCode, modifiers);
+    }
+
+    private void resetHostState() {
+        reportSender.resetHostState();
+    }
+
+    // ===== TEXT TYPING =====
+    /**
+     * Type text into the host as keystrokes (US layout), paced to what the link accepts.
+     * Listener calls arrive on the main thread.
+     * @return false if not connected or text is already being typed
+     */
+    public boolean typeText(CharSequence text, @Nullable TextTyper.Listener listener) {
+        if (!isConnected) {
+            Log.w(TAG, "typeText: not connected");
+            return false;
+        }
+
+        TextTyper.Listener mainThreadListener = new TextTyper.Listener() {
+            @Override
+            public void onProgress(int typed, int total, float charsPerSecond) {
+                if (listener != null) {
+                    handler.post(() -> listener.onProgress(typed, total, charsPerSecond));
+                }
+            }
+
+            @Override
+            public void onFinished(int typed, int skipped, int state) {
+                Log.d(TAG, "typeText done: typed=" + typed + " skipped=" + skipped + " state=" + state);
+                if (listener != null) {
+                    handler.post(() -> listener.onFinished(typed, skipped, state));
+                }
             }
-        }, 10);
+        };
+        // Copy: the caller's CharSequence may change while the sender thread reads it
+        boolean started = reportSender.type(new TextTyper(text.toString(), mainThreadListener));
+        if (!started) Log.w(TAG, "typeText: already typing");
+        return started;
+    }
+
+    public void cancelTyping() {
+        TextTyper typer = reportSender.getActiveTyper();
+        if (typer != null) typer.cancel();
+    }
+
+    public boolean isTyping() {
+        return reportSender.getActiveTyper() != null;
     }
 
     // ===== MOUSE METHODS =====
@@ -411,105 +401,164 @@ public class BluetoothHIDService extends Service {
      * Send mouse movement (deltaX, deltaY in range [-127, 127])
      */
     public void sendMouseMovement(int deltaX, int deltaY) {
-        if (!isConnected || connectedDevice == null || hidDevice == null) {
+        if (!isConnected) {
             Log.w(TAG, "sendMouseMovement: not connected");
             return;
         }
 
-        byte dx = (byte) Math.max(-127, Math.min(127, deltaX));
-        byte dy = (byte) Math.max(-127, Math.min(127, deltaY));
-
-        byte[] report = new byte[5];
-        report[0] = 0x00;  // Buttons
-        report[1] = dx;    // X
-        report[2] = dy;    // Y
-        report[3] = 0x00;  // Wheel
-        report[4] = 0x00;  // Padding
-
-        boolean ok = hidDevice.sendReport(connectedDevice, 2, report);
-        Log.d(TAG, "sendMouseMovement ok=" + ok + " dx=" + dx + " dy=" + dy + " len=" + report.length);
+        HidReports.writeMouse(mouseReport, 0x00, deltaX, deltaY, 0);
+        if (BuildConfig.HID_TRACE) trace.record(TraceRing.MOUSE_REPORT, 0x00, deltaX, deltaY);
+        reportSender.enqueue(HidReports.MOUSE_REPORT_ID, mouseReport);
     }
 
     // Click: [Buttons, 0, 0, 0, Padding]
     public void sendMouseClick(int button) {
-        if (!isConnected || connectedDevice == null || hidDevice == null) {
+        if (!isConnected) {
             Log.w(TAG, "sendMouseClick: not connected");
             return;
         }
 
-        byte buttonByte = (byte) (button == 1 ? 0x01 : button == 2 ? 0x02 : button == 3 ? 0x04 : 0x00);
-
-        byte[] press = new byte[5];
-        press[0] = buttonByte; // Buttons
-        press[1] = 0x00;
-        press[2] = 0x00;
-        press[3] = 0x00;
-        press[4] = 0x00;       // Padding
-
-        boolean ok = hidDevice.sendReport(connectedDevice, 2, press);
-        Log.d(TAG, "sendMouseClick PRESS ok=" + ok + " button=0x" + String.format("%02X", buttonByte));
-
-        handler.postDelayed(() -> {
-            if (isConnected && connectedDevice != null && hidDevice != null) {
-                byte[] release = new byte[5];
-                release[0] = 0x00; // Buttons up
-                release[1] = 0x00;
-                release[2] = 0x00;
-                release[3] = 0x00;
-                release[4] = 0x00; // Padding
-                hidDevice.sendReport(connectedDevice, 2, release);
-                Log.d(TAG, "sendMouseClick RELEASE");
-            }
-        }, 10);
+        int buttonBits = button == 1 ? 0x01 : button == 2 ? 0x02 : button == 3 ? 0x04 : 0x00;
+
+        // PRESS now, RELEASE 10 ms later on the sender thread's timer wheel
+        if (BuildConfig.HID_TRACE) trace.record(TraceRing.CLICK, buttonBits, 0, 0);
+        reportSender.mouseClick(buttonBits);
     }
 
     // Scroll: [0, 0, 0, Wheel, Padding]
     public void sendMouseScroll(int scrollAmount) {
-        if (!isConnected || connectedDevice == null || hidDevice == null) {
+        if (!isConnected) {
             Log.w(TAG, "sendMouseScroll: not connected");
             return;
         }
 
-        byte wheel = (byte) Math.max(-127, Math.min(127, scrollAmount));
-
-        byte[] report = new byte[5];
-        report[0] = 0x00;  // Buttons
-        report[1] = 0x00;  // X
-        report[2] = 0x00;  // Y
-        report[3] = wheel; // Wheel
-        report[4] = 0x00;  // Padding
-
-        boolean ok = hidDevice.sendReport(connectedDevice, 2, report);
-        Log.d(TAG, "sendMouseScroll ok=" + ok + " wheel=" + wheel + " len=" + report.length);
+        HidReports.writeMouse(mouseReport, 0x00, 0, 0, scrollAmount);
+        if (BuildConfig.HID_TRACE) trace.record(TraceRing.SCROLL, 0, 0, scrollAmount);
+        reportSender.enqueue(HidReports.MOUSE_REPORT_ID, mouseReport);
     }
 
     public void sendMouseReport(byte buttons, int dxInt, int dyInt, int wheelInt) {
-        if (!isConnected || connectedDevice == null || hidDevice == null) {
+        if (!isConnected) {
             Log.w(TAG, "sendMouseReport: not connected");
             return;
         }
 
-        byte dx = (byte) Math.max(-127, Math.min(127, dxInt));
-        byte dy = (byte) Math.max(-127, Math.min(127, dyInt));
-        byte wheel = (byte) Math.max(-127, Math.min(127, wheelInt));
-
         // 5 bytes (Windows-friendly in your setup): [Buttons, X, Y, Wheel, Padding]
-        byte[] report = new byte[5];
-        report[0] = buttons;
-        report[1] = dx;
-        report[2] = dy;
-        report[3] = wheel;
-        report[4] = 0x00;
+        HidReports.writeMouse(mouseReport, buttons & 0xFF, dxInt, dyInt, wheelInt);
+        if (BuildConfig.HID_TRACE) trace.record(TraceRing.MOUSE_REPORT, buttons & 0xFF, dxInt, dyInt);
+        reportSender.enqueue(HidReports.MOUSE_REPORT_ID, mouseReport);
+    }
+
+    /**
+     * Fixed report tick: at most one report per report ID per tick, mouse reports within
+     * a tick merged into one. Turns auto tuning off. Pass 0 to send every report as queued.
+     */
+    public void setReportTickMicros(long tickMicros) {
+        reportSender.setAutoTick(false);
+        reportSender.setTickNanos(TimeUnit.MICROSECONDS.toNanos(tickMicros));
+    }
+
+    /**
+     * Tune the report tick (7.5, 11.25 or 15 ms) to how long sendReport() takes. On by default.
+     */
+    public void setAutoReportTick(boolean auto) {
+        reportSender.setAutoTick(auto);
+    }
+
+    // ===== SENDER STATS =====
+    /**
+     * The report queue and its stats (queue depth, enqueue-to-send latency).
+     */
+    public ReportSender getReportSender() {
+        return reportSender;
+    }
+
+    // ===== LATENCY =====
+    /**
+     * Call at the top of an input listener: reports queued until {@link #endInput()} are
+     * timed from this event. Main thread.
+     * @param eventTimeMillis {@code MotionEvent.getEventTime()}, or 0 if there is no event time
+     */
+    public void beginInput(long eventTimeMillis) {
+        // Event times are uptimeMillis(), the same clock as System.nanoTime()
+        reportSender.setInputStamp(TimeUnit.MILLISECONDS.toNanos(eventTimeMillis), System.nanoTime());
+    }
+
+    public void endInput() {
+        reportSender.clearInputStamp();
+    }
+
+    /**
+     * Latency percentiles (p50/p95/p99/max, in microseconds) of one stage for one report type.
+     * @param reportId {@link HidReports#KEYBOARD_REPORT_ID} or {@link HidReports#MOUSE_REPORT_ID}
+     * @param stage one of {@link LatencyStats}' STAGE_ constants
+     */
+    public LatencyHistogram.Snapshot getLatencySnapshot(int reportId, int stage) {
+        return reportSender.getLatencyStats().snapshot(LatencyStats.typeOf(reportId), stage);
+    }
+
+    /**
+     * Clear all latency histograms, e.g. before a benchmark run.
+     */
+    public void resetLatency() {
+        reportSender.getLatencyStats().reset();
+    }
+
+    // ===== TRACE =====
+    /**
+     * Record an input event into the trace. Call sites check {@code BuildConfig.HID_TRACE}
+     * first so the call compiles out of release builds.
+     */
+    public void traceEvent(int type, int usage, int dx, int dy) {
+        if (BuildConfig.HID_TRACE) trace.record(type, usage, dx, dy);
+    }
+
+    /**
+     * Write the trace to a new file in the app's external files directory (see
+     * {@link TraceRing#dump(OutputStream)} for the format).
+     * @return the file, or null if tracing is compiled out or writing failed
+     */
+    @Nullable
+    public File dumpTrace() {
+        if (!BuildConfig.HID_TRACE) return null;
+        File dir = getExternalFilesDir(null);
+        if (dir == null) dir = getFilesDir();
+        File file = new File(dir, "hid-trace-" + System.currentTimeMillis() + ".bin");
+        try (OutputStream out = new FileOutputStream(file)) {
+            int count = trace.dump(out);
+            Log.d(TAG, "Trace dumped: " + count + " events to " + file);
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "Trace dump failed", e);
+            return null;
+        }
+    }
+
+    // ===== CONGESTION =====
+    /**
+     * One of {@link LinkCongestion}'s STATE_ constants. Refused key and button reports are
+     * retried while the link is congested; refused motion is merged into later reports.
+     */
+    public int getCongestionState() {
+        return reportSender.getCongestion().getState();
+    }
+
+    /**
+     * Listener calls arrive on the main thread, only when the state changes.
+     */
+    public void addCongestionListener(LinkCongestion.Listener listener) {
+        if (!congestionListeners.contains(listener)) congestionListeners.add(listener);
+    }
 
-        hidDevice.sendReport(connectedDevice, 2, report);
+    public void removeCongestionListener(LinkCongestion.Listener listener) {
+        congestionListeners.remove(listener);
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "Service destroyed");
-        if (bluetoothAdapter != null && hidDevice != null) {
-            bluetoothAdapter.closeProfileProxy(BluetoothProfile.HID_DEVICE, hidDevice);
-        }
+        reportSender.stop();
+        setTransport(null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package com.example.hidcontroller;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothHidDevice;
+import android.bluetooth.BluetoothHidDeviceAppSdpSettings;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.hidcontroller.core.HidTransport;
+
+import java.util.concurrent.Executor;
+
+/**
+ * {@link HidTransport} over the Android Bluetooth HID Device profile.
+ * Registration is deferred until the profile proxy is connected.
+ * Callbacks are delivered on the given executor (the main thread in the service).
+ */
+@SuppressLint("MissingPermission")
+public class BluetoothHidTransport implements HidTransport {
+    private static final String TAG = "BluetoothHidTransport";
+
+    private final BluetoothAdapter bluetoothAdapter;
+    private final Executor callbackExecutor;
+
+    private volatile BluetoothHidDevice hidDevice;
+    private volatile BluetoothDevice connectedDevice;
+    private volatile boolean isConnected = false;
+    private boolean isHIDRegistered = false;
+    @Nullable
+    private byte[] pendingDescriptor;
+    @Nullable
+    private Callback callback;
+
+    // ----- Profile listener -----
+    private final BluetoothProfile.ServiceListener hidProfileListener =
+            new BluetoothProfile.ServiceListener() {
+                @Override
+                public void onServiceConnected(int profile, BluetoothProfile proxy) {
+                    if (profile == BluetoothProfile.HID_DEVICE) {
+                        hidDevice = (BluetoothHidDevice) proxy;
+                        Log.d(TAG, "HID Device profile connected");
+                        if (pendingDescriptor != null) {
+                            registerHIDApp(pendingDescriptor);
+                        }
+                    }
+                }
+
+                @Override
+                public void onServiceDisconnected(int profile) {
+                    if (profile == BluetoothProfile.HID_DEVICE) {
+                        hidDevice = null;
+                        isConnected = false;
+                        setRegistered(false);
+                        Log.d(TAG, "HID Device profile disconnected");
+                    }
+                }
+            };
+
+    // ----- HID device callback -----
+    private final BluetoothHidDevice.Callback hidCallback =
+            new BluetoothHidDevice.Callback() {
+                @Override
+                public void onAppStatusChanged(BluetoothDevice pluggedDevice, boolean registered) {
+                    Log.d(TAG, "onAppStatusChanged registered=" + registered);
+                    setRegistered(registered);
+                }
+
+                @Override
+                public void onConnectionStateChanged(BluetoothDevice device, int state) {
+                    BluetoothDevice target = connectedDevice;
+                    if (target == null || !device.equals(target)) return;
+
+                    isConnected = state == BluetoothProfile.STATE_CONNECTED;
+                    Log.d(TAG, "HID state " + state + " for " + device.getName());
+                    Callback cb = callback;
+                    if (cb != null) cb.onConnectionStateChanged(device.getAddress(), state);
+                }
+
+                @Override
+                public void onGetReport(BluetoothDevice device, byte type, byte id, int bufferSize) {
+                    Callback cb = callback;
+                    if (cb != null) cb.onGetReport(type, id, bufferSize);
+                }
+            };
+
+    public BluetoothHidTransport(Context context, BluetoothAdapter bluetoothAdapter, Executor callbackExecutor) {
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.callbackExecutor = callbackExecutor;
+        bluetoothAdapter.getProfileProxy(context, hidProfileListener, BluetoothProfile.HID_DEVICE);
+    }
+
+    @Override
+    public void setCallback(@Nullable Callback callback) {
+        this.callback = callback;
+    }
+
+    // ----- Register HID App -----
+    @Override
+    public boolean register(byte[] descriptor) {
+        pendingDescriptor = descriptor;
+        if (hidDevice == null) {
+            Log.d(TAG, "HID profile not ready, registering once it connects");
+            return true;
+        }
+        return registerHIDApp(descriptor);
+    }
+
+    private boolean registerHIDApp(byte[] descriptor) {
+        if (isHIDRegistered) {
+            Log.d(TAG, "HID app already registered");
+            return true;
+        }
+
+        try {
+            BluetoothHidDeviceAppSdpSettings sdp = new BluetoothHidDeviceAppSdpSettings(
+                    "HID Controller",
+                    "Android HID Keyboard/Mouse",
+                    "HID Controller",
+                    (byte) 0x04,  // SUBCLASS_COMBO
+                    descriptor
+            );
+
+            boolean registered = hidDevice.registerApp(sdp, null, null, callbackExecutor, hidCallback);
+            Log.d(TAG, "registerApp() returned: " + registered);
+            setRegistered(registered);
+
+            if (!registered) {
+                Log.e(TAG, "Failed to register HID app");
+            }
+            return registered;
+        } catch (Exception e) {
+            Log.e(TAG, "Error registering HID app: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void setRegistered(boolean registered) {
+        if (isHIDRegistered == registered) return;
+        isHIDRegistered = registered;
+        Callback cb = callback;
+        if (cb != null) cb.onRegistrationChanged(registered);
+    }
+
+    @Override
+    public void unregister() {
+        pendingDescriptor = null;
+        BluetoothHidDevice device = hidDevice;
+        if (device != null && isHIDRegistered) {
+            device.unregisterApp();
+        }
+        setRegistered(false);
+    }
+
+    @Override
+    public boolean isRegistered() {
+        return isHIDRegistered;
+    }
+
+    // ----- Connection -----
+    @Override
+    public boolean connect(String address) {
+        BluetoothHidDevice device = hidDevice;
+        if (device == null) {
+            Log.e(TAG, "HID profile not ready when trying to connect");
+            return false;
+        }
+        if (!isHIDRegistered) {
+            Log.e(TAG, "HID app not registered yet");
+            return false;
+        }
+
+        connectedDevice = bluetoothAdapter.getRemoteDevice(address);
+        boolean started = device.connect(connectedDevice);
+        Log.d(TAG, "hidDevice.connect() started=" + started);
+        return started;
+    }
+
+    @Override
+    public boolean disconnect(String address) {
+        BluetoothHidDevice device = hidDevice;
+        BluetoothDevice target = connectedDevice;
+        isConnected = false;
+        connectedDevice = null;
+        if (device == null || target == null || !target.getAddress().equals(address)) return false;
+        return device.disconnect(target);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    // ----- Reports -----
+    @Override
+    public boolean sendReport(int reportId, byte[] report) {
+        BluetoothHidDevice device = hidDevice;
+        BluetoothDevice target = connectedDevice;
+        if (!isConnected || device == null || target == null) return false;
+        return device.sendReport(target, reportId, report);
+    }
+
+    @Override
+    public boolean replyReport(int type, int reportId, byte[] report) {
+        BluetoothHidDevice device = hidDevice;
+        BluetoothDevice target = connectedDevice;
+        if (device == null || target == null) return false;
+        return device.replyReport(target, (byte) type, (byte) reportId, report);
+    }
+
+    @Override
+    public void close() {
+        BluetoothHidDevice device = hidDevice;
+        if (device != null) {
+            if (isHIDRegistered) device.unregisterApp();
+            bluetoothAdapter.closeProfileProxy(BluetoothProfile.HID_DEVICE, device);
+        }
+        hidDevice = null;
+        isConnected = false;
+        connectedDevice = null;
+        isHIDRegistered = false;
+        callback = null;
+    }
+}
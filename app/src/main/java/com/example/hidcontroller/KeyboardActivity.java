@@ -18,9 +18,13 @@ import android.widget.TextView;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.hidcontroller.core.HIDKeyCode;
+import com.example.hidcontroller.core.KeyCombo;
+import com.example.hidcontroller.core.LinkCongestion;
+import com.example.hidcontroller.core.TextTyper;
+
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
 
 public class KeyboardActivity extends AppCompatActivity {
 
@@ -29,16 +33,24 @@ public class KeyboardActivity extends AppCompatActivity {
     private static final int COLOR_PRESSED = 0xFF606060;
     private static final int COLOR_SHIFT_ACTIVE = 0xFF008080;
     private TextView keyboardStatus;
+    private StatusPresenter statusPresenter;
+    private PerformanceHud performanceHud;
     @Nullable
     private BluetoothHIDService hidService;
     private boolean isBound = false;
     private boolean isFnActive = false;
     private boolean isShiftLatched = false;
     private boolean isCapsLocked = false;
+    // Hold mode: press on touch-down, release on touch-up; off = whole tap on touch-up
+    private boolean isHoldMode = true;
+    private static final String PREFS_NAME = "keyboard_prefs";
+    private static final String KEY_HOLD_MODE = "hold_mode";
     private static final int MAX_COMBOS = 14;
     private Button[] comboSlots = new Button[MAX_COMBOS];
     private String[][] comboKeys = new String[MAX_COMBOS][];
-    private Map<Button, String> baseLabels = new HashMap<>();
+    // Packed KeyCombo values, parsed once when a combo is loaded or saved
+    private int[] comboCodes = new int[MAX_COMBOS];
+    private final ArrayList<KeyBinding> keyBindings = new ArrayList<>();
     private Handler handler = new Handler(Looper.getMainLooper());
     private static final String[] ALL_MAIN_KEYS = {
             "Esc", "F1", "F2", "F3", "F4", "F5", "F6", "F7", "F8", "F9", "F10", "F11", "F12",
@@ -49,6 +61,40 @@ public class KeyboardActivity extends AppCompatActivity {
             "Ctrl", "Alt", "GUI", "Menu", "Back"
     };
 
+    /**
+     * An on-screen key resolved once at bind time: HID usage plus the labels
+     * it can display, so a keystroke never goes back through string lookups.
+     */
+    private static final class KeyBinding {
+        final Button button;
+        final int usage;
+        final String label;
+        // Lowercase form for letters, shifted symbol for number/punctuation keys
+        @Nullable final String altLabel;
+        // Pressed on the host in hold mode, waiting for touch-up
+        boolean held;
+
+        KeyBinding(Button button, String label) {
+            this.button = button;
+            this.usage = HIDKeyCode.getHIDCode(label);
+            this.label = label;
+            if (HIDKeyCode.isLetter(usage)) {
+                altLabel = label.toLowerCase();
+            } else {
+                altLabel = HIDKeyCode.getShiftedLabel(usage);
+            }
+        }
+
+        boolean isLetter() {
+            return HIDKeyCode.isLetter(usage);
+        }
+
+        /** True if a latched Shift changes what this key types. */
+        boolean isShiftSensitive() {
+            return altLabel != null;
+        }
+    }
+
     // ================ Service binding ================
     private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
@@ -57,6 +103,8 @@ public class KeyboardActivity extends AppCompatActivity {
                     (BluetoothHIDService.LocalBinder) service;
             hidService = binder.getService();
             isBound = true;
+            hidService.addCongestionListener(congestionListener);
+            performanceHud.setSender(hidService.getReportSender());
             logToStatus("HID Service ready");
         }
 
@@ -64,10 +112,21 @@ public class KeyboardActivity extends AppCompatActivity {
         public void onServiceDisconnected(ComponentName name) {
             isBound = false;
             hidService = null;
+            performanceHud.setSender(null);
             logToStatus("HID Service disconnected");
         }
     };
 
+    private final LinkCongestion.Listener congestionListener = state -> {
+        if (state == LinkCongestion.STATE_STALLED) {
+            logToStatus("Link stalled, keys will be sent when the host catches up");
+        } else if (state == LinkCongestion.STATE_CONGESTED) {
+            logToStatus("Link busy, retrying");
+        } else {
+            logToStatus("Link clear");
+        }
+    };
+
     // ================ Lifecycle ================
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -75,7 +134,16 @@ public class KeyboardActivity extends AppCompatActivity {
         setContentView(R.layout.activity_keyboard);
 
         keyboardStatus = findViewById(R.id.keyboardStatus);
-        logToStatus("Keyboard initialized");
+        statusPresenter = new StatusPresenter(keyboardStatus);
+        performanceHud = new PerformanceHud(this);
+        if (BuildConfig.HID_TRACE) {
+            keyboardStatus.setOnLongClickListener(v -> {
+                dumpTrace();
+                return true;
+            });
+        }
+        isHoldMode = getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getBoolean(KEY_HOLD_MODE, true);
+        logToStatus("Keyboard initialized" + (isHoldMode ? "" : " (tap mode)"));
 
         Intent serviceIntent = new Intent(this, BluetoothHIDService.class);
         bindService(serviceIntent, serviceConnection, BIND_AUTO_CREATE);
@@ -183,23 +251,25 @@ public class KeyboardActivity extends AppCompatActivity {
         Button b = findViewById(viewId);
         if (b == null) return;
 
-        baseLabels.put(b, baseLabel);
+        KeyBinding key = new KeyBinding(b, baseLabel);
+        keyBindings.add(key);
         b.setOnTouchListener((v, event) -> {
             int action = event.getAction();
 
             if (action == MotionEvent.ACTION_DOWN) {
                 v.setBackgroundColor(COLOR_PRESSED);
-                onKeyDown(baseLabel);
+                beginInput(event);
+                onKeyDown(key);
+                endInput();
                 return true;
 
             } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
                 v.setBackgroundColor(COLOR_NORMAL);
+                beginInput(event);
+                onKeyUp(key);
+                endInput();
 
-                // Get what the button CURRENTLY displays
-                String displayText = ((Button) v).getText().toString();
-                onKeyUp(baseLabel, displayText);
-
-                v.performClick();
+                if (action == MotionEvent.ACTION_UP) v.performClick();
                 return true;
             }
 
@@ -207,6 +277,15 @@ public class KeyboardActivity extends AppCompatActivity {
         });
     }
 
+    // Reports queued in between are timed from the touch event (latency stats)
+    private void beginInput(MotionEvent event) {
+        if (hidService != null) hidService.beginInput(event.getEventTime());
+    }
+
+    private void endInput() {
+        if (hidService != null) hidService.endInput();
+    }
+
     /**
      * Handle Shift button press/release
      */
@@ -215,7 +294,6 @@ public class KeyboardActivity extends AppCompatActivity {
         Button b = findViewById(viewId);
         if (b == null) return;
 
-        baseLabels.put(b, "Shift");
         b.setOnTouchListener((v, event) -> {
             if (event.getAction() == MotionEvent.ACTION_DOWN) {
                 isShiftLatched = !isShiftLatched;
@@ -240,7 +318,6 @@ public class KeyboardActivity extends AppCompatActivity {
         Button b = findViewById(viewId);
         if (b == null) return;
 
-        baseLabels.put(b, "Caps");
         b.setOnTouchListener((v, event) -> {
             if (event.getAction() == MotionEvent.ACTION_DOWN) {
                 isCapsLocked = !isCapsLocked;
@@ -251,7 +328,7 @@ public class KeyboardActivity extends AppCompatActivity {
 
                 // IMPORTANT: tell the host to toggle Caps Lock too
                 if (hidService != null && hidService.isConnected()) {
-                    hidService.sendKeyPress("Caps");
+                    hidService.sendKey(HIDKeyCode.KEY_CAPS_LOCK, 0);
                 }
                 return true;
             }
@@ -268,104 +345,98 @@ public class KeyboardActivity extends AppCompatActivity {
             v.setBackgroundColor(isFnActive ? COLOR_SHIFT_ACTIVE : COLOR_NORMAL);
             logToStatus("Fn " + (isFnActive ? "ON" : "OFF"));
         });
+        // Long-press Fn switches between hold mode and tap mode
+        b.setOnLongClickListener(v -> {
+            setHoldMode(!isHoldMode);
+            return true;
+        });
     }
 
-    // ================ Key callbacks ================
-    private void onKeyDown(String label) {
-        Log.d(TAG, "Key DOWN: " + label);
+    private void setHoldMode(boolean holdMode) {
+        releaseHeldKeys();
+        isHoldMode = holdMode;
+        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
+                .putBoolean(KEY_HOLD_MODE, holdMode)
+                .apply();
+        logToStatus(holdMode ? "Hold mode: keys press on touch-down" : "Tap mode: keys send on release");
     }
 
+    // ================ Key callbacks ================
     /**
-     * FIXED: Check for shift mapping BEFORE sending to device
-     * Shift toggles case: Shift+a=A, Shift+A=a
-     * Shift+1=!, Shift+!=1, etc.
-     * Caps Lock affects letter case independently
+     * Hold mode sends the press now, so the host sees the key a finger-dwell sooner
+     * and can auto-repeat it while held.
      */
-    private void onKeyUp(String baseLabel, String displayText) {
-        Log.d(TAG, "onKeyUp baseLabel=" + baseLabel + " displayText=" + displayText + " shiftLatched=" + isShiftLatched);
-        logToStatus("Key UP: " + displayText);
-
-        if ("Fn".equals(baseLabel)) return;
+    private void onKeyDown(KeyBinding key) {
+        if (!isHoldMode) return;
 
         if (hidService == null || !hidService.isConnected()) {
             logToStatus("Not connected to device");
             return;
         }
 
-        // CRITICAL FIX: Check if Shift is latched
-        if (isShiftLatched) {
-            // Check if this is a shifted symbol (e.g., "!" from "1")
-            String baseKey = reverseShiftedChar(displayText);
-
-            if (!baseKey.equals(displayText)) {
-                // It was a shifted symbol! Send Shift+baseKey
-                Log.d(TAG, "Shifted symbol: sending Shift + " + baseKey);
-                hidService.sendKeyPress(new String[]{"Shift", baseKey});
-                logToStatus("Sent: Shift + " + baseKey);
+        hidService.pressKey(key.usage, shiftModifiersFor(key));
+        key.held = true;
+        logToStatus("Key DOWN: " + key.button.getText());
+        consumeShiftLatch(key);
+    }
 
-                isShiftLatched = false;
-                updateShiftButtonsUi();
-                refreshShiftSensitiveLabels();
-                return;
+    /**
+     * Hold mode: release what touch-down pressed (also on ACTION_CANCEL, so nothing sticks).
+     * Tap mode: send the whole press/release now.
+     * Shift toggles case: Shift+a=A, Shift+A=a
+     * Shift+1=!, etc. The host applies Shift, so we only add the modifier bit.
+     * Caps Lock affects letter case independently
+     */
+    private void onKeyUp(KeyBinding key) {
+        if (isHoldMode) {
+            if (key.held) {
+                key.held = false;
+                if (hidService != null) hidService.releaseKey(key.usage);
             }
+            return;
+        }
 
-            // Check if this is a letter (A-Z)
-            // Shift toggles case: a->A, A->a
-            if (baseLabel.length() == 1 && Character.isLetter(baseLabel.charAt(0))) {
-                // Just send Shift + the letter key
-                // HID will toggle the case
-                Log.d(TAG, "Shifted letter: sending Shift + " + baseLabel);
-                hidService.sendKeyPress(new String[]{"Shift", baseLabel});
-                logToStatus("Sent: Shift + " + baseLabel);
+        logToStatus("Key UP: " + key.button.getText());
 
-                isShiftLatched = false;
-                updateShiftButtonsUi();
-                refreshShiftSensitiveLabels();
-                return;
-            }
+        if (hidService == null || !hidService.isConnected()) {
+            logToStatus("Not connected to device");
+            return;
         }
 
-        // Normal key send
-        hidService.sendKeyPress(baseLabel);
-        Log.d(TAG, "Sent single key: " + baseLabel);
+        int modifiers = shiftModifiersFor(key);
+        hidService.sendKey(key.usage, modifiers);
+        if (modifiers != 0) logToStatus("Sent: Shift + " + key.label);
+        consumeShiftLatch(key);
+    }
 
-        // Clear shift if it was on (one-shot)
-        if (isShiftLatched && !baseLabel.equals("Shift")) {
-            isShiftLatched = false;
-            updateShiftButtonsUi();
-            refreshShiftSensitiveLabels();
-        }
+    private int shiftModifiersFor(KeyBinding key) {
+        return isShiftLatched && key.isShiftSensitive() ? HIDKeyCode.MODIFIER_LEFT_SHIFT : 0;
+    }
+
+    /**
+     * Shift is one-shot: the next non-modifier key clears it, so Shift, Ctrl, S still gives Ctrl+Shift+S.
+     */
+    private void consumeShiftLatch(KeyBinding key) {
+        if (!isShiftLatched || HIDKeyCode.getModifierBit(key.usage) != 0) return;
+        isShiftLatched = false;
+        updateShiftButtonsUi();
+        refreshShiftSensitiveLabels();
     }
 
     /**
-     * Reverse-map shifted symbol back to base key
-     * "!" -> "1", "@" -> "2", etc.
+     * Let up every key a finger is still on, e.g. when the Activity loses focus mid-press.
      */
-    private String reverseShiftedChar(String shifted) {
-        switch (shifted) {
-            case "!": return "1";
-            case "@": return "2";
-            case "#": return "3";
-            case "$": return "4";
-            case "%": return "5";
-            case "^": return "6";
-            case "&": return "7";
-            case "*": return "8";
-            case "(": return "9";
-            case ")": return "0";
-            case "_": return "-";
-            case "+": return "=";
-            case "{": return "[";
-            case "}": return "]";
-            case "|": return "\\";
-            case ":": return ";";
-            case "\"": return "'";
-            case "<": return ",";
-            case ">": return ".";
-            case "?": return "/";
-            case "~": return "`";
-            default: return shifted;
+    private void releaseHeldKeys() {
+        boolean anyHeld = false;
+        for (int i = 0; i < keyBindings.size(); i++) {
+            KeyBinding key = keyBindings.get(i);
+            if (key.held) {
+                key.held = false;
+                key.button.setBackgroundColor(COLOR_NORMAL);
+                anyHeld = true;
+            }
         }
+        if (anyHeld && hidService != null) hidService.releaseAllKeys();
     }
 
     // ================ Shift & Caps UI ================
@@ -392,48 +463,12 @@ public class KeyboardActivity extends AppCompatActivity {
     private void refreshShiftSensitiveLabels() {
         boolean lettersUpper = isCapsLocked ^ isShiftLatched;
 
-        for (Map.Entry<Button, String> entry : baseLabels.entrySet()) {
-            Button b = entry.getKey();
-            String base = entry.getValue();
-
-            String display;
-            if ("Shift".equals(base) || "Caps".equals(base)) {
-                display = base; // keep labels stable for modifier keys
-            } else if (base.length() == 1 && Character.isLetter(base.charAt(0))) {
-                display = lettersUpper ? base.toUpperCase() : base.toLowerCase();
-            } else {
-                display = isShiftLatched ? shiftedCharFor(base) : base;
-            }
+        for (int i = 0; i < keyBindings.size(); i++) {
+            KeyBinding key = keyBindings.get(i);
+            if (!key.isShiftSensitive()) continue; // keep labels stable for other keys
 
-            b.setText(display);
-        }
-    }
-
-    private String shiftedCharFor(String base) {
-        switch (base) {
-            case "1": return "!";
-            case "2": return "@";
-            case "3": return "#";
-            case "4": return "$";
-            case "5": return "%";
-            case "6": return "^";
-            case "7": return "&";
-            case "8": return "*";
-            case "9": return "(";
-            case "0": return ")";
-            case "-": return "_";
-            case "=": return "+";
-            case "[": return "{";
-            case "]": return "}";
-            case "\\": return "|";
-            case ";": return ":";
-            case "'": return "\"";
-            case ",": return "<";
-            case ".": return ">";
-            case "/": return "?";
-            case "`": return "~";
-            default:
-                return base;
+            boolean showAlt = key.isLetter() ? !lettersUpper : isShiftLatched;
+            key.button.setText(showAlt ? key.altLabel : key.label);
         }
     }
 
@@ -470,11 +505,55 @@ public class KeyboardActivity extends AppCompatActivity {
         if (createCombo != null) {
             createCombo.setOnClickListener(v -> showComboEditorForNextSlot());
         }
+
+        Button typeClipboard = findViewById(R.id.btnTypeClipboard);
+        if (typeClipboard != null) {
+            typeClipboard.setOnClickListener(v -> onTypeClipboardClicked());
+        }
+    }
+
+    // ================ Text typing ================
+    private void onTypeClipboardClicked() {
+        if (hidService == null || !hidService.isConnected()) {
+            logToStatus("Not connected to device");
+            return;
+        }
+        if (hidService.isTyping()) {
+            hidService.cancelTyping();
+            logToStatus("Stopping...");
+            return;
+        }
+
+        android.content.ClipboardManager clipboard =
+                (android.content.ClipboardManager) getSystemService(CLIPBOARD_SERVICE);
+        android.content.ClipData clip = clipboard != null ? clipboard.getPrimaryClip() : null;
+        CharSequence text = clip != null && clip.getItemCount() > 0 ? clip.getItemAt(0).getText() : null;
+        if (text == null || text.length() == 0) {
+            logToStatus("Clipboard has no text");
+            return;
+        }
+
+        hidService.typeText(text, typingListener);
     }
 
+    private final TextTyper.Listener typingListener = new TextTyper.Listener() {
+        @Override
+        public void onProgress(int typed, int total, float charsPerSecond) {
+            logToStatus("Typing " + typed + "/" + total + " (" + Math.round(charsPerSecond) + " chars/s)");
+        }
+
+        @Override
+        public void onFinished(int typed, int skipped, int state) {
+            String result = state == TextTyper.STATE_COMPLETED ? "Typed "
+                    : state == TextTyper.STATE_CANCELLED ? "Stopped after " : "Link stalled after ";
+            logToStatus(result + typed + " chars" + (skipped > 0 ? ", skipped " + skipped : ""));
+        }
+    };
+
     private void onComboSlotClicked(int index) {
         String[] keys = comboKeys[index];
-        if (keys == null) {
+        int combo = comboCodes[index];
+        if (keys == null || combo == KeyCombo.NONE) {
             logToStatus("No combo set for this slot");
             return;
         }
@@ -484,7 +563,7 @@ public class KeyboardActivity extends AppCompatActivity {
             return;
         }
 
-        hidService.sendKeyPress(keys);
+        hidService.sendKey(KeyCombo.keyCode(combo), KeyCombo.modifiers(combo));
         logToStatus("Sent combo: " + String.join(" + ", keys));
     }
 
@@ -542,6 +621,7 @@ public class KeyboardActivity extends AppCompatActivity {
             parts.add(mainKey);
             String[] combo = parts.toArray(new String[0]);
             comboKeys[index] = combo;
+            comboCodes[index] = KeyCombo.parse(combo);
             saveCombos();
 
             Button slot = comboSlots[index];
@@ -577,6 +657,7 @@ public class KeyboardActivity extends AppCompatActivity {
             String stored = prefs.getString("slot_" + i, null);
             if (stored == null || stored.isEmpty()) {
                 comboKeys[i] = null;
+                comboCodes[i] = KeyCombo.NONE;
                 if (comboSlots[i] != null) {
                     comboSlots[i].setText("");
                     comboSlots[i].setVisibility(View.GONE);
@@ -586,6 +667,7 @@ public class KeyboardActivity extends AppCompatActivity {
 
             String[] parts = stored.split(";");
             comboKeys[i] = parts;
+            comboCodes[i] = KeyCombo.parse(parts);
             Button slot = comboSlots[i];
             if (slot != null) {
                 slot.setText(String.join("+", parts));
@@ -596,6 +678,7 @@ public class KeyboardActivity extends AppCompatActivity {
 
     private void clearComboSlot(int index) {
         comboKeys[index] = null;
+        comboCodes[index] = KeyCombo.NONE;
         Button slot = comboSlots[index];
         if (slot != null) {
             slot.setText("");
@@ -606,14 +689,40 @@ public class KeyboardActivity extends AppCompatActivity {
     }
 
     // ================ Status + lifecycle ================
+    /**
+     * Status line only: key events are in the input trace (debug builds), not the log.
+     * Applied on the next frame, so per-key calls are cheap.
+     */
     private void logToStatus(String message) {
-        keyboardStatus.setText(message);
-        Log.d(TAG, message);
+        statusPresenter.show(message);
+    }
+
+    /**
+     * Debug builds: long-press the status line to save the input trace to a file.
+     */
+    private void dumpTrace() {
+        File file = hidService != null ? hidService.dumpTrace() : null;
+        logToStatus(file != null ? "Trace saved: " + file.getName() : "Trace not saved");
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (TouchpadSettingsActivity.isPerformanceHudEnabled(this)) performanceHud.start();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        releaseHeldKeys();
+        performanceHud.stop();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        statusPresenter.cancel();
+        if (hidService != null) hidService.removeCongestionListener(congestionListener);
         if (isBound) {
             unbindService(serviceConnection);
             isBound = false;
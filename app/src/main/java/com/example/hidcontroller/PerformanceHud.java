@@ -0,0 +1,155 @@
+package com.example.hidcontroller;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.text.TextUtils;
+import android.view.Choreographer;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.annotation.Nullable;
+
+import com.example.hidcontroller.core.HidReports;
+import com.example.hidcontroller.core.LatencyHistogram;
+import com.example.hidcontroller.core.LatencyStats;
+import com.example.hidcontroller.core.ReportSender;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional overlay with live report pipeline numbers: reports/s per report ID, queue depth,
+ * coalesced and dropped motion, sendReport() failures and p99 input-to-send latency, plus
+ * the UI thread's frame time and janky frames (frames that took over 1.5 vsync intervals).
+ * <p>
+ * While shown it runs a Choreographer callback on every frame to time the frames; the text is
+ * rebuilt from the sender's counters only every {@link #REFRESH_MS}, so the input path does not
+ * know it is there. Main thread only.
+ */
+final class PerformanceHud implements Choreographer.FrameCallback {
+    private static final long REFRESH_MS = 500;
+
+    private final TextView view;
+    private final StringBuilder text = new StringBuilder(160);
+    @Nullable
+    private ReportSender sender;
+    private boolean running = false;
+
+    // Counters at the previous refresh, for the rates
+    private long lastFrameNanos = 0L;
+    private long lastKeyboardSent = 0L;
+    private long lastMouseSent = 0L;
+
+    // Frame timing since start()
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private long previousFrameNanos = 0L;
+    private long vsyncNanos = Long.MAX_VALUE;
+    private long jankCount = 0L;
+
+    /**
+     * Adds the (hidden) overlay to the top right corner of the activity's content.
+     */
+    PerformanceHud(Activity activity) {
+        view = new TextView(activity);
+        view.setTextSize(11);
+        view.setTypeface(Typeface.MONOSPACE);
+        view.setTextColor(0xFF32B8C6);
+        view.setBackgroundColor(Color.argb(0xB0, 0, 0, 0));
+        int pad = Math.round(6 * activity.getResources().getDisplayMetrics().density);
+        view.setPadding(pad, pad, pad, pad);
+        view.setVisibility(View.GONE);
+        // Numbers only: touches go through to the views below
+        view.setClickable(false);
+        view.setFocusable(false);
+
+        FrameLayout content = activity.findViewById(android.R.id.content);
+        content.addView(view, new FrameLayout.LayoutParams(
+                FrameLayout.LayoutParams.WRAP_CONTENT, FrameLayout.LayoutParams.WRAP_CONTENT,
+                Gravity.TOP | Gravity.END));
+    }
+
+    /**
+     * @param sender null while the service is not bound
+     */
+    void setSender(@Nullable ReportSender sender) {
+        this.sender = sender;
+        lastFrameNanos = 0L;
+    }
+
+    void start() {
+        if (running) return;
+        running = true;
+        lastFrameNanos = 0L;
+        previousFrameNanos = 0L;
+        vsyncNanos = Long.MAX_VALUE;
+        jankCount = 0L;
+        frameTimes.reset();
+        view.setText("HUD: waiting for service");
+        view.setVisibility(View.VISIBLE);
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void stop() {
+        if (!running) return;
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+        view.setVisibility(View.GONE);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+        Choreographer.getInstance().postFrameCallback(this);
+        recordFrame(frameTimeNanos);
+
+        ReportSender s = sender;
+        if (s == null || frameTimeNanos - lastFrameNanos < TimeUnit.MILLISECONDS.toNanos(REFRESH_MS)) return;
+        long keyboardSent = s.getSentCount(HidReports.KEYBOARD_REPORT_ID);
+        long mouseSent = s.getSentCount(HidReports.MOUSE_REPORT_ID);
+        long elapsed = frameTimeNanos - lastFrameNanos;
+        boolean first = lastFrameNanos == 0L;
+        lastFrameNanos = frameTimeNanos;
+        long keyboardRate = first ? 0L : (keyboardSent - lastKeyboardSent) * 1_000_000_000L / elapsed;
+        long mouseRate = first ? 0L : (mouseSent - lastMouseSent) * 1_000_000_000L / elapsed;
+        lastKeyboardSent = keyboardSent;
+        lastMouseSent = mouseSent;
+
+        LatencyStats latency = s.getLatencyStats();
+        text.setLength(0);
+        text.append(String.format(Locale.US, "kbd %4d/s  mouse %4d/s  queue %d\n",
+                keyboardRate, mouseRate, s.getQueueDepth()));
+        text.append(String.format(Locale.US, "coalesced %d  dropped %d  failed %d\n",
+                s.getCoalescedCount(), s.getDroppedMotionCount() + s.getRejectedCount(), s.getFailedCount()));
+        text.append(String.format(Locale.US, "p99 kbd %s  mouse %s  tick %.2f ms",
+                p99(latency, LatencyStats.TYPE_KEYBOARD), p99(latency, LatencyStats.TYPE_MOUSE),
+                s.getTickNanos() / 1e6));
+        LatencyHistogram.Snapshot frames = frameTimes.snapshot();
+        text.append(String.format(Locale.US, "\nframe p50 %.1f  p99 %.1f ms  jank %d/%d",
+                frames.getP50Micros() / 1000.0, frames.getP99Micros() / 1000.0, jankCount, frames.getCount()));
+
+        if (!TextUtils.equals(view.getText(), text)) view.setText(text.toString());
+    }
+
+    private void recordFrame(long frameTimeNanos) {
+        if (previousFrameNanos != 0L) {
+            long interval = frameTimeNanos - previousFrameNanos;
+            frameTimes.recordNanos(interval);
+            // The shortest interval seen is the display's vsync period
+            vsyncNanos = Math.min(vsyncNanos, interval);
+            if (interval > vsyncNanos + vsyncNanos / 2) jankCount++;
+        }
+        previousFrameNanos = frameTimeNanos;
+    }
+
+    // Input-to-send p99; falls back to enqueue-to-send for reports without an input stamp
+    private static String p99(LatencyStats latency, int type) {
+        LatencyHistogram.Snapshot total = latency.snapshot(type, LatencyStats.STAGE_TOTAL);
+        LatencyHistogram.Snapshot snapshot = total.getCount() > 0 ? total
+                : latency.snapshot(type, LatencyStats.STAGE_QUEUE);
+        if (snapshot.getCount() == 0) return "-";
+        return String.format(Locale.US, "%.1f ms", snapshot.getP99Micros() / 1000.0);
+    }
+}
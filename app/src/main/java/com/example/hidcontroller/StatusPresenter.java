@@ -0,0 +1,58 @@
+package com.example.hidcontroller;
+
+import android.text.TextUtils;
+import android.view.Choreographer;
+import android.widget.TextView;
+
+/**
+ * Status line that only changes on frames. {@link #show(CharSequence)} just records the latest
+ * text; a Choreographer frame callback applies it at most once per vsync, and not at all if it
+ * did not change. A swipe that reports every move then costs one setText() (and one layout
+ * pass) per frame instead of one per touch event, which arrive at 120 Hz or more.
+ * Main thread only.
+ */
+final class StatusPresenter implements Choreographer.FrameCallback {
+    private final TextView view;
+    private final StringBuilder latest = new StringBuilder(64);
+    private boolean posted = false;
+
+    StatusPresenter(TextView view) {
+        this.view = view;
+    }
+
+    void show(CharSequence text) {
+        latest.setLength(0);
+        latest.append(text);
+        post();
+    }
+
+    /**
+     * Shows "{label} X:{x} Y:{y}" without building a string per touch event.
+     */
+    void showDelta(String label, int x, int y) {
+        latest.setLength(0);
+        latest.append(label).append(" X:").append(x).append(" Y:").append(y);
+        post();
+    }
+
+    /**
+     * Drop a pending update, e.g. when the activity goes away.
+     */
+    void cancel() {
+        if (!posted) return;
+        posted = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    private void post() {
+        if (posted) return;
+        posted = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        posted = false;
+        if (!TextUtils.equals(view.getText(), latest)) view.setText(latest.toString());
+    }
+}
@@ -17,10 +17,19 @@ import android.widget.TextView;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.hidcontroller.core.AccelerationCurve;
+import com.example.hidcontroller.core.LinkCongestion;
+import com.example.hidcontroller.core.TouchProcessor;
+import com.example.hidcontroller.core.TraceRing;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
 public class TouchpadActivity extends AppCompatActivity {
 
     private static final String TAG = "TouchpadActivity";
     private TextView touchpadStatus;
+    private StatusPresenter statusPresenter;
     private View touchArea;
     private View scrollStrip;
     private Button btnLeftClick;
@@ -28,39 +37,52 @@ public class TouchpadActivity extends AppCompatActivity {
     private ImageButton btnScrollUp;
     private ImageButton btnScrollDown;
     private ImageButton btnTouchpadSetting;
+    private PerformanceHud performanceHud;
 
     @Nullable
     private BluetoothHIDService hidService;
     private boolean isBound = false;
 
-    private float lastX = 0f;
-    private float lastY = 0f;
-    private float lastScrollY = 0f;
-    // Tap and drag fields
-    private boolean isDragging = false;
-    private long downTime = 0L;
-    private float downX = 0f;
-    private float downY = 0f;
-    private boolean moved = false;
-    // Tap detection fields
-    private float tapDownX = 0f;
-    private float tapDownY = 0f;
-    private long tapDownTime = 0L;
-    // Sensitivity Multipliers (loaded from settings)
-    private float touchpadSensitivity = 1.0f;
-    private float scrollSensitivity = 1.0f;
-    private static final int MOVEMENT_THRESHOLD = 1;   // Lower threshold for better responsiveness
-    private static final int SCROLL_MULTIPLIER = 3;
-    private static final int DRAG_START_MS = 250;      // Hold for 250ms to start drag
-    private static final int DRAG_SLOP_PX = 20;        // Allow small movement while initiating drag
-    private static final int TAP_TIMEOUT_MS = 180;     // Tap must complete within 180ms
-    private static final int TAP_SLOP_PX = 20;         // Tap movement tolerance
-    // Enhanced sensitivity system for better responsiveness
-    private static final float SENSITIVITY_CURVE = 1.2f;  // Acceleration multiplier for small movements
-    private static final float MIN_SEND_DELTA = 0.5f;     // Minimum delta before sending (sub-pixel tracking)
-    // Accumulated fractional movement for precision
-    private float accumulatedDeltaX = 0f;
-    private float accumulatedDeltaY = 0f;
+    // Gesture logic; this activity only feeds it touch samples and settings
+    private final TouchProcessor touchProcessor = new TouchProcessor(new TouchProcessor.Output() {
+        @Override
+        public void move(int buttons, int dx, int dy) {
+            if (buttons != 0) {
+                // Move while holding left button
+                hidService.sendMouseReport((byte) buttons, dx, dy, 0);
+                statusPresenter.showDelta("Drag", dx, dy);
+            } else {
+                // Normal movement (no button)
+                hidService.sendMouseMovement(dx, dy);
+                statusPresenter.showDelta("Move", dx, dy);
+            }
+        }
+
+        @Override
+        public void buttons(int buttons) {
+            hidService.sendMouseReport((byte) buttons, 0, 0, 0);
+            logToStatus(buttons != 0 ? "Drag start" : "Drag end");
+        }
+
+        @Override
+        public void click(int button) {
+            hidService.sendMouseClick(button);
+            logToStatus("Tap click");
+        }
+
+        @Override
+        public void scroll(int amount) {
+            // The strip follows the finger while disconnected, but only scrolls when connected
+            if (hidService == null || !hidService.isConnected()) return;
+            hidService.sendMouseScroll(amount);
+            logToStatus(amount > 0 ? "Scrolling down" : "Scrolling up");
+        }
+    });
+    // Deliver touch samples as they arrive instead of batched per frame (settings)
+    private boolean unbufferedTouch = false;
+    // Last pad sample traced, so a move traces the finger's own delta
+    private float tracedX = 0f;
+    private float tracedY = 0f;
 
     private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
@@ -69,6 +91,9 @@ public class TouchpadActivity extends AppCompatActivity {
             hidService = binder.getService();
             isBound = true;
             Log.d(TAG, "Service bound");
+            hidService.addCongestionListener(congestionListener);
+            performanceHud.setSender(hidService.getReportSender());
+            loadPredictionSettings();
             updateStatus();
         }
 
@@ -76,16 +101,29 @@ public class TouchpadActivity extends AppCompatActivity {
         public void onServiceDisconnected(ComponentName name) {
             isBound = false;
             hidService = null;
+            performanceHud.setSender(null);
             Log.d(TAG, "Service disconnected");
         }
     };
 
+    // Shown when the link state changes; touch feedback overwrites it as usual
+    private final LinkCongestion.Listener congestionListener = state -> {
+        if (state == LinkCongestion.STATE_STALLED) {
+            logToStatus("Link stalled, waiting for host");
+        } else if (state == LinkCongestion.STATE_CONGESTED) {
+            logToStatus("Link busy, retrying");
+        } else {
+            updateStatus();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_touchpad);
 
         touchpadStatus = findViewById(R.id.touchpadStatus);
+        statusPresenter = new StatusPresenter(touchpadStatus);
         touchArea = findViewById(R.id.touchArea);
         scrollStrip = findViewById(R.id.scrollStrip);
         btnLeftClick = findViewById(R.id.btnLeftClick);
@@ -93,8 +131,15 @@ public class TouchpadActivity extends AppCompatActivity {
         btnScrollUp = findViewById(R.id.btnScrollUp);
         btnScrollDown = findViewById(R.id.btnScrollDown);
         btnTouchpadSetting = findViewById(R.id.btnTouchpadSetting);
-
-        touchpadStatus.setText("Connecting to service...");
+        performanceHud = new PerformanceHud(this);
+
+        logToStatus("Connecting to service...");
+        if (BuildConfig.HID_TRACE) {
+            touchpadStatus.setOnLongClickListener(v -> {
+                dumpTrace();
+                return true;
+            });
+        }
 
         Intent serviceIntent = new Intent(this, BluetoothHIDService.class);
         bindService(serviceIntent, serviceConnection, BIND_AUTO_CREATE);
@@ -113,200 +158,137 @@ public class TouchpadActivity extends AppCompatActivity {
         super.onResume();
         // Refresh settings when returning from Settings screen
         loadSensitivitySettings();
+        if (TouchpadSettingsActivity.isPerformanceHudEnabled(this)) {
+            performanceHud.start();
+        } else {
+            performanceHud.stop();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        performanceHud.stop();
     }
 
     private void loadSensitivitySettings() {
-        touchpadSensitivity = TouchpadSettingsActivity.getTouchpadSensitivityMultiplier(this);
-        scrollSensitivity = TouchpadSettingsActivity.getScrollSensitivityMultiplier(this);
+        float touchpadSensitivity = TouchpadSettingsActivity.getTouchpadSensitivityMultiplier(this);
+        float scrollSensitivity = TouchpadSettingsActivity.getScrollSensitivityMultiplier(this);
+        touchProcessor.setSensitivity(touchpadSensitivity, scrollSensitivity);
+        touchProcessor.setAccelerationCurve(
+                AccelerationCurve.forProfile(TouchpadSettingsActivity.getAccelerationProfile(this)));
+        touchProcessor.setJitterFilter(TouchpadSettingsActivity.getJitterFilterCutoffHz(this),
+                TouchpadSettingsActivity.getJitterFilterBeta(this));
+        unbufferedTouch = TouchpadSettingsActivity.isUnbufferedTouchEnabled(this);
+        if (hidService != null) loadPredictionSettings();
         Log.d(TAG, "Loaded Sensitivity: Touch=" + touchpadSensitivity + " Scroll=" + scrollSensitivity);
     }
 
     /**
-     * Applies acceleration curve to raw delta for better responsiveness
-     * Small movements get amplified slightly, large movements capped smoothly
+     * Prediction horizon saved for the connected host; needs the service.
      */
-    private float applyAccelerationCurve(float rawDelta) {
-        if (Math.abs(rawDelta) < 2f) {
-            // Small movements get amplified for snappier response
-            return rawDelta * SENSITIVITY_CURVE;
-        }
-        // Large movements scale naturally
-        return rawDelta;
+    private void loadPredictionSettings() {
+        BluetoothDevice host = hidService.getConnectedDevice();
+        touchProcessor.setPredictionHorizonMillis(TouchpadSettingsActivity.getPredictionHorizonMs(
+                this, host != null ? host.getAddress() : null));
     }
 
     /**
      * Setup touchpad with proper separation of touch area and scroll strip
      * Left side: mouse movement with tap and drag support
      * Right side: scrolling only
+     * Gestures are recognized by the {@link TouchProcessor}; the listeners only pass samples on.
      */
     @SuppressLint("ClickableViewAccessibility")
     private void setupTouchpadUI() {
         // MAIN TOUCHPAD AREA - left side for mouse movement, tap, and drag
         touchArea.setOnTouchListener((v, event) -> {
             if (hidService == null || !hidService.isConnected()) {
-                touchpadStatus.setText("Not connected to device");
+                logToStatus("Not connected to device");
                 return false;
             }
 
-            // Capture coordinates immediately for all cases
-            float currentX = event.getX();
-            float currentY = event.getY();
-
-            switch (event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    lastX = currentX;
-                    lastY = currentY;
-
-                    // Record down state for tap and drag detection
-                    downX = currentX;
-                    downY = currentY;
-                    downTime = event.getEventTime();
-                    tapDownX = currentX;
-                    tapDownY = currentY;
-                    tapDownTime = event.getEventTime();
-
-                    isDragging = false;
-                    moved = false;
-                    accumulatedDeltaX = 0f;
-                    accumulatedDeltaY = 0f;
-                    logToStatus("Touch down");
-                    break;
-
-                case MotionEvent.ACTION_MOVE:
-                    // Raw deltas with precision
-                    float rawDeltaX = currentX - lastX;
-                    float rawDeltaY = currentY - lastY;
-
-                    // Apply user-configured sensitivity multiplier
-                    rawDeltaX *= touchpadSensitivity;
-                    rawDeltaY *= touchpadSensitivity;
-
-                    // Accumulate fractional deltas for sub-pixel precision
-                    accumulatedDeltaX += rawDeltaX;
-                    accumulatedDeltaY += rawDeltaY;
-
-                    // Check if we should start dragging
-                    if (!isDragging && !moved) {
-                        boolean heldLongEnough = (event.getEventTime() - downTime) >= DRAG_START_MS;
-                        boolean smallMoveFromDown =
-                                Math.abs(currentX - downX) <= DRAG_SLOP_PX &&
-                                        Math.abs(currentY - downY) <= DRAG_SLOP_PX;
-
-                        if (heldLongEnough && smallMoveFromDown) {
-                            isDragging = true;
-                            hidService.sendMouseReport((byte) 0x01, 0, 0, 0); // Left button down
-                            logToStatus("Drag start");
-                        }
-                    }
-
-                    // Apply acceleration curve and threshold check
-                    float acceleratedDeltaX = applyAccelerationCurve(rawDeltaX);
-                    float acceleratedDeltaY = applyAccelerationCurve(rawDeltaY);
-
-                    // Only send if accumulated delta exceeds minimum
-                    if (Math.abs(accumulatedDeltaX) >= MIN_SEND_DELTA || Math.abs(accumulatedDeltaY) >= MIN_SEND_DELTA) {
-                        moved = true;
-
-                        // Convert to integer, clamped to -127/127
-                        int sendDeltaX = Math.max(-127, Math.min(127, (int) acceleratedDeltaX));
-                        int sendDeltaY = Math.max(-127, Math.min(127, (int) acceleratedDeltaY));
-
-                        if (isDragging) {
-                            // Move while holding left button
-                            hidService.sendMouseReport((byte) 0x01, sendDeltaX, sendDeltaY, 0);
-                            logToStatus("Drag X:" + sendDeltaX + " Y:" + sendDeltaY);
-                        } else {
-                            // Normal movement (no button)
-                            hidService.sendMouseMovement(sendDeltaX, sendDeltaY);
-                            logToStatus("Move X:" + sendDeltaX + " Y:" + sendDeltaY);
-                        }
-
-                        // Reset accumulated deltas after sending
-                        accumulatedDeltaX = 0f;
-                        accumulatedDeltaY = 0f;
-                    }
-
-                    lastX = currentX;
-                    lastY = currentY;
-                    break;
-
-                case MotionEvent.ACTION_UP:
-                case MotionEvent.ACTION_CANCEL:
-                    if (isDragging) {
-                        // Release button after drag
-                        hidService.sendMouseReport((byte) 0x00, 0, 0, 0);
-                        isDragging = false;
-                        logToStatus("Drag end");
-                    } else if (!moved) {
-                        // Detect single tap (no movement)
-                        long upTime = event.getEventTime();
-                        float upX = currentX;
-                        float upY = currentY;
-
-                        boolean quick = (upTime - tapDownTime) <= TAP_TIMEOUT_MS;
-                        boolean smallMove = Math.abs(upX - tapDownX) <= TAP_SLOP_PX &&
-                                Math.abs(upY - tapDownY) <= TAP_SLOP_PX;
-
-                        if (quick && smallMove) {
-                            hidService.sendMouseClick(1); // Left click
-                            logToStatus("Tap click");
-                        }
+            // Reports queued below are timed from this event (its oldest batched sample)
+            hidService.beginInput(event.getHistorySize() > 0 ? event.getHistoricalEventTime(0) : event.getEventTime());
+
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_MOVE) {
+                // Only the finger the gesture follows; walk its batched samples (oldest first), then the current one
+                int pointerId = touchProcessor.getPadPointerId();
+                int index = event.findPointerIndex(pointerId);
+                if (index >= 0) {
+                    int historySize = event.getHistorySize();
+                    for (int h = 0; h < historySize; h++) {
+                        padSample(pointerId, action, event.getHistoricalX(index, h), event.getHistoricalY(index, h),
+                                event.getHistoricalEventTime(h));
                     }
+                    padSample(pointerId, action, event.getX(index), event.getY(index), event.getEventTime());
+                }
+            } else {
+                // Down, up and cancel refer to the pointer at the action index
+                int index = event.getActionIndex();
+                padSample(event.getPointerId(index), action, event.getX(index), event.getY(index), event.getEventTime());
+            }
 
-                    lastX = 0f;
-                    lastY = 0f;
-                    accumulatedDeltaX = 0f;
-                    accumulatedDeltaY = 0f;
-                    moved = false;
-                    break;
+            if (action == MotionEvent.ACTION_DOWN) {
+                if (unbufferedTouch) v.requestUnbufferedDispatch(event);
+                logToStatus("Touch down");
             }
+            hidService.endInput();
             return true;
         });
 
         // SCROLL STRIP - right side for scrolling only
         scrollStrip.setOnTouchListener((v, event) -> {
-            float y = event.getY();
-
-            switch (event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    lastScrollY = y;
-                    logToStatus("Scroll mode");
-                    return true;
-
-                case MotionEvent.ACTION_MOVE:
-                    float dy = y - lastScrollY;
-
-                    // Only respond to vertical movement
-                    if (Math.abs(dy) > MOVEMENT_THRESHOLD) {
-                        if (hidService != null && hidService.isConnected()) {
-                            // Inverted: swipe down = scroll down (positive), swipe up = scroll up (negative)
-                            int direction = dy > 0 ? SCROLL_MULTIPLIER : -SCROLL_MULTIPLIER;
-
-                            // Apply sensitivity setting
-                            direction = (int) (direction * scrollSensitivity);
-
-                            // Reduce speed: divide by 2
-                            hidService.sendMouseScroll(direction / 2);
-                            logToStatus(direction > 0 ? "Scrolling down" : "Scrolling up");
-                        }
-                    }
-                    lastScrollY = y;
-                    return true;
-
-                case MotionEvent.ACTION_UP:
-                case MotionEvent.ACTION_CANCEL:
-                    logToStatus("Ready");
-                    return true;
+            int action = event.getActionMasked();
+            int index = action == MotionEvent.ACTION_MOVE
+                    ? event.findPointerIndex(touchProcessor.getStripPointerId())
+                    : event.getActionIndex();
+            if (index < 0) return true;
+            boolean connected = hidService != null && hidService.isConnected();
+            if (connected) hidService.beginInput(event.getEventTime());
+            boolean handled = touchProcessor.onStripTouch(event.getPointerId(index), action,
+                    event.getX(index), event.getY(index), TimeUnit.MILLISECONDS.toNanos(event.getEventTime()));
+            if (connected) hidService.endInput();
+
+            if (action == MotionEvent.ACTION_DOWN) {
+                logToStatus("Scroll mode");
+            } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                logToStatus("Ready");
             }
-            return false;
+            return handled;
         });
     }
 
+    /**
+     * One pad sample to the touch processor, plus its trace entry in debug builds.
+     */
+    private void padSample(int pointerId, int action, float x, float y, long timeMillis) {
+        boolean handled = touchProcessor.onPadTouch(pointerId, action, x, y, TimeUnit.MILLISECONDS.toNanos(timeMillis));
+        if (BuildConfig.HID_TRACE && handled) {
+            // Up, cancel and the followed pointer's pointer-up all end the gesture
+            int type = action == MotionEvent.ACTION_DOWN ? TraceRing.TOUCH_DOWN
+                    : action == MotionEvent.ACTION_MOVE ? TraceRing.TOUCH_MOVE : TraceRing.TOUCH_UP;
+            if (type == TraceRing.TOUCH_MOVE) {
+                hidService.traceEvent(type, 0, Math.round(x - tracedX), Math.round(y - tracedY));
+            } else {
+                hidService.traceEvent(type, 0, (int) x, (int) y);
+            }
+            tracedX = x;
+            tracedY = y;
+        }
+    }
+
     @SuppressLint("MissingPermission")
     private void setupControlButtons() {
         // SETTINGS BUTTON
         btnTouchpadSetting.setOnClickListener(v -> {
             Intent intent = new Intent(TouchpadActivity.this, TouchpadSettingsActivity.class);
+            BluetoothDevice host = hidService != null ? hidService.getConnectedDevice() : null;
+            if (host != null) {
+                intent.putExtra(TouchpadSettingsActivity.EXTRA_HOST_ADDRESS, host.getAddress());
+                intent.putExtra(TouchpadSettingsActivity.EXTRA_HOST_NAME, host.getName());
+            }
             startActivity(intent);
         });
 
@@ -317,7 +299,7 @@ public class TouchpadActivity extends AppCompatActivity {
                 logToStatus("Left click (button)");
                 Log.d(TAG, "Left click sent");
             } else {
-                touchpadStatus.setText("Not connected to device");
+                logToStatus("Not connected to device");
             }
         });
 
@@ -328,52 +310,65 @@ public class TouchpadActivity extends AppCompatActivity {
                 logToStatus("Right click");
                 Log.d(TAG, "Right click sent");
             } else {
-                touchpadStatus.setText("Not connected to device");
+                logToStatus("Not connected to device");
             }
         });
 
         // SCROLL UP BUTTON
         btnScrollUp.setOnClickListener(v -> {
             if (hidService != null && hidService.isConnected()) {
-                hidService.sendMouseScroll(SCROLL_MULTIPLIER);
+                hidService.sendMouseScroll(TouchProcessor.SCROLL_MULTIPLIER);
                 logToStatus("Scrolling up");
                 Log.d(TAG, "Scroll up sent");
             } else {
-                touchpadStatus.setText("Not connected to device");
+                logToStatus("Not connected to device");
             }
         });
 
         // SCROLL DOWN BUTTON
         btnScrollDown.setOnClickListener(v -> {
             if (hidService != null && hidService.isConnected()) {
-                hidService.sendMouseScroll(-SCROLL_MULTIPLIER);
+                hidService.sendMouseScroll(-TouchProcessor.SCROLL_MULTIPLIER);
                 logToStatus("Scrolling down");
                 Log.d(TAG, "Scroll down sent");
             } else {
-                touchpadStatus.setText("Not connected to device");
+                logToStatus("Not connected to device");
             }
         });
     }
 
+    /**
+     * Status line only: touch events are in the input trace (debug builds), not the log.
+     * Applied on the next frame, so per-event calls are cheap.
+     */
     private void logToStatus(String message) {
-        touchpadStatus.setText(message);
-        Log.d(TAG, message);
+        statusPresenter.show(message);
+    }
+
+    /**
+     * Debug builds: long-press the status line to save the input trace to a file.
+     */
+    private void dumpTrace() {
+        File file = hidService != null ? hidService.dumpTrace() : null;
+        logToStatus(file != null ? "Trace saved: " + file.getName() : "Trace not saved");
     }
 
     private void updateStatus() {
         if (hidService == null || !hidService.isConnected()) {
-            touchpadStatus.setText("Not connected");
+            logToStatus("Not connected");
         } else {
             BluetoothDevice device = hidService.getConnectedDevice();
             @SuppressLint("MissingPermission")
             String deviceName = (device != null && device.getName() != null) ? device.getName() : "Unknown Device";
-            touchpadStatus.setText("Connected to " + deviceName);
+            logToStatus("Connected to " + deviceName);
         }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        statusPresenter.cancel();
+        if (hidService != null) hidService.removeCongestionListener(congestionListener);
         if (isBound) {
             unbindService(serviceConnection);
             isBound = false;
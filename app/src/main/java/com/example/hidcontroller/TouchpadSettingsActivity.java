@@ -1,18 +1,41 @@
 package com.example.hidcontroller;
 
 import android.os.Bundle;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.SeekBar;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SwitchCompat;
+
+import com.example.hidcontroller.core.AccelerationCurve;
+import com.example.hidcontroller.core.MotionPredictor;
+import com.example.hidcontroller.core.OneEuroFilter;
 
 public class TouchpadSettingsActivity extends AppCompatActivity {
+    /** Address of the connected host, for per-host settings; absent when not connected. */
+    public static final String EXTRA_HOST_ADDRESS = "host_address";
+    public static final String EXTRA_HOST_NAME = "host_name";
 
     private static final String TAG = "TouchpadSettings";
     private static final String PREF_FILE = "touchpad_prefs";
     private static final String PREF_TOUCHPAD_SENSITIVITY = "touchpad_sensitivity";
     private static final String PREF_SCROLL_SENSITIVITY = "scroll_sensitivity";
+    private static final String PREF_PERFORMANCE_HUD = "performance_hud";
+    private static final String PREF_UNBUFFERED_TOUCH = "unbuffered_touch";
+    private static final String PREF_ACCELERATION_PROFILE = "acceleration_profile";
+    private static final String PREF_JITTER_SMOOTHING = "jitter_smoothing";
+    private static final String PREF_JITTER_SPEED = "jitter_speed";
+    // Followed by the host's Bluetooth address
+    private static final String PREF_PREDICTION_MS_PREFIX = "prediction_ms_";
+    // Indexed by AccelerationCurve.PROFILE_*
+    private static final String[] ACCELERATION_PROFILE_NAMES = {"Flat", "Linear", "Adaptive"};
     private SeekBar seekBarTouchpadSensitivity;
     private SeekBar seekBarScrollSensitivity;
     private TextView tvTouchpadValue;
@@ -71,9 +94,111 @@ public class TouchpadSettingsActivity extends AppCompatActivity {
             public void onStopTrackingTouch(SeekBar sb) {}
         });
 
+        Spinner spinnerAccelerationProfile = findViewById(R.id.spinnerAccelerationProfile);
+        ArrayAdapter<String> profileAdapter = new ArrayAdapter<>(
+                this, android.R.layout.simple_spinner_item, ACCELERATION_PROFILE_NAMES);
+        profileAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerAccelerationProfile.setAdapter(profileAdapter);
+        spinnerAccelerationProfile.setSelection(getAccelerationProfile(this));
+        spinnerAccelerationProfile.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                saveInt(PREF_ACCELERATION_PROFILE, position);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        });
+
+        setupValueSeekBar(R.id.seekBarJitterSmoothing, R.id.tvJitterSmoothingValue, PREF_JITTER_SMOOTHING);
+        setupValueSeekBar(R.id.seekBarJitterSpeed, R.id.tvJitterSpeedValue, PREF_JITTER_SPEED);
+
+        setupPredictionSeekBar(getIntent().getStringExtra(EXTRA_HOST_ADDRESS),
+                getIntent().getStringExtra(EXTRA_HOST_NAME));
+
+        SwitchCompat switchUnbufferedTouch = findViewById(R.id.switchUnbufferedTouch);
+        switchUnbufferedTouch.setChecked(getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getBoolean(PREF_UNBUFFERED_TOUCH, false));
+        switchUnbufferedTouch.setOnCheckedChangeListener((button, checked) ->
+                getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                        .edit()
+                        .putBoolean(PREF_UNBUFFERED_TOUCH, checked)
+                        .apply());
+
+        SwitchCompat switchPerformanceHud = findViewById(R.id.switchPerformanceHud);
+        switchPerformanceHud.setChecked(getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getBoolean(PREF_PERFORMANCE_HUD, false));
+        switchPerformanceHud.setOnCheckedChangeListener((button, checked) ->
+                getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                        .edit()
+                        .putBoolean(PREF_PERFORMANCE_HUD, checked)
+                        .apply());
+
         Log.d(TAG, "Settings Activity Created");
     }
 
+    /**
+     * A 0-10 seek bar saved under the given key, default 5, with its value shown next to it.
+     */
+    private void setupValueSeekBar(int seekBarId, int valueId, String key) {
+        SeekBar seekBar = findViewById(seekBarId);
+        TextView tvValue = findViewById(valueId);
+        int saved = getSharedPreferences(PREF_FILE, MODE_PRIVATE).getInt(key, 5);
+        seekBar.setMax(10);
+        seekBar.setProgress(saved);
+        tvValue.setText(String.valueOf(saved));
+        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar sb, int value, boolean fromUser) {
+                tvValue.setText(String.valueOf(value));
+                saveInt(key, value);
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar sb) {}
+
+            @Override
+            public void onStopTrackingTouch(SeekBar sb) {}
+        });
+    }
+
+    /**
+     * Prediction horizon in ms for the connected host; disabled when there is none.
+     */
+    private void setupPredictionSeekBar(@Nullable String hostAddress, @Nullable String hostName) {
+        SeekBar seekBar = findViewById(R.id.seekBarPrediction);
+        TextView tvValue = findViewById(R.id.tvPredictionValue);
+        TextView tvLabel = findViewById(R.id.tvPredictionLabel);
+        seekBar.setMax(MotionPredictor.MAX_HORIZON_MS);
+        if (hostAddress == null) {
+            seekBar.setEnabled(false);
+            tvLabel.setText("Motion Prediction (connect to a host first)");
+            return;
+        }
+        tvLabel.setText("Motion Prediction (" + (TextUtils.isEmpty(hostName) ? hostAddress : hostName) + ")");
+        int saved = getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getInt(PREF_PREDICTION_MS_PREFIX + hostAddress, 0);
+        seekBar.setProgress(saved);
+        tvValue.setText(predictionLabel(saved));
+        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar sb, int value, boolean fromUser) {
+                tvValue.setText(predictionLabel(value));
+                saveInt(PREF_PREDICTION_MS_PREFIX + hostAddress, value);
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar sb) {}
+
+            @Override
+            public void onStopTrackingTouch(SeekBar sb) {}
+        });
+    }
+
+    private static String predictionLabel(int millis) {
+        return millis == 0 ? "Off" : millis + " ms";
+    }
+
     private void saveInt(String key, int value) {
         getSharedPreferences(PREF_FILE, MODE_PRIVATE)
                 .edit()
@@ -107,4 +232,63 @@ public class TouchpadSettingsActivity extends AppCompatActivity {
         Log.d(TAG, "Scroll multiplier: " + multiplier + " (value=" + value + ")");
         return multiplier;
     }
-}
\ No newline at end of file
+
+    /**
+     * Whether the keyboard and touchpad screens show the performance overlay. Off by default.
+     */
+    public static boolean isPerformanceHudEnabled(AppCompatActivity ctx) {
+        return ctx.getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getBoolean(PREF_PERFORMANCE_HUD, false);
+    }
+
+    /**
+     * Whether the touchpad asks for unbuffered touch dispatch: every touch sample is delivered
+     * as soon as the panel reports it instead of being batched per frame. Off by default.
+     */
+    public static boolean isUnbufferedTouchEnabled(AppCompatActivity ctx) {
+        return ctx.getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getBoolean(PREF_UNBUFFERED_TOUCH, false);
+    }
+
+    /**
+     * Selected pointer acceleration profile, one of {@link AccelerationCurve}'s PROFILE_ constants.
+     */
+    public static int getAccelerationProfile(AppCompatActivity ctx) {
+        return ctx.getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getInt(PREF_ACCELERATION_PROFILE, AccelerationCurve.DEFAULT_PROFILE);
+    }
+
+    /**
+     * Jitter filter cutoff at rest in Hz, or 0 when the filter is off.
+     * 0 = off, 5 = 1.5 Hz (normal), 10 = 0.75 Hz (smoothest)
+     */
+    public static float getJitterFilterCutoffHz(AppCompatActivity ctx) {
+        int value = ctx.getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getInt(PREF_JITTER_SMOOTHING, 5);
+        if (value == 0) return 0f;
+        // Formula: 7.5 / value = 7.5 Hz down to 0.75 Hz
+        return (OneEuroFilter.DEFAULT_MIN_CUTOFF_HZ * 5) / value;
+    }
+
+    /**
+     * Jitter filter beta: how fast smoothing drops off with finger speed.
+     * 0 = none, 5 = 0.05 (normal), 10 = 0.1
+     */
+    public static float getJitterFilterBeta(AppCompatActivity ctx) {
+        int value = ctx.getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getInt(PREF_JITTER_SPEED, 5);
+        return value * (OneEuroFilter.DEFAULT_BETA / 5);
+    }
+
+    /**
+     * Motion prediction horizon in ms for the given host, 0 (off, the default) to
+     * {@link MotionPredictor#MAX_HORIZON_MS}. Hosts differ in link and display latency,
+     * so each keeps its own value.
+     */
+    public static int getPredictionHorizonMs(AppCompatActivity ctx, @Nullable String hostAddress) {
+        if (hostAddress == null) return 0;
+        int value = ctx.getSharedPreferences(PREF_FILE, MODE_PRIVATE)
+                .getInt(PREF_PREDICTION_MS_PREFIX + hostAddress, 0);
+        return Math.max(0, Math.min(MotionPredictor.MAX_HORIZON_MS, value));
+    }
+}
@@ -0,0 +1,32 @@
+// Platform-independent HID logic (report codecs, key tables, touch math, report scheduling).
+// Plain JVM module so it can be built, tested and benchmarked without an emulator.
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+// ./gradlew :hid-core:jmh
+// Reports ns/op plus allocation (gc.alloc.rate.norm = bytes/op) as JSON; keep one file per release to compare.
+// Run a subset with -PjmhInclude=KeyTable
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    providers.gradleProperty("jmhInclude").orNull?.let { includes.set(listOf(it)) }
+}
@@ -0,0 +1,71 @@
+package com.example.hidcontroller.core.bench;
+
+import com.example.hidcontroller.core.HIDKeyCode;
+import com.example.hidcontroller.core.KeyCombo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-keystroke cost of turning key labels into HID codes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyTableBenchmark {
+    // Labels as the keyboard sends them, incl. one unknown label
+    private static final String[] LABELS = {
+            "A", "S", "D", "F", "Space", "Enter", "Back", "1", "-", "F5", "Page Down", "Left", "Shift", "Nope"
+    };
+    private static final String[][] COMBOS = {
+            {"Ctrl", "C"}, {"Ctrl", "Shift", "Esc"}, {"Alt", "Tab"}, {"GUI", "L"}, {"Shift", "1"}
+    };
+
+    // Usages resolved once, as KeyboardActivity does at bind time
+    private static final int[] USAGES = new int[LABELS.length];
+
+    static {
+        for (int i = 0; i < LABELS.length; i++) {
+            USAGES[i] = HIDKeyCode.getHIDCode(LABELS[i]);
+        }
+    }
+
+    private int index;
+
+    @Benchmark
+    public int getHIDCode() {
+        index = (index + 1) % LABELS.length;
+        return HIDKeyCode.getHIDCode(LABELS[index]);
+    }
+
+    @Benchmark
+    public void getHIDCodeAllLabels(Blackhole bh) {
+        for (String label : LABELS) {
+            bh.consume(HIDKeyCode.getHIDCode(label));
+        }
+    }
+
+    /** sendKeyPress(String[]) combo parsing. */
+    @Benchmark
+    public int parseCombo() {
+        index = (index + 1) % COMBOS.length;
+        return KeyCombo.parse(COMBOS[index]);
+    }
+
+    /** Per-keystroke path after bind-time resolution: shift pair and modifier bit by array index. */
+    @Benchmark
+    public int usageLookup() {
+        index = (index + 1) % USAGES.length;
+        int usage = USAGES[index];
+        int modifiers = HIDKeyCode.getModifierBit(usage);
+        if (HIDKeyCode.hasShiftedSymbol(usage)) modifiers |= HIDKeyCode.MODIFIER_LEFT_SHIFT;
+        return (modifiers << 8) | usage;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.hidcontroller.core.bench;
+
+import com.example.hidcontroller.core.HidReports;
+import com.example.hidcontroller.core.MouseCoalescer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building keyboard and mouse reports, and of merging mouse reports.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReportEncodingBenchmark {
+    private final byte[] keyboardReport = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+    private final byte[] mouseReport = new byte[HidReports.MOUSE_REPORT_LENGTH];
+    private final MouseCoalescer coalescer = new MouseCoalescer();
+    private int i;
+
+    @Benchmark
+    public byte[] keyboardReport() {
+        i++;
+        HidReports.writeKeyboard(keyboardReport, i & 0x0F, 0x04 + (i & 0x0F));
+        return keyboardReport;
+    }
+
+    @Benchmark
+    public byte[] mouseReport() {
+        i++;
+        // Includes out-of-range deltas so clamping is exercised
+        HidReports.writeMouse(mouseReport, i & 0x01, (i & 0xFF) - 128, 128 - (i & 0xFF), i & 0x03);
+        return mouseReport;
+    }
+
+    /** Four move events merged into one report, as the sender does per interval. */
+    @Benchmark
+    public byte[] coalesceFourMoves() {
+        i++;
+        coalescer.merge(0, i & 7, -(i & 7), 0, i);
+        coalescer.merge(0, 3, 3, 0, i);
+        coalescer.merge(0, -2, 5, 0, i);
+        coalescer.merge(0, 1, -1, 1, i);
+        coalescer.emit(mouseReport);
+        return mouseReport;
+    }
+}
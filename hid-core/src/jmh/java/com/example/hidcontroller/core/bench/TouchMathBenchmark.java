@@ -0,0 +1,86 @@
+package com.example.hidcontroller.core.bench;
+
+import com.example.hidcontroller.core.AccelerationCurve;
+import com.example.hidcontroller.core.HidReports;
+import com.example.hidcontroller.core.OneEuroFilter;
+import com.example.hidcontroller.core.PointerVelocity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Touchpad ACTION_MOVE math: jitter filtering, sensitivity, acceleration and clamping per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TouchMathBenchmark {
+    private static final int TRACE_LENGTH = 1024;
+
+    private final float[] xs = new float[TRACE_LENGTH];
+    private final float[] ys = new float[TRACE_LENGTH];
+    private final PointerVelocity velocity = new PointerVelocity();
+    private final OneEuroFilter filterX = new OneEuroFilter();
+    private final OneEuroFilter filterY = new OneEuroFilter();
+    private final AccelerationCurve curve = AccelerationCurve.forProfile(AccelerationCurve.PROFILE_ADAPTIVE);
+    private float sensitivity = 1.3f;
+    private int index;
+    private float lastX;
+    private float lastY;
+    private long timeMillis;
+
+    @Setup
+    public void recordTrace() {
+        // Finger wandering across the pad: mostly small steps, some fast flicks
+        Random random = new Random(1);
+        float x = 500f, y = 500f;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            float step = random.nextInt(10) == 0 ? 40f : 3f;
+            x += (random.nextFloat() - 0.5f) * step;
+            y += (random.nextFloat() - 0.5f) * step;
+            xs[i] = x;
+            ys[i] = y;
+        }
+    }
+
+    /**
+     * One batched touch sample (4 ms apart, as from a 240 Hz panel) through the adaptive curve's table.
+     */
+    @Benchmark
+    public int moveSample() {
+        index = (index + 1) & (TRACE_LENGTH - 1);
+        float currentX = xs[index];
+        float currentY = ys[index];
+
+        float rawDeltaX = currentX - lastX;
+        float rawDeltaY = currentY - lastY;
+        timeMillis += 4;
+        float speed = velocity.update(rawDeltaX, rawDeltaY, timeMillis);
+        float acceleratedX = curve.apply(rawDeltaX * sensitivity, speed);
+        float acceleratedY = curve.apply(rawDeltaY * sensitivity, speed);
+        lastX = currentX;
+        lastY = currentY;
+
+        int sendX = HidReports.clampDelta((int) acceleratedX);
+        int sendY = HidReports.clampDelta((int) acceleratedY);
+        return sendX ^ (sendY << 8);
+    }
+
+    /**
+     * The jitter filter alone, both axes of one 4 ms touch sample.
+     */
+    @Benchmark
+    public float filterSample() {
+        index = (index + 1) & (TRACE_LENGTH - 1);
+        timeMillis += 4;
+        return filterX.filter(xs[index], timeMillis) + filterY.filter(ys[index], timeMillis);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.hidcontroller.core.bench;
+
+import com.example.hidcontroller.core.AccelerationCurve;
+import com.example.hidcontroller.core.TouchProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole touchpad pipeline per pad sample: gesture state, jitter filter, prediction,
+ * acceleration and report emission, replaying a synthetic trace of swipes and taps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TouchProcessorBenchmark {
+    private static final int TRACE_LENGTH = 1 << 16;
+    private static final long SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+
+    @Param({"0", "16"})
+    public int predictionMs;
+
+    private final int[] actions = new int[TRACE_LENGTH];
+    private final float[] xs = new float[TRACE_LENGTH];
+    private final float[] ys = new float[TRACE_LENGTH];
+    private int index;
+    private long lapNanos;
+
+    // Counted so the emitted reports are not dead code
+    private int reports;
+
+    private final TouchProcessor touch = new TouchProcessor(new TouchProcessor.Output() {
+        @Override
+        public void move(int buttons, int dx, int dy) {
+            reports += dx ^ dy;
+        }
+
+        @Override
+        public void buttons(int buttons) {
+            reports++;
+        }
+
+        @Override
+        public void click(int button) {
+            reports++;
+        }
+
+        @Override
+        public void scroll(int amount) {
+            reports++;
+        }
+    });
+
+    @Setup
+    public void recordTrace() {
+        touch.setSensitivity(1.3f, 1f);
+        touch.setAccelerationCurve(AccelerationCurve.forProfile(AccelerationCurve.PROFILE_ADAPTIVE));
+        touch.setPredictionHorizonMillis(predictionMs);
+
+        // Swipes of 20-200 samples with the odd tap in between, ending with the finger up
+        Random random = new Random(1);
+        int i = 0;
+        while (TRACE_LENGTH - i >= 2) {
+            float x = random.nextFloat() * 1000f, y = random.nextFloat() * 1000f;
+            float stepX = (random.nextFloat() - 0.5f) * 16f, stepY = (random.nextFloat() - 0.5f) * 16f;
+            int moves = random.nextInt(8) == 0 ? 2 : 20 + random.nextInt(180);
+            moves = Math.min(moves, TRACE_LENGTH - i - 2);
+            actions[i] = TouchProcessor.ACTION_DOWN;
+            xs[i] = x;
+            ys[i++] = y;
+            for (int m = 0; m < moves; m++) {
+                x += stepX + random.nextFloat() - 0.5f;
+                y += stepY + random.nextFloat() - 0.5f;
+                actions[i] = TouchProcessor.ACTION_MOVE;
+                xs[i] = x;
+                ys[i++] = y;
+            }
+            actions[i] = TouchProcessor.ACTION_UP;
+            xs[i] = x;
+            ys[i++] = y;
+        }
+        // A sample left over is a stray cancel, which is ignored
+        while (i < TRACE_LENGTH) actions[i++] = TouchProcessor.ACTION_CANCEL;
+    }
+
+    @Benchmark
+    public int padSample() {
+        index = (index + 1) & (TRACE_LENGTH - 1);
+        if (index == 0) lapNanos += TRACE_LENGTH * SAMPLE_NANOS;
+        touch.onPadTouch(0, actions[index], xs[index], ys[index], lapNanos + index * SAMPLE_NANOS);
+        return reports;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.hidcontroller.core.bench;
+
+import com.example.hidcontroller.core.HidReports;
+import com.example.hidcontroller.core.LoopbackTransport;
+import com.example.hidcontroller.core.ReportSender;
+import com.example.hidcontroller.core.TextTyper;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text typing against the loopback transport, pipelined vs. press/release per character.
+ * The chars and reports counters are per second; chars/report = chars / reports.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TypingBenchmark {
+    // Prose with repeated letters, capitals and punctuation, so not every key can be pipelined
+    private static final String TEXT =
+            "Hello, World! The quick brown fox jumps over the lazy dog; "
+                    + "all good men (and women) will see 1000 boats sail by at 10:45pm.\n";
+
+    @Param({"true", "false"})
+    public boolean pipelined;
+
+    private LoopbackTransport transport;
+    private ReportSender sender;
+    private final byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long chars;
+        public long reports;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        transport = new LoopbackTransport(1024);
+        transport.register(new byte[0]);
+        transport.connect("00:11:22:33:44:55");
+        sender = new ReportSender(transport, Thread::new);
+        sender.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sender.stop();
+    }
+
+    /** Typer cost alone: no pacing, driven on the benchmark thread. */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public int typeUnpaced(Counters counters) {
+        TextTyper typer = newTyper(TEXT, 0L, null);
+        long before = transport.getReportCount();
+        long now = 1L;
+        while (typer.writeNext(report, now)) {
+            typer.onSendResult(transport.sendReport(HidReports.KEYBOARD_REPORT_ID, report), now);
+            now = typer.getNextDueNanos();
+        }
+        counters.chars += typer.getTypedCount();
+        counters.reports += transport.getReportCount() - before;
+        return typer.getTypedCount();
+    }
+
+    /** End to end on the sender thread with the default pacing (1 ms minimum gap). */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public int typePaced(Counters counters) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        TextTyper typer = newTyper(TEXT, TextTyper.DEFAULT_MIN_INTERVAL_NANOS, done);
+        long before = transport.getReportCount();
+        sender.type(typer);
+        done.await();
+        counters.chars += typer.getTypedCount();
+        counters.reports += transport.getReportCount() - before;
+        return typer.getTypedCount();
+    }
+
+    private TextTyper newTyper(String text, long minIntervalNanos, CountDownLatch done) {
+        TextTyper typer = new TextTyper(text, new TextTyper.Listener() {
+            @Override
+            public void onProgress(int typed, int total, float charsPerSecond) {}
+
+            @Override
+            public void onFinished(int typed, int skipped, int state) {
+                if (done != null) done.countDown();
+            }
+        }, minIntervalNanos);
+        typer.setPipelined(pipelined);
+        return typer;
+    }
+}
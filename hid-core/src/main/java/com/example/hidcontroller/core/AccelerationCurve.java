@@ -0,0 +1,96 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Pointer acceleration: gain as a function of finger speed (px/ms, see {@link PointerVelocity}).
+ * Each profile is computed once into a lookup table of {@link #TABLE_SIZE} gains spaced
+ * {@link #TABLE_STEP} px/ms apart, so the per-sample cost is one lookup and a linear
+ * interpolation. Speeds past the table use its last gain. Instances are immutable.
+ */
+public final class AccelerationCurve {
+    /** No acceleration: the pointer moves exactly as far as the finger (times sensitivity). */
+    public static final int PROFILE_FLAT = 0;
+    /** 1x up to {@link #LINEAR_SLOW_SPEED}, rising linearly to {@link #LINEAR_MAX_GAIN} at {@link #LINEAR_FAST_SPEED}. */
+    public static final int PROFILE_LINEAR = 1;
+    /**
+     * Shaped like libinput's adaptive profile: slower than the finger at crawling speed for
+     * precise aiming, 1x over a plateau, then rising with speed up to {@link #ADAPTIVE_MAX_GAIN}.
+     */
+    public static final int PROFILE_ADAPTIVE = 2;
+    public static final int PROFILE_COUNT = 3;
+    public static final int DEFAULT_PROFILE = PROFILE_LINEAR;
+
+    public static final int TABLE_SIZE = 65;
+    public static final float TABLE_STEP = 1f / 16;
+
+    public static final float LINEAR_SLOW_SPEED = 0.3f;
+    public static final float LINEAR_FAST_SPEED = 1.5f;
+    public static final float LINEAR_MAX_GAIN = 1.6f;
+
+    // Adaptive: deceleration below the plateau, then a straight incline up to the cap
+    public static final float ADAPTIVE_MIN_GAIN = 0.6f;
+    public static final float ADAPTIVE_PLATEAU_START = 0.125f;
+    public static final float ADAPTIVE_PLATEAU_END = 0.4f;
+    public static final float ADAPTIVE_INCLINE = 1.1f;
+    public static final float ADAPTIVE_MAX_GAIN = 2.5f;
+
+    private static final AccelerationCurve[] PROFILES = new AccelerationCurve[PROFILE_COUNT];
+
+    static {
+        for (int profile = 0; profile < PROFILE_COUNT; profile++) {
+            PROFILES[profile] = new AccelerationCurve(profile);
+        }
+    }
+
+    private final int profile;
+    private final float[] table = new float[TABLE_SIZE];
+
+    private AccelerationCurve(int profile) {
+        this.profile = profile;
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            table[i] = computeGain(profile, i * TABLE_STEP);
+        }
+    }
+
+    /**
+     * @param profile one of the PROFILE_ constants; anything else gives the default profile
+     */
+    public static AccelerationCurve forProfile(int profile) {
+        return profile >= 0 && profile < PROFILE_COUNT ? PROFILES[profile] : PROFILES[DEFAULT_PROFILE];
+    }
+
+    public int getProfile() {
+        return profile;
+    }
+
+    public float gain(float speedPxPerMs) {
+        float position = Math.max(0f, speedPxPerMs) / TABLE_STEP;
+        int i = (int) position;
+        if (i >= TABLE_SIZE - 1) return table[TABLE_SIZE - 1];
+        float fraction = position - i;
+        return table[i] + (table[i + 1] - table[i]) * fraction;
+    }
+
+    public float apply(float delta, float speedPxPerMs) {
+        return delta * gain(speedPxPerMs);
+    }
+
+    /**
+     * The curve itself, evaluated without the table.
+     */
+    static float computeGain(int profile, float speed) {
+        switch (profile) {
+            case PROFILE_LINEAR:
+                if (speed <= LINEAR_SLOW_SPEED) return 1f;
+                if (speed >= LINEAR_FAST_SPEED) return LINEAR_MAX_GAIN;
+                return 1f + (LINEAR_MAX_GAIN - 1f) * (speed - LINEAR_SLOW_SPEED) / (LINEAR_FAST_SPEED - LINEAR_SLOW_SPEED);
+            case PROFILE_ADAPTIVE:
+                if (speed < ADAPTIVE_PLATEAU_START) {
+                    return ADAPTIVE_MIN_GAIN + (1f - ADAPTIVE_MIN_GAIN) * speed / ADAPTIVE_PLATEAU_START;
+                }
+                if (speed <= ADAPTIVE_PLATEAU_END) return 1f;
+                return Math.min(ADAPTIVE_MAX_GAIN, 1f + ADAPTIVE_INCLINE * (speed - ADAPTIVE_PLATEAU_END));
+            default:
+                return 1f;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.hidcontroller.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class HIDKeyCode {
+    private static final Map<String, Integer> keyCodeMap = new HashMap<>();
+
+    public static final byte MODIFIER_LEFT_CTRL = 0x01;
+    public static final byte MODIFIER_LEFT_SHIFT = 0x02;
+    public static final byte MODIFIER_LEFT_ALT = 0x04;
+    public static final byte MODIFIER_LEFT_GUI = 0x08;
+
+    public static final int KEY_NONE = 0x00;
+    public static final int KEY_CAPS_LOCK = 0x39;
+    public static final int KEY_LEFT_CTRL = 0xE0;
+    public static final int KEY_RIGHT_GUI = 0xE7;
+
+    // Dense tables indexed by usage ID, so per-keystroke lookups are plain array reads
+    private static final int USAGE_COUNT = 256;
+    private static final String[] labels = new String[USAGE_COUNT];
+    private static final String[] shiftedLabels = new String[USAGE_COUNT];
+    private static final byte[] modifierBits = new byte[USAGE_COUNT];
+    // Printable ASCII plus \t and \n -> usage and modifiers that type it (US layout)
+    private static final int CHAR_COUNT = 128;
+    private static final byte[] charUsages = new byte[CHAR_COUNT];
+    private static final byte[] charModifiers = new byte[CHAR_COUNT];
+
+    static {
+        // Letters A-Z (0x04-0x1D)
+        keyCodeMap.put("A", 0x04);
+        keyCodeMap.put("B", 0x05);
+        keyCodeMap.put("C", 0x06);
+        keyCodeMap.put("D", 0x07);
+        keyCodeMap.put("E", 0x08);
+        keyCodeMap.put("F", 0x09);
+        keyCodeMap.put("G", 0x0A);
+        keyCodeMap.put("H", 0x0B);
+        keyCodeMap.put("I", 0x0C);
+        keyCodeMap.put("J", 0x0D);
+        keyCodeMap.put("K", 0x0E);
+        keyCodeMap.put("L", 0x0F);
+        keyCodeMap.put("M", 0x10);
+        keyCodeMap.put("N", 0x11);
+        keyCodeMap.put("O", 0x12);
+        keyCodeMap.put("P", 0x13);
+        keyCodeMap.put("Q", 0x14);
+        keyCodeMap.put("R", 0x15);
+        keyCodeMap.put("S", 0x16);
+        keyCodeMap.put("T", 0x17);
+        keyCodeMap.put("U", 0x18);
+        keyCodeMap.put("V", 0x19);
+        keyCodeMap.put("W", 0x1A);
+        keyCodeMap.put("X", 0x1B);
+        keyCodeMap.put("Y", 0x1C);
+        keyCodeMap.put("Z", 0x1D);
+
+        // Numbers 0-9 (0x1E-0x27)
+        for (int i = 0; i <= 9; i++) {
+            keyCodeMap.put(String.valueOf(i), 0x1E + i);
+        }
+
+        // Top row symbols and special keys
+        keyCodeMap.put("Enter", 0x28);
+        keyCodeMap.put("Esc", 0x29);
+        keyCodeMap.put("Back", 0x2A);
+        keyCodeMap.put("Backspace", 0x2A);
+        keyCodeMap.put("Tab", 0x2B);
+        keyCodeMap.put("Space", 0x2C);
+        keyCodeMap.put("-", 0x2D);
+        keyCodeMap.put("=", 0x2E);
+        keyCodeMap.put("[", 0x2F);
+        keyCodeMap.put("]", 0x30);
+        keyCodeMap.put("\\", 0x31);
+        keyCodeMap.put(";", 0x33);
+        keyCodeMap.put("'", 0x34);
+        keyCodeMap.put("`", 0x35);
+        keyCodeMap.put(",", 0x36);
+        keyCodeMap.put(".", 0x37);
+        keyCodeMap.put("/", 0x38);
+
+        // Caps Lock
+        keyCodeMap.put("Caps", 0x39);
+
+        // Function keys F1-F12 (0x3A-0x45)
+        for (int i = 1; i <= 12; i++) {
+            keyCodeMap.put("F" + i, 0x3A + (i - 1));
+        }
+
+        // Navigation keys
+        keyCodeMap.put("Home", 0x4A);
+        keyCodeMap.put("End", 0x4D);
+        keyCodeMap.put("Page Up", 0x4B);
+        keyCodeMap.put("Page Down", 0x4E);
+        keyCodeMap.put("Delete", 0x4C);
+        keyCodeMap.put("Insert", 0x49);
+
+        // Arrow keys
+        keyCodeMap.put("Up", 0x52);
+        keyCodeMap.put("Down", 0x51);
+        keyCodeMap.put("Left", 0x50);
+        keyCodeMap.put("Right", 0x4F);
+
+        // Modifiers (special handling - stored separately)
+        keyCodeMap.put("Ctrl", 0xE0);
+        keyCodeMap.put("Shift", 0xE1);
+        keyCodeMap.put("Alt", 0xE2);
+        keyCodeMap.put("GUI", 0xE3);
+
+        // Menu key
+        keyCodeMap.put("Menu", 0x65);
+
+        for (Map.Entry<String, Integer> entry : keyCodeMap.entrySet()) {
+            int usage = entry.getValue();
+            // "Back" and "Backspace" share a usage; keep the short label
+            if (labels[usage] == null || entry.getKey().length() < labels[usage].length()) {
+                labels[usage] = entry.getKey();
+            }
+        }
+
+        // Modifier usages 0xE0-0xE7 map onto bits 0-7 of the modifier byte
+        for (int usage = KEY_LEFT_CTRL; usage <= KEY_RIGHT_GUI; usage++) {
+            modifierBits[usage] = (byte) (1 << (usage - KEY_LEFT_CTRL));
+        }
+
+        // US layout: what Shift + key types
+        String unshifted = "1234567890-=[]\\;',./`";
+        String shifted = "!@#$%^&*()_+{}|:\"<>?~";
+        for (int i = 0; i < unshifted.length(); i++) {
+            int usage = keyCodeMap.get(String.valueOf(unshifted.charAt(i)));
+            shiftedLabels[usage] = String.valueOf(shifted.charAt(i));
+            charUsages[unshifted.charAt(i)] = (byte) usage;
+            charUsages[shifted.charAt(i)] = (byte) usage;
+            charModifiers[shifted.charAt(i)] = MODIFIER_LEFT_SHIFT;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            int usage = 0x04 + (c - 'a');
+            charUsages[c] = (byte) usage;
+            charUsages[Character.toUpperCase(c)] = (byte) usage;
+            charModifiers[Character.toUpperCase(c)] = MODIFIER_LEFT_SHIFT;
+        }
+        charUsages[' '] = 0x2C;
+        charUsages['\t'] = 0x2B;
+        charUsages['\n'] = 0x28;
+    }
+
+    public static int getHIDCode(String keyLabel) {
+        return keyCodeMap.getOrDefault(keyLabel, 0x00);
+    }
+
+    public static boolean isValidKey(String keyLabel) {
+        return keyCodeMap.containsKey(keyLabel) && keyCodeMap.get(keyLabel) != 0x00;
+    }
+
+    public static boolean isModifier(String label) {
+        return label.equals("Ctrl") || label.equals("Shift") || label.equals("Alt") || label.equals("GUI");
+    }
+
+    // ===== Usage-indexed lookups (no hashing, boxing or string compares) =====
+    /**
+     * Label the usage was registered under, e.g. 0x04 -> "A"; null if unknown.
+     */
+    public static String getLabel(int usage) {
+        return labels[usage & 0xFF];
+    }
+
+    /**
+     * Symbol Shift produces on a US layout, e.g. 0x1E ("1") -> "!"; null for keys without one.
+     */
+    public static String getShiftedLabel(int usage) {
+        return shiftedLabels[usage & 0xFF];
+    }
+
+    public static boolean hasShiftedSymbol(int usage) {
+        return shiftedLabels[usage & 0xFF] != null;
+    }
+
+    /**
+     * Letters A-Z (0x04-0x1D).
+     */
+    public static boolean isLetter(int usage) {
+        return usage >= 0x04 && usage <= 0x1D;
+    }
+
+    /**
+     * Bit in the report's modifier byte for usages 0xE0-0xE7, 0 for all other keys.
+     */
+    public static int getModifierBit(int usage) {
+        return modifierBits[usage & 0xFF] & 0xFF;
+    }
+
+    /**
+     * Usage that types the character on a US layout, e.g. 'a' and 'A' -> 0x04; KEY_NONE if there is none.
+     */
+    public static int getCharUsage(char c) {
+        return c < CHAR_COUNT ? charUsages[c] & 0xFF : KEY_NONE;
+    }
+
+    /**
+     * Modifiers the character needs on top of its usage, e.g. 'A' -> Shift.
+     */
+    public static int getCharModifiers(char c) {
+        return c < CHAR_COUNT ? charModifiers[c] & 0xFF : 0;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.hidcontroller.core;
+
+/**
+ * HID report descriptors registered with the host.
+ */
+public final class HidDescriptors {
+
+    /**
+     * USB HID Descriptor for Keyboard + Mouse
+     * Report ID 1: Keyboard [Modifiers, Reserved, KeyCode1-6] = 8 bytes
+     * Report ID 2: Mouse [Buttons, X, Y, Wheel] = 5 bytes
+     */
+    private static final byte[] KEYBOARD_MOUSE = {
+        // ===== Keyboard (Report ID 1) =====
+        (byte) 0x05, (byte) 0x01,        // Usage Page (Generic Desktop)
+        (byte) 0x09, (byte) 0x06,        // Usage (Keyboard)
+        (byte) 0xa1, (byte) 0x01,        // Collection (Application)
+        (byte) 0x85, (byte) 0x01,        // Report ID (1)
+        (byte) 0x05, (byte) 0x07,        // Usage Page (Keyboard/Keypad)
+        (byte) 0x19, (byte) 0xe0,        // Usage Minimum (Keyboard Left Control)
+        (byte) 0x29, (byte) 0xe7,        // Usage Maximum (Keyboard Right GUI)
+        (byte) 0x15, (byte) 0x00,        // Logical Minimum (0)
+        (byte) 0x25, (byte) 0x01,        // Logical Maximum (1)
+        (byte) 0x75, (byte) 0x01,        // Report Size (1 bit)
+        (byte) 0x95, (byte) 0x08,        // Report Count (8 = modifiers)
+        (byte) 0x81, (byte) 0x02,        // Input (Data, Variable, Absolute)
+        (byte) 0x95, (byte) 0x01,        // Report Count (1)
+        (byte) 0x75, (byte) 0x08,        // Report Size (8 bits)
+        (byte) 0x81, (byte) 0x01,        // Input (Constant) = reserved
+        (byte) 0x95, (byte) 0x06,        // Report Count (6 keys)
+        (byte) 0x75, (byte) 0x08,        // Report Size (8 bits each)
+        (byte) 0x15, (byte) 0x00,        // Logical Minimum (0)
+        (byte) 0x25, (byte) 0x65,        // Logical Maximum (101)
+        (byte) 0x05, (byte) 0x07,        // Usage Page (Keyboard/Keypad)
+        (byte) 0x19, (byte) 0x00,        // Usage Minimum
+        (byte) 0x29, (byte) 0x65,        // Usage Maximum
+        (byte) 0x81, (byte) 0x00,        // Input (Data, Array, Absolute)
+        (byte) 0xc0,                     // End Collection (Keyboard)
+
+        // ===== Mouse (Report ID 2) =====
+        (byte) 0x05, (byte) 0x01,        // Usage Page (Generic Desktop)
+        (byte) 0x09, (byte) 0x02,        // Usage (Mouse)
+        (byte) 0xa1, (byte) 0x01,        // Collection (Application)
+        (byte) 0x85, (byte) 0x02,        // Report ID (2)
+        (byte) 0x09, (byte) 0x01,        // Usage (Pointer)
+        (byte) 0xa1, (byte) 0x00,        // Collection (Physical)
+        (byte) 0x05, (byte) 0x09,        // Usage Page (Button)
+        (byte) 0x19, (byte) 0x01,        // Usage Minimum (Button 1)
+        (byte) 0x29, (byte) 0x03,        // Usage Maximum (Button 3)
+        (byte) 0x15, (byte) 0x00,        // Logical Minimum (0)
+        (byte) 0x25, (byte) 0x01,        // Logical Maximum (1)
+        (byte) 0x75, (byte) 0x01,        // Report Size (1 bit each)
+        (byte) 0x95, (byte) 0x03,        // Report Count (3 buttons)
+        (byte) 0x81, (byte) 0x02,        // Input (Data, Variable, Absolute)
+        (byte) 0x95, (byte) 0x01,        // Report Count (1)
+        (byte) 0x75, (byte) 0x05,        // Report Size (5 bits padding)
+        (byte) 0x81, (byte) 0x01,        // Input (Constant)
+        (byte) 0x05, (byte) 0x01,        // Usage Page (Generic Desktop)
+        (byte) 0x09, (byte) 0x30,        // Usage (X)
+        (byte) 0x09, (byte) 0x31,        // Usage (Y)
+        (byte) 0x09, (byte) 0x38,        // Usage (Wheel)
+        (byte) 0x15, (byte) 0x81,        // Logical Minimum (-127)
+        (byte) 0x25, (byte) 0x7f,        // Logical Maximum (127)
+        (byte) 0x75, (byte) 0x08,        // Report Size (8 bits each)
+        (byte) 0x95, (byte) 0x03,        // Report Count (3 = X, Y, Wheel)
+        (byte) 0x81, (byte) 0x06,        // Input (Data, Variable, Relative)
+        (byte) 0xc0,                     // End Collection (Physical)
+        (byte) 0xc0                      // End Collection (Mouse)
+
+    };
+
+    private HidDescriptors() {}
+
+    public static byte[] keyboardMouse() {
+        return KEYBOARD_MOUSE.clone();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Report IDs, sizes and encoders for the reports in {@link HidDescriptors#keyboardMouse()}.
+ */
+public final class HidReports {
+    // Report ID 1: Keyboard [Modifiers, Reserved, KeyCode1-6]
+    public static final int KEYBOARD_REPORT_ID = 1;
+    public static final int KEYBOARD_REPORT_LENGTH = 8;
+    public static final int KEYBOARD_MAX_KEYS = 6;
+
+    // Report ID 2: Mouse [Buttons, X, Y, Wheel, Padding]
+    public static final int MOUSE_REPORT_ID = 2;
+    public static final int MOUSE_REPORT_LENGTH = 5;
+
+    // Logical range of X, Y and Wheel in the mouse report
+    public static final int MOUSE_DELTA_MAX = 127;
+
+    private HidReports() {}
+
+    /**
+     * Fill an 8-byte keyboard report in place: [modifiers, reserved, keyCode, 0, 0, 0, 0, 0]
+     */
+    public static void writeKeyboard(byte[] report, int modifiers, int keyCode) {
+        report[0] = (byte) modifiers;
+        report[1] = 0x00;  // reserved
+        report[2] = (byte) keyCode;
+        report[3] = 0x00;
+        report[4] = 0x00;
+        report[5] = 0x00;
+        report[6] = 0x00;
+        report[7] = 0x00;
+    }
+
+    /**
+     * Fill a 5-byte mouse report in place: [Buttons, X, Y, Wheel, Padding].
+     * Deltas are clamped to [-127, 127].
+     */
+    public static void writeMouse(byte[] report, int buttons, int dx, int dy, int wheel) {
+        report[0] = (byte) buttons;
+        report[1] = (byte) clampDelta(dx);
+        report[2] = (byte) clampDelta(dy);
+        report[3] = (byte) clampDelta(wheel);
+        report[4] = 0x00;  // Padding
+    }
+
+    public static int clampDelta(int delta) {
+        return Math.max(-MOUSE_DELTA_MAX, Math.min(MOUSE_DELTA_MAX, delta));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Link between the report pipeline and a HID host.
+ * The Bluetooth implementation wraps BluetoothHidDevice; the loopback implementation
+ * records reports in memory so the report logic can run on a plain JVM.
+ * Hosts are identified by address so the interface has no Android types.
+ */
+public interface HidTransport extends ReportSink {
+    // Same values as BluetoothProfile.STATE_*
+    int STATE_DISCONNECTED = 0;
+    int STATE_CONNECTING = 1;
+    int STATE_CONNECTED = 2;
+    int STATE_DISCONNECTING = 3;
+
+    // Report types for GET_REPORT / replyReport (BluetoothHidDevice.REPORT_TYPE_*)
+    int REPORT_TYPE_INPUT = 1;
+    int REPORT_TYPE_OUTPUT = 2;
+    int REPORT_TYPE_FEATURE = 3;
+
+    interface Callback {
+        void onRegistrationChanged(boolean registered);
+
+        void onConnectionStateChanged(String address, int state);
+
+        /**
+         * The host asked for the current value of a report; answer with {@link #replyReport}.
+         */
+        void onGetReport(int type, int reportId, int bufferSize);
+    }
+
+    void setCallback(Callback callback);
+
+    /**
+     * Register as a HID device with the given report descriptor.
+     * @return false if registration could not be started
+     */
+    boolean register(byte[] descriptor);
+
+    void unregister();
+
+    boolean isRegistered();
+
+    boolean connect(String address);
+
+    boolean disconnect(String address);
+
+    boolean isConnected();
+
+    /**
+     * Send an input report to the connected host. Called from the report sender thread.
+     * @return false if there is no host or the report was not accepted
+     */
+    @Override
+    boolean sendReport(int reportId, byte[] report);
+
+    boolean replyReport(int type, int reportId, byte[] report);
+
+    /**
+     * Release the underlying connection and profile; the transport cannot be reused.
+     */
+    void close();
+}
@@ -0,0 +1,41 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Parses key combos like {"Ctrl", "Shift", "S"} into a modifier byte and a key code.
+ * The result is packed into an int so parsing does not allocate.
+ */
+public final class KeyCombo {
+    public static final int NONE = 0;
+
+    private KeyCombo() {}
+
+    /**
+     * @return packed combo, or {@link #NONE} if there is no main key
+     */
+    public static int parse(String[] keys) {
+        int modifiers = 0x00;
+        int mainKeyCode = 0x00;
+        for (String key : keys) {
+            int usage = HIDKeyCode.getHIDCode(key);
+            int modifier = HIDKeyCode.getModifierBit(usage);
+            if (modifier != 0) {
+                modifiers |= modifier;
+            } else {
+                mainKeyCode = usage;
+            }
+        }
+        return mainKeyCode == 0x00 ? NONE : pack(modifiers, mainKeyCode);
+    }
+
+    public static int pack(int modifiers, int keyCode) {
+        return ((modifiers & 0xFF) << 8) | (keyCode & 0xFF);
+    }
+
+    public static int modifiers(int combo) {
+        return (combo >> 8) & 0xFF;
+    }
+
+    public static int keyCode(int combo) {
+        return combo & 0xFF;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.hidcontroller.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Held keys and timed tap releases of the virtual keyboard, on the report sender thread.
+ * Wraps a {@link KeyboardState}: every change that alters the report sends it to the sink.
+ * A tap is a press now plus a release {@link #TAP_HOLD_NANOS} later on the {@link TimerWheel};
+ * other keys stay down meanwhile, so overlapping taps roll over. Modifiers are one byte for
+ * the whole report, so a tap with different modifiers (e.g. 'a' right after '!') first lets
+ * the pending taps that disagree up; otherwise the host would see Shift+a.
+ * Not thread-safe: owned by the sender thread. {@link #readReport(byte[])} may be called from any thread.
+ */
+public final class KeyboardEngine {
+    public static final long TAP_HOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // Held keys plus the 8 modifiers can each have a tap release pending
+    private static final int MAX_PENDING_TAPS = KeyboardState.MAX_KEYS + 8;
+
+    private final KeyboardState keys = new KeyboardState();
+    private final TimerWheel timers;
+    private final ReportSink out;
+    private final byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+
+    // One release timer per usage, so re-tapping or holding a key can cancel its own release
+    private final TimerWheel.Timer[] tapReleases = new TimerWheel.Timer[256];
+    // Usages with a release pending, oldest first
+    private final int[] tapUsages = new int[MAX_PENDING_TAPS];
+    private int tapCount = 0;
+
+    // Last report sent, packed little-endian, for GET_REPORT replies from other threads
+    private volatile long sentReport = 0L;
+
+    public KeyboardEngine(TimerWheel timers, ReportSink out) {
+        this.timers = timers;
+        this.out = out;
+        for (int usage = 0; usage < tapReleases.length; usage++) {
+            final int u = usage;
+            tapReleases[usage] = new TimerWheel.Timer(() -> onTapExpired(u));
+        }
+    }
+
+    /**
+     * Hold a key until {@link #keyUp(int)}. Modifiers given here are held with it.
+     */
+    public void keyDown(int usage, int modifiers) {
+        usage &= 0xFF;
+        if (usage == HIDKeyCode.KEY_NONE) return;
+        // A finger now holds it; a pending tap release must not let it up
+        cancelTap(usage);
+        if (!keys.isPressed(usage) && keys.isFull()) releaseOldestTap();
+        if (keys.press(usage, modifiers)) emit();
+    }
+
+    public void keyUp(int usage) {
+        usage &= 0xFF;
+        cancelTap(usage);
+        if (keys.release(usage)) emit();
+    }
+
+    /**
+     * Press now, release {@link #TAP_HOLD_NANOS} later.
+     */
+    public void tap(int usage, int modifiers, long nowNanos) {
+        usage &= 0xFF;
+        if (usage == HIDKeyCode.KEY_NONE) return;
+
+        if (keys.isPressed(usage)) {
+            // Same key again before its release: let it up first so the host sees a new keystroke
+            cancelTap(usage);
+            keys.release(usage);
+            emit();
+        }
+        releaseTapsWithOtherModifiers(modifiers & 0xFF);
+        if (keys.isFull() || tapCount == MAX_PENDING_TAPS) {
+            // Out of slots: release the oldest tap early rather than drop this key
+            releaseOldestTap();
+        }
+        if (!keys.press(usage, modifiers)) return;
+        emit();
+
+        tapUsages[tapCount++] = usage;
+        timers.schedule(tapReleases[usage], nowNanos + TAP_HOLD_NANOS);
+    }
+
+    /**
+     * Let every key up, held or tapped.
+     */
+    public void releaseAll() {
+        cancelAllTaps();
+        keys.releaseAll();
+        emit();
+    }
+
+    /**
+     * Forget all keys without sending anything, e.g. after the host disconnects.
+     */
+    public void reset() {
+        cancelAllTaps();
+        keys.reset();
+        sentReport = 0L;
+    }
+
+    /**
+     * Copy the last keyboard report sent into an 8-byte array. Any thread.
+     */
+    public void readReport(byte[] dst) {
+        long packed = sentReport;
+        for (int i = 0; i < HidReports.KEYBOARD_REPORT_LENGTH; i++) {
+            dst[i] = (byte) (packed >>> (8 * i));
+        }
+    }
+
+    public int getPendingTapCount() {
+        return tapCount;
+    }
+
+    private void onTapExpired(int usage) {
+        removeTap(usage);
+        if (keys.release(usage)) emit();
+    }
+
+    private void releaseOldestTap() {
+        if (tapCount == 0) return;
+        int usage = tapUsages[0];
+        cancelTap(usage);
+        if (keys.release(usage)) emit();
+    }
+
+    private void releaseTapsWithOtherModifiers(int modifiers) {
+        boolean released = false;
+        for (int i = tapCount - 1; i >= 0; i--) {
+            int tapped = tapUsages[i];
+            int tappedModifiers = keys.getKeyModifiers(tapped);
+            // Modifier taps (-1) are meant to combine
+            if (tappedModifiers < 0 || tappedModifiers == modifiers) continue;
+            cancelTap(tapped);
+            released |= keys.release(tapped);
+        }
+        if (released) emit();
+    }
+
+    private void cancelTap(int usage) {
+        if (timers.cancel(tapReleases[usage])) removeTap(usage);
+    }
+
+    private void cancelAllTaps() {
+        for (int i = 0; i < tapCount; i++) {
+            timers.cancel(tapReleases[tapUsages[i]]);
+        }
+        tapCount = 0;
+    }
+
+    private void removeTap(int usage) {
+        for (int i = 0; i < tapCount; i++) {
+            if (tapUsages[i] != usage) continue;
+            System.arraycopy(tapUsages, i + 1, tapUsages, i, tapCount - i - 1);
+            tapCount--;
+            return;
+        }
+    }
+
+    private void emit() {
+        if (!keys.pollReport(report)) return;
+        long packed = 0L;
+        for (int i = 0; i < HidReports.KEYBOARD_REPORT_LENGTH; i++) {
+            packed |= (report[i] & 0xFFL) << (8 * i);
+        }
+        sentReport = packed;
+        out.sendReport(HidReports.KEYBOARD_REPORT_ID, report);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.hidcontroller.core;
+
+import java.util.Arrays;
+
+/**
+ * Held-key state of the virtual keyboard: a modifier bitmap plus up to six
+ * held usages (6-key rollover), in press order.
+ * Callers change the state with press/release and then call {@link #pollReport(byte[])},
+ * which writes a report only if the state differs from the last one emitted,
+ * so overlapping keys never wipe each other out and no redundant reports are sent.
+ * <p>
+ * A key can carry modifiers of its own (e.g. Shift for "A"); they are held
+ * exactly as long as the key, on top of modifiers pressed on their own.
+ * Not thread-safe: use from one thread.
+ */
+public final class KeyboardState {
+    public static final int MAX_KEYS = HidReports.KEYBOARD_MAX_KEYS;
+
+    // Modifiers pressed as keys (Ctrl, Shift, ... usages 0xE0-0xE7)
+    private int heldModifiers = 0;
+    // Extra modifiers a held modifier key was pressed with, by modifier bit index
+    private final int[] modifierKeyModifiers = new int[8];
+    // Modifiers pressed with KEY_NONE, held until KEY_NONE is released
+    private int noKeyModifiers = 0;
+    private final int[] keys = new int[MAX_KEYS];
+    private final int[] keyModifiers = new int[MAX_KEYS];
+    private int keyCount = 0;
+
+    // What the host last saw
+    private int sentModifiers = 0;
+    private final int[] sentKeys = new int[MAX_KEYS];
+    private int sentKeyCount = 0;
+
+    /**
+     * Press a key. Modifier usages go into the modifier bitmap.
+     * @param modifiers extra modifier bits held for as long as this key is
+     * @return false if all six key slots are taken (the key is not pressed)
+     */
+    public boolean press(int usage, int modifiers) {
+        usage &= 0xFF;
+        int modifierBit = HIDKeyCode.getModifierBit(usage);
+        if (modifierBit != 0) {
+            heldModifiers |= modifierBit;
+            modifierKeyModifiers[Integer.numberOfTrailingZeros(modifierBit)] |= modifiers & 0xFF & ~modifierBit;
+            return true;
+        }
+        if (usage == HIDKeyCode.KEY_NONE) {
+            noKeyModifiers |= modifiers & 0xFF;
+            return true;
+        }
+
+        int index = indexOf(usage);
+        if (index >= 0) {
+            keyModifiers[index] |= modifiers & 0xFF;
+            return true;
+        }
+        if (keyCount == MAX_KEYS) return false;
+        keys[keyCount] = usage;
+        keyModifiers[keyCount] = modifiers & 0xFF;
+        keyCount++;
+        return true;
+    }
+
+    /**
+     * Release a key and any modifiers it was pressed with.
+     * @return false if the key was not held
+     */
+    public boolean release(int usage) {
+        usage &= 0xFF;
+        int modifierBit = HIDKeyCode.getModifierBit(usage);
+        if (modifierBit != 0) {
+            boolean held = (heldModifiers & modifierBit) != 0;
+            heldModifiers &= ~modifierBit;
+            modifierKeyModifiers[Integer.numberOfTrailingZeros(modifierBit)] = 0;
+            return held;
+        }
+        if (usage == HIDKeyCode.KEY_NONE) {
+            boolean held = noKeyModifiers != 0;
+            noKeyModifiers = 0;
+            return held;
+        }
+
+        int index = indexOf(usage);
+        if (index < 0) return false;
+        // Keep the remaining keys in press order
+        for (int i = index + 1; i < keyCount; i++) {
+            keys[i - 1] = keys[i];
+            keyModifiers[i - 1] = keyModifiers[i];
+        }
+        keyCount--;
+        return true;
+    }
+
+    public void pressModifiers(int modifiers) {
+        heldModifiers |= modifiers & 0xFF;
+    }
+
+    public void releaseModifiers(int modifiers) {
+        heldModifiers &= ~modifiers;
+    }
+
+    /**
+     * Release every key and modifier. The next poll emits an all-up report if the host saw any key.
+     */
+    public void releaseAll() {
+        heldModifiers = 0;
+        Arrays.fill(modifierKeyModifiers, 0);
+        noKeyModifiers = 0;
+        keyCount = 0;
+    }
+
+    /**
+     * Forget both the held keys and what was sent, e.g. after the host disconnects.
+     */
+    public void reset() {
+        releaseAll();
+        sentModifiers = 0;
+        sentKeyCount = 0;
+    }
+
+    public boolean isPressed(int usage) {
+        usage &= 0xFF;
+        int modifierBit = HIDKeyCode.getModifierBit(usage);
+        if (modifierBit != 0) return (heldModifiers & modifierBit) != 0;
+        return indexOf(usage) >= 0;
+    }
+
+    public boolean isFull() {
+        return keyCount == MAX_KEYS;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return the i-th held usage, oldest first
+     */
+    public int getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * @return the modifiers a held key was pressed with, or -1 if the usage is not a held key
+     */
+    public int getKeyModifiers(int usage) {
+        int index = indexOf(usage & 0xFF);
+        return index >= 0 ? keyModifiers[index] : -1;
+    }
+
+    /**
+     * Modifier byte of the current state: held modifiers plus those carried by held keys.
+     */
+    public int getModifiers() {
+        int modifiers = heldModifiers | noKeyModifiers;
+        for (int bit = 0; bit < modifierKeyModifiers.length; bit++) {
+            if ((heldModifiers & (1 << bit)) != 0) modifiers |= modifierKeyModifiers[bit];
+        }
+        for (int i = 0; i < keyCount; i++) {
+            modifiers |= keyModifiers[i];
+        }
+        return modifiers;
+    }
+
+    /**
+     * @return true if the current state differs from the last emitted report
+     */
+    public boolean isDirty() {
+        if (getModifiers() != sentModifiers || keyCount != sentKeyCount) return true;
+        for (int i = 0; i < keyCount; i++) {
+            if (keys[i] != sentKeys[i]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Write the 8-byte keyboard report for the current state if it changed since the last one.
+     * @return true if a report was written and should be sent
+     */
+    public boolean pollReport(byte[] report) {
+        if (!isDirty()) return false;
+        sentModifiers = getModifiers();
+        sentKeyCount = keyCount;
+        System.arraycopy(keys, 0, sentKeys, 0, keyCount);
+        writeReport(report);
+        return true;
+    }
+
+    /**
+     * Write the report for the current state without touching the sent state.
+     */
+    public void writeReport(byte[] report) {
+        report[0] = (byte) getModifiers();
+        report[1] = 0x00;  // reserved
+        for (int i = 0; i < MAX_KEYS; i++) {
+            report[2 + i] = i < keyCount ? (byte) keys[i] : 0x00;
+        }
+    }
+
+    private int indexOf(int usage) {
+        for (int i = 0; i < keyCount; i++) {
+            if (keys[i] == usage) return i;
+        }
+        return -1;
+    }
+}
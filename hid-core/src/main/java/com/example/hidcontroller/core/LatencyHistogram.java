@@ -0,0 +1,137 @@
+package com.example.hidcontroller.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-bucketed latency histogram in microseconds. Each power of two is split into
+ * {@link #SUB_BUCKETS} linear buckets, so a percentile is within 1/8 (12.5%) of the true
+ * value; everything at or above {@link #MAX_MICROS} lands in the last bucket.
+ * Recording is lock-free and allocation-free from any thread; {@link #snapshot()} copies
+ * the counts for percentiles.
+ */
+public final class LatencyHistogram {
+    public static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    // 2^26 us is about 67 s
+    private static final int MAX_EXPONENT = 26;
+    public static final long MAX_MICROS = 1L << MAX_EXPONENT;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong maxMicros = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+
+    /**
+     * Record one latency; negative values (clock skew between stamps) count as 0.
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(Math.max(0L, nanos)));
+    }
+
+    public void recordMicros(long micros) {
+        counts.incrementAndGet(bucketOf(micros));
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get())) {
+            if (maxMicros.compareAndSet(max, micros)) break;
+        }
+    }
+
+    /**
+     * Start over, e.g. between benchmark runs. Samples recorded meanwhile may or may not survive.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        maxMicros.set(0L);
+        totalMicros.set(0L);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, maxMicros.get(), totalMicros.get());
+    }
+
+    // Values below SUB_BUCKETS get one bucket each; above, 8 buckets per power of two
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        if (micros >= MAX_MICROS) return BUCKETS - 1;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Highest value that falls in the bucket
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        if (bucket >= BUCKETS - 1) return Long.MAX_VALUE;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long lower = (1L << exponent) + ((long) sub << (exponent - SUB_BITS));
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Counts at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long maxMicros;
+        private final long totalMicros;
+
+        Snapshot(long[] counts, long count, long maxMicros, long totalMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.maxMicros = maxMicros;
+            this.totalMicros = totalMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        public long getMeanMicros() {
+            return count == 0 ? 0L : totalMicros / count;
+        }
+
+        /**
+         * @param percentile 0-100, e.g. 99 for p99
+         * @return upper bound of the bucket holding that sample (never above the max); 0 if empty
+         */
+        public long getPercentileMicros(double percentile) {
+            if (count == 0) return 0L;
+            long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBoundOf(i), maxMicros);
+            }
+            return maxMicros;
+        }
+
+        public long getP50Micros() {
+            return getPercentileMicros(50);
+        }
+
+        public long getP95Micros() {
+            return getPercentileMicros(95);
+        }
+
+        public long getP99Micros() {
+            return getPercentileMicros(99);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Latency histograms per report type and per stage of a report's way from the touch (or key)
+ * event to the host:
+ * <pre>
+ *   event time -INPUT-> listener entry -HANDLER-> enqueue -QUEUE-> send starts -SEND-> sendReport() returns
+ *   |&lt;------------------------------------- TOTAL -------------------------------------&gt;|
+ * </pre>
+ * INPUT is recorded once per input event; the others once per report. QUEUE and TOTAL are only
+ * recorded for reports the link accepted, TOTAL only when the input was stamped (see
+ * {@link ReportSender#setInputStamp(long, long)}). Merged mouse reports count from the oldest
+ * input folded in. All methods may be called from any thread.
+ */
+public final class LatencyStats {
+    public static final int TYPE_KEYBOARD = 0;
+    public static final int TYPE_MOUSE = 1;
+    private static final int TYPES = 2;
+
+    /** Input event time to listener entry: input dispatch delay. */
+    public static final int STAGE_INPUT = 0;
+    /** Listener entry to enqueue: time spent in the app's input handling. */
+    public static final int STAGE_HANDLER = 1;
+    /** Enqueue to the start of sendReport(): queueing and pacing. */
+    public static final int STAGE_QUEUE = 2;
+    /** The sendReport() call itself. */
+    public static final int STAGE_SEND = 3;
+    /** Input event (or listener entry, if the event time is unknown) to sendReport() returning. */
+    public static final int STAGE_TOTAL = 4;
+    private static final int STAGES = 5;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[TYPES * STAGES];
+
+    public LatencyStats() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return {@link #TYPE_MOUSE} for mouse reports, {@link #TYPE_KEYBOARD} for everything else
+     */
+    public static int typeOf(int reportId) {
+        return reportId == HidReports.MOUSE_REPORT_ID ? TYPE_MOUSE : TYPE_KEYBOARD;
+    }
+
+    public LatencyHistogram get(int type, int stage) {
+        return histograms[type * STAGES + stage];
+    }
+
+    public void record(int type, int stage, long nanos) {
+        histograms[type * STAGES + stage].recordNanos(nanos);
+    }
+
+    public LatencyHistogram.Snapshot snapshot(int type, int stage) {
+        return get(type, stage).snapshot();
+    }
+
+    /**
+     * Clear every histogram, e.g. at the start of a benchmark run.
+     */
+    public void reset() {
+        for (LatencyHistogram h : histograms) {
+            h.reset();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.hidcontroller.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Congestion state of the link, driven by sendReport() results.
+ * A refused report means the controller's queue is full: the {@link ReportSender} keeps
+ * lossless reports and retries them after {@link #getRetryDelayNanos()}, which doubles
+ * with every refusal in a row. The state is for the UI: {@link #STATE_CONGESTED} while
+ * reports are being refused, {@link #STATE_STALLED} once nothing has gone through for
+ * {@link #STALL_NANOS}, and back to {@link #STATE_CLEAR} after a few sends in a row succeed.
+ * Results are fed on the sender thread; getters may be called from any thread.
+ */
+public final class LinkCongestion {
+    public static final int STATE_CLEAR = 0;
+    public static final int STATE_CONGESTED = 1;
+    public static final int STATE_STALLED = 2;
+
+    public static final long MIN_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    public static final long MAX_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(64);
+    public static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    // Successes in a row before a congested link counts as clear again, so the state does not flap
+    private static final int CLEAR_AFTER_SUCCESSES = 8;
+
+    /**
+     * Called on the sender thread whenever the state changes; keep it short.
+     */
+    public interface Listener {
+        void onCongestionChanged(int state);
+    }
+
+    private volatile Listener listener;
+    private volatile int state = STATE_CLEAR;
+
+    // Sender thread only
+    private long retryDelayNanos = 0L;
+    private long firstRefusedNanos = 0L;
+    private int consecutiveFailures = 0;
+    private int consecutiveSuccesses = 0;
+
+    // Stats, written by the sender thread
+    private volatile long refusedCount = 0L;
+    private volatile long congestionCount = 0L;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Feed the result of one sendReport() call. Sender thread only.
+     */
+    public void onSendResult(boolean ok, long nowNanos) {
+        if (ok) {
+            consecutiveFailures = 0;
+            retryDelayNanos = 0L;
+            if (state != STATE_CLEAR && ++consecutiveSuccesses >= CLEAR_AFTER_SUCCESSES) {
+                setState(STATE_CLEAR);
+            }
+            return;
+        }
+
+        refusedCount++;
+        consecutiveSuccesses = 0;
+        if (consecutiveFailures++ == 0) firstRefusedNanos = nowNanos;
+        retryDelayNanos = retryDelayNanos == 0L ? MIN_RETRY_NANOS
+                : Math.min(MAX_RETRY_NANOS, retryDelayNanos * 2);
+
+        if (nowNanos - firstRefusedNanos >= STALL_NANOS) {
+            setState(STATE_STALLED);
+        } else if (state == STATE_CLEAR) {
+            congestionCount++;
+            setState(STATE_CONGESTED);
+        }
+    }
+
+    /**
+     * How long to wait before retrying a refused report; 0 while sends succeed.
+     */
+    public long getRetryDelayNanos() {
+        return retryDelayNanos;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public boolean isCongested() {
+        return state != STATE_CLEAR;
+    }
+
+    /**
+     * Back to clear without a send, e.g. after the host disconnected.
+     */
+    public void reset() {
+        consecutiveFailures = 0;
+        consecutiveSuccesses = 0;
+        retryDelayNanos = 0L;
+        setState(STATE_CLEAR);
+    }
+
+    private void setState(int newState) {
+        if (state == newState) return;
+        state = newState;
+        Listener l = listener;
+        if (l != null) l.onCongestionChanged(newState);
+    }
+
+    // ===== STATS =====
+    /** sendReport() calls that returned false. */
+    public long getRefusedCount() {
+        return refusedCount;
+    }
+
+    /** Times the link went from clear to congested. */
+    public long getCongestionCount() {
+        return congestionCount;
+    }
+}
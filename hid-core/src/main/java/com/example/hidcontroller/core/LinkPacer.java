@@ -0,0 +1,135 @@
+package com.example.hidcontroller.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report tick for the {@link ReportSender}: at most one report per report ID goes out per tick.
+ * Ticks follow Bluetooth connection intervals (multiples of 1.25 ms). In auto mode the tick
+ * is tuned from how long sendReport() takes to complete: when the stack starts queueing,
+ * the call slows down and the tick moves to a longer interval, so latency stays flat
+ * instead of piling up in the controller's queue.
+ * Tuning runs on the sender thread; getters may be called from any thread.
+ */
+public final class LinkPacer {
+    public static final long TICK_7_5_MS = TimeUnit.MICROSECONDS.toNanos(7500);
+    public static final long TICK_11_25_MS = TimeUnit.MICROSECONDS.toNanos(11250);
+    public static final long TICK_15_MS = TimeUnit.MICROSECONDS.toNanos(15000);
+    private static final long[] AUTO_TICKS = {TICK_7_5_MS, TICK_11_25_MS, TICK_15_MS};
+
+    // A tick must leave room for a sendReport() this many times the typical one
+    private static final int HEADROOM = 2;
+    // Completions per tuning decision
+    private static final int TUNE_WINDOW = 32;
+    // Windows in a row that must agree before the tick gets shorter
+    private static final int STEP_DOWN_WINDOWS = 2;
+
+    private volatile long fixedTickNanos;
+    private volatile boolean auto = false;
+    private volatile long autoTickNanos = TICK_7_5_MS;
+
+    // Sender thread only
+    private long ewmaNanos = 0L;
+    private int windowCount = 0;
+    private int stepDownVotes = 0;
+
+    // Stats, written by the sender thread
+    private volatile long completionCount = 0L;
+    private volatile long lastCompletionNanos = 0L;
+    private volatile long maxCompletionNanos = 0L;
+    private volatile long typicalCompletionNanos = 0L;
+    private volatile long tickChangeCount = 0L;
+
+    public LinkPacer(long fixedTickNanos) {
+        this.fixedTickNanos = Math.max(0L, fixedTickNanos);
+    }
+
+    /**
+     * Tick used while auto mode is off.
+     * @param tickNanos 0 to send every report as soon as it is ready
+     */
+    public void setFixedTickNanos(long tickNanos) {
+        fixedTickNanos = Math.max(0L, tickNanos);
+    }
+
+    public void setAuto(boolean auto) {
+        this.auto = auto;
+    }
+
+    public boolean isAuto() {
+        return auto;
+    }
+
+    /**
+     * Current minimum spacing between two reports with the same ID; 0 means unpaced.
+     */
+    public long getTickNanos() {
+        return auto ? autoTickNanos : fixedTickNanos;
+    }
+
+    /**
+     * Feed the duration of one sendReport() call. Sender thread only.
+     */
+    public void onSendCompleted(long durationNanos) {
+        completionCount++;
+        lastCompletionNanos = durationNanos;
+        if (durationNanos > maxCompletionNanos) maxCompletionNanos = durationNanos;
+
+        ewmaNanos = ewmaNanos == 0L ? durationNanos : ewmaNanos + ((durationNanos - ewmaNanos) >> 3);
+        typicalCompletionNanos = ewmaNanos;
+        if (++windowCount < TUNE_WINDOW) return;
+        windowCount = 0;
+        tune();
+    }
+
+    private void tune() {
+        long target = ewmaNanos * HEADROOM;
+        long wanted = AUTO_TICKS[AUTO_TICKS.length - 1];
+        for (long tick : AUTO_TICKS) {
+            if (tick >= target) {
+                wanted = tick;
+                break;
+            }
+        }
+
+        long current = autoTickNanos;
+        if (wanted > current) {
+            // Congestion: back off right away
+            stepDownVotes = 0;
+            setAutoTick(wanted);
+        } else if (wanted < current) {
+            if (++stepDownVotes >= STEP_DOWN_WINDOWS) {
+                stepDownVotes = 0;
+                setAutoTick(wanted);
+            }
+        } else {
+            stepDownVotes = 0;
+        }
+    }
+
+    private void setAutoTick(long tick) {
+        autoTickNanos = tick;
+        tickChangeCount++;
+    }
+
+    // ===== STATS =====
+    public long getCompletionCount() {
+        return completionCount;
+    }
+
+    public long getLastCompletionMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lastCompletionNanos);
+    }
+
+    public long getMaxCompletionMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxCompletionNanos);
+    }
+
+    /** Smoothed sendReport() duration the auto tick is tuned from. */
+    public long getTypicalCompletionMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(typicalCompletionNanos);
+    }
+
+    public long getTickChangeCount() {
+        return tickChangeCount;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.hidcontroller.core;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory {@link HidTransport} that records every report with a System.nanoTime() stamp.
+ * Lets throughput and latency tests drive the real report pipeline on a plain JVM.
+ * The most recent {@code capacity} reports are kept; recording does not allocate.
+ * Callbacks run synchronously on the calling thread.
+ */
+public final class LoopbackTransport implements HidTransport {
+    private final int capacity;
+    private final int[] reportIds;
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final byte[] data;
+
+    private Callback callback;
+    private volatile boolean registered = false;
+    private volatile String connectedAddress;
+    private volatile long sendDelayNanos = 0L;
+    private volatile int failuresToInject = 0;
+
+    // Written by the sending thread only
+    private volatile long reportCount = 0L;
+    private volatile long rejectedCount = 0L;
+    private volatile long replyCount = 0L;
+
+    public LoopbackTransport(int capacity) {
+        this.capacity = capacity;
+        reportIds = new int[capacity];
+        lengths = new int[capacity];
+        timestamps = new long[capacity];
+        data = new byte[capacity * ReportRing.MAX_REPORT_LENGTH];
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public boolean register(byte[] descriptor) {
+        registered = true;
+        if (callback != null) callback.onRegistrationChanged(true);
+        return true;
+    }
+
+    @Override
+    public void unregister() {
+        registered = false;
+        if (callback != null) callback.onRegistrationChanged(false);
+    }
+
+    @Override
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    @Override
+    public boolean connect(String address) {
+        if (!registered) return false;
+        if (callback != null) callback.onConnectionStateChanged(address, STATE_CONNECTING);
+        connectedAddress = address;
+        if (callback != null) callback.onConnectionStateChanged(address, STATE_CONNECTED);
+        return true;
+    }
+
+    @Override
+    public boolean disconnect(String address) {
+        if (!address.equals(connectedAddress)) return false;
+        connectedAddress = null;
+        if (callback != null) callback.onConnectionStateChanged(address, STATE_DISCONNECTED);
+        return true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connectedAddress != null;
+    }
+
+    // ----- Link simulation -----
+    /**
+     * Make each sendReport() take at least this long, like a busy binder/controller.
+     */
+    public void setSendDelayNanos(long nanos) {
+        sendDelayNanos = nanos;
+    }
+
+    /**
+     * The next {@code count} sendReport() calls return false without recording.
+     */
+    public void failNextSends(int count) {
+        failuresToInject = count;
+    }
+
+    // ----- Reports -----
+    @Override
+    public boolean sendReport(int reportId, byte[] report) {
+        if (connectedAddress == null) return false;
+
+        long delay = sendDelayNanos;
+        if (delay > 0) {
+            long until = System.nanoTime() + delay;
+            long remaining;
+            while ((remaining = until - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+
+        int failures = failuresToInject;
+        if (failures > 0) {
+            failuresToInject = failures - 1;
+            rejectedCount++;
+            return false;
+        }
+
+        long n = reportCount;
+        int slot = (int) (n % capacity);
+        reportIds[slot] = reportId;
+        lengths[slot] = report.length;
+        timestamps[slot] = System.nanoTime();
+        System.arraycopy(report, 0, data, slot * ReportRing.MAX_REPORT_LENGTH, report.length);
+        reportCount = n + 1;
+        return true;
+    }
+
+    @Override
+    public boolean replyReport(int type, int reportId, byte[] report) {
+        if (connectedAddress == null) return false;
+        replyCount++;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        connectedAddress = null;
+        registered = false;
+        callback = null;
+    }
+
+    // ----- Recorded reports -----
+    /** Total reports accepted since creation or {@link #clear()}. */
+    public long getReportCount() {
+        return reportCount;
+    }
+
+    /** Number of reports still held, oldest first: index 0 .. getRecordedCount() - 1. */
+    public int getRecordedCount() {
+        return (int) Math.min(reportCount, capacity);
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public long getReplyCount() {
+        return replyCount;
+    }
+
+    public int getReportId(int index) {
+        return reportIds[slot(index)];
+    }
+
+    public long getTimestampNanos(int index) {
+        return timestamps[slot(index)];
+    }
+
+    public int getByte(int index, int offset) {
+        return data[slot(index) * ReportRing.MAX_REPORT_LENGTH + offset];
+    }
+
+    public byte[] getReport(int index) {
+        int slot = slot(index);
+        int start = slot * ReportRing.MAX_REPORT_LENGTH;
+        return Arrays.copyOfRange(data, start, start + lengths[slot]);
+    }
+
+    /** Forget recorded reports; call only while nothing is sending. */
+    public void clear() {
+        reportCount = 0L;
+        rejectedCount = 0L;
+        replyCount = 0L;
+    }
+
+    private int slot(int index) {
+        long oldest = Math.max(0L, reportCount - capacity);
+        return (int) ((oldest + index) % capacity);
+    }
+}
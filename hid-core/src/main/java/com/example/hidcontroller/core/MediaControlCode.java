@@ -1,4 +1,4 @@
-package com.example.hidcontroller;
+package com.example.hidcontroller.core;
 
 import java.util.HashMap;
 import java.util.Map;
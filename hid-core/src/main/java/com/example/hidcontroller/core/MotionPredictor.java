@@ -0,0 +1,192 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Linear extrapolation of the finger position, to hide the time a report spends on the
+ * Bluetooth link: the cursor is moved to where the finger will be {@link #getHorizonMillis()}
+ * from now instead of where it was. Velocity is a least-squares fit over the last
+ * {@link #HISTORY} samples no older than {@link #WINDOW_MS}.
+ * The output is a position, so overshoot corrects itself: when the finger slows down the
+ * next predicted position is closer, and the cursor moves back by the difference.
+ * Prediction switches off when the finger reverses direction or pauses, and comes back once
+ * {@link #MIN_SAMPLES} samples agree on the new direction.
+ * Not thread-safe, allocation-free.
+ */
+public final class MotionPredictor {
+    public static final int MAX_HORIZON_MS = 30;
+    public static final int HISTORY = 6;
+    public static final int MIN_SAMPLES = 3;
+    public static final long WINDOW_MS = 50;
+    // Steps shorter than this never count as a reversal, so jitter does not switch prediction off
+    private static final float REVERSAL_MIN_STEP_PX = 0.5f;
+
+    private int horizonMillis;
+
+    // Ring of recent samples, newest at head
+    private final float[] xs = new float[HISTORY];
+    private final float[] ys = new float[HISTORY];
+    private final long[] times = new long[HISTORY];
+    private int head = 0;
+    private int size = 0;
+
+    private float velocityX = 0f;
+    private float velocityY = 0f;
+    private float predictedX = 0f;
+    private float predictedY = 0f;
+    private boolean predicting = false;
+    private long reversalCount = 0L;
+
+    public MotionPredictor() {
+        this(0);
+    }
+
+    public MotionPredictor(int horizonMillis) {
+        setHorizonMillis(horizonMillis);
+    }
+
+    /**
+     * @param horizonMillis how far ahead to predict, 0 to {@link #MAX_HORIZON_MS}; 0 turns prediction off
+     */
+    public void setHorizonMillis(int horizonMillis) {
+        if (horizonMillis < 0 || horizonMillis > MAX_HORIZON_MS) {
+            throw new IllegalArgumentException("horizon out of range: " + horizonMillis);
+        }
+        this.horizonMillis = horizonMillis;
+    }
+
+    public int getHorizonMillis() {
+        return horizonMillis;
+    }
+
+    /**
+     * Start over at finger down.
+     */
+    public void reset(float x, float y, long timeMillis) {
+        size = 0;
+        push(x, y, timeMillis);
+        velocityX = 0f;
+        velocityY = 0f;
+        predictedX = x;
+        predictedY = y;
+        predicting = false;
+    }
+
+    /**
+     * Add a touch sample; read the position to send with {@link #getX()} and {@link #getY()}.
+     * @return true if that position is a prediction, false if it is the sample itself
+     */
+    public boolean update(float x, float y, long timeMillis) {
+        if (size == 0) {
+            reset(x, y, timeMillis);
+            return false;
+        }
+        int last = head;
+        long dt = timeMillis - times[last];
+        float stepX = x - xs[last];
+        float stepY = y - ys[last];
+
+        if (dt > WINDOW_MS) {
+            // Finger paused: the old samples say nothing about the new motion
+            size = 0;
+        } else if (size >= MIN_SAMPLES
+                && stepX * velocityX + stepY * velocityY < 0f
+                && stepX * stepX + stepY * stepY >= REVERSAL_MIN_STEP_PX * REVERSAL_MIN_STEP_PX) {
+            // Moving against the fitted velocity: predicting further would overshoot more
+            reversalCount++;
+            size = 0;
+        }
+        if (dt > 0 || size == 0) {
+            push(x, y, timeMillis);
+        } else {
+            // Same timestamp: keep the newest position
+            xs[head] = x;
+            ys[head] = y;
+        }
+        fitVelocity();
+
+        predicting = horizonMillis > 0 && size >= MIN_SAMPLES;
+        predictedX = predicting ? x + velocityX * horizonMillis : x;
+        predictedY = predicting ? y + velocityY * horizonMillis : y;
+        return predicting;
+    }
+
+    /**
+     * Switch prediction off until the next sample, e.g. at finger up, so the cursor ends where the finger did.
+     * @return true if the position moved, i.e. there was an overshoot left to correct
+     */
+    public boolean settle() {
+        predicting = false;
+        if (size == 0) return false;
+        boolean moved = predictedX != xs[head] || predictedY != ys[head];
+        predictedX = xs[head];
+        predictedY = ys[head];
+        return moved;
+    }
+
+    public float getX() {
+        return predictedX;
+    }
+
+    public float getY() {
+        return predictedY;
+    }
+
+    public boolean isPredicting() {
+        return predicting;
+    }
+
+    /**
+     * Fitted finger velocity in px/ms.
+     */
+    public float getVelocityX() {
+        return velocityX;
+    }
+
+    public float getVelocityY() {
+        return velocityY;
+    }
+
+    /**
+     * Times prediction switched off because the finger reversed direction.
+     */
+    public long getReversalCount() {
+        return reversalCount;
+    }
+
+    private void push(float x, float y, long timeMillis) {
+        head = (head + 1) % HISTORY;
+        xs[head] = x;
+        ys[head] = y;
+        times[head] = timeMillis;
+        if (size < HISTORY) size++;
+    }
+
+    private void fitVelocity() {
+        long newest = times[head];
+        int n = 0;
+        float sumT = 0f, sumX = 0f, sumY = 0f;
+        for (int i = 0; i < size; i++) {
+            int slot = (head - i + HISTORY) % HISTORY;
+            if (newest - times[slot] > WINDOW_MS) break;
+            sumT += times[slot] - newest;
+            sumX += xs[slot];
+            sumY += ys[slot];
+            n++;
+        }
+        if (n < 2) {
+            velocityX = 0f;
+            velocityY = 0f;
+            return;
+        }
+        float meanT = sumT / n, meanX = sumX / n, meanY = sumY / n;
+        float varT = 0f, covX = 0f, covY = 0f;
+        for (int i = 0; i < n; i++) {
+            int slot = (head - i + HISTORY) % HISTORY;
+            float t = (times[slot] - newest) - meanT;
+            varT += t * t;
+            covX += t * (xs[slot] - meanX);
+            covY += t * (ys[slot] - meanY);
+        }
+        velocityX = varT > 0f ? covX / varT : 0f;
+        velocityY = varT > 0f ? covY / varT : 0f;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Merges queued mouse reports into one pending report per send interval.
+ * X, Y and wheel deltas are summed; a button change is never merged across, so
+ * clicks and drags keep their order. Sums beyond +/-127 are sent in chunks and
+ * the remainder stays pending, so no motion is lost.
+ * Not thread-safe: owned by the report sender thread.
+ */
+public final class MouseCoalescer {
+    private int buttons = 0;
+    private int sentButtons = 0;
+    private long dx = 0L;
+    private long dy = 0L;
+    private long wheel = 0L;
+    private long oldestNanos = 0L;
+
+    /**
+     * Fold one mouse report into the pending one.
+     * @return false if the buttons differ from pending motion; emit first, then retry
+     */
+    public boolean merge(int buttons, int dx, int dy, int wheel, long enqueueNanos) {
+        if (buttons != this.buttons) {
+            if (hasPending()) return false;
+            this.buttons = buttons;
+        }
+        if (!hasPending()) {
+            oldestNanos = enqueueNanos;
+        }
+        this.dx += dx;
+        this.dy += dy;
+        this.wheel += wheel;
+        return true;
+    }
+
+    /**
+     * @return true if there is motion or a button change that has not been sent yet
+     */
+    public boolean hasPending() {
+        return dx != 0 || dy != 0 || wheel != 0 || buttons != sentButtons;
+    }
+
+    /**
+     * Write the next mouse report [Buttons, X, Y, Wheel, Padding] and keep any overflow pending.
+     */
+    public void emit(byte[] report) {
+        int sendX = clamp(dx);
+        int sendY = clamp(dy);
+        int sendWheel = clamp(wheel);
+        dx -= sendX;
+        dy -= sendY;
+        wheel -= sendWheel;
+        sentButtons = buttons;
+
+        HidReports.writeMouse(report, buttons, sendX, sendY, sendWheel);
+    }
+
+    /**
+     * Put back a report from {@link #emit(byte[])} that the link refused, ahead of anything
+     * still pending. Its button state is always kept pending; its motion only if asked to.
+     * @param hostButtons buttons the host last received
+     * @param keepMotion false to drop the report's deltas
+     */
+    public void restore(byte[] report, int hostButtons, boolean keepMotion, long enqueueNanos) {
+        sentButtons = hostButtons;
+        oldestNanos = enqueueNanos;
+        if (!keepMotion) return;
+        dx += report[1];
+        dy += report[2];
+        wheel += report[3];
+    }
+
+    /**
+     * Button state of the last emitted report.
+     */
+    public int getSentButtons() {
+        return sentButtons;
+    }
+
+    /**
+     * Enqueue time of the oldest report folded into the pending one.
+     */
+    public long getOldestEnqueueNanos() {
+        return oldestNanos;
+    }
+
+    /**
+     * Forget the pending report and the buttons the host has, when the host goes away
+     * ({@link ReportSender#resetHostState()}).
+     */
+    public void reset() {
+        buttons = 0;
+        sentButtons = 0;
+        dx = 0L;
+        dy = 0L;
+        wheel = 0L;
+        oldestNanos = 0L;
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.max(-HidReports.MOUSE_DELTA_MAX, Math.min(HidReports.MOUSE_DELTA_MAX, value));
+    }
+}
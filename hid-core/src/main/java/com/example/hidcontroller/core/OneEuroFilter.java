@@ -0,0 +1,88 @@
+package com.example.hidcontroller.core;
+
+/**
+ * One-Euro filter (Casiez et al.) for one touch coordinate: a low-pass filter whose cutoff
+ * rises with speed. A resting finger gets the full {@link #getMinCutoffHz()} smoothing, which
+ * removes sensor jitter; a moving finger gets a cutoff of min cutoff + beta * speed, so the
+ * faster it moves the less lag the filter adds.
+ * Runs per touch sample with millisecond timestamps. Not thread-safe, allocation-free.
+ */
+public final class OneEuroFilter {
+    public static final float DEFAULT_MIN_CUTOFF_HZ = 1.5f;
+    /** Cutoff increase per px/s of speed. */
+    public static final float DEFAULT_BETA = 0.05f;
+    // Cutoff for the speed estimate itself, as in the paper
+    private static final float DERIVATIVE_CUTOFF_HZ = 1f;
+
+    private float minCutoffHz;
+    private float beta;
+
+    private boolean primed = false;
+    private float value = 0f;
+    private float speed = 0f;
+    private long lastTimeMillis = 0L;
+
+    public OneEuroFilter() {
+        this(DEFAULT_MIN_CUTOFF_HZ, DEFAULT_BETA);
+    }
+
+    public OneEuroFilter(float minCutoffHz, float beta) {
+        configure(minCutoffHz, beta);
+    }
+
+    /**
+     * @param minCutoffHz cutoff at rest; lower means smoother and laggier
+     * @param beta cutoff increase per px/s; higher means less lag when moving fast
+     */
+    public void configure(float minCutoffHz, float beta) {
+        if (minCutoffHz <= 0f) throw new IllegalArgumentException("cutoff must be positive: " + minCutoffHz);
+        if (beta < 0f) throw new IllegalArgumentException("beta must not be negative: " + beta);
+        this.minCutoffHz = minCutoffHz;
+        this.beta = beta;
+    }
+
+    public float getMinCutoffHz() {
+        return minCutoffHz;
+    }
+
+    public float getBeta() {
+        return beta;
+    }
+
+    /**
+     * Start over at the given position, e.g. at finger down, so the first sample does not
+     * have to catch up from wherever the last touch ended.
+     */
+    public void reset(float position, long timeMillis) {
+        primed = true;
+        value = position;
+        speed = 0f;
+        lastTimeMillis = timeMillis;
+    }
+
+    /**
+     * @return the filtered position; samples with the same timestamp as the previous one
+     *         return the previous result
+     */
+    public float filter(float position, long timeMillis) {
+        if (!primed) {
+            reset(position, timeMillis);
+            return position;
+        }
+        long dtMillis = timeMillis - lastTimeMillis;
+        if (dtMillis <= 0) return value;
+        lastTimeMillis = timeMillis;
+        float dt = dtMillis / 1000f;
+
+        float rawSpeed = (position - value) / dt;
+        speed += alpha(DERIVATIVE_CUTOFF_HZ, dt) * (rawSpeed - speed);
+        float cutoff = minCutoffHz + beta * Math.abs(speed);
+        value += alpha(cutoff, dt) * (position - value);
+        return value;
+    }
+
+    private static float alpha(float cutoffHz, float dt) {
+        float tau = 1f / (2f * (float) Math.PI * cutoffHz);
+        return 1f / (1f + tau / dt);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Smoothed finger speed from timestamped touch samples, for velocity-based acceleration.
+ * Touch panels report at 60-240 Hz with millisecond timestamps, so single-sample speeds
+ * are noisy; this keeps an exponential average with a {@link #SMOOTHING_MS} time constant.
+ * Samples with the same timestamp are folded into the next interval.
+ * Not thread-safe, allocation-free.
+ */
+public final class PointerVelocity {
+    public static final float SMOOTHING_MS = 20f;
+    // Longer pauses (finger resting) restart the average instead of decaying into it
+    private static final long MAX_GAP_MS = 100;
+
+    private float speed = 0f;
+    private float pendingDistance = 0f;
+    private long lastTimeMillis = 0L;
+
+    /**
+     * Start over at finger down.
+     */
+    public void reset(long timeMillis) {
+        speed = 0f;
+        pendingDistance = 0f;
+        lastTimeMillis = timeMillis;
+    }
+
+    /**
+     * @param dx movement since the previous sample, px
+     * @param dy movement since the previous sample, px
+     * @param timeMillis sample time
+     * @return smoothed speed in px/ms
+     */
+    public float update(float dx, float dy, long timeMillis) {
+        pendingDistance += (float) Math.sqrt(dx * dx + dy * dy);
+        long dt = timeMillis - lastTimeMillis;
+        if (dt <= 0) return speed;
+
+        float instant = pendingDistance / dt;
+        pendingDistance = 0f;
+        lastTimeMillis = timeMillis;
+        if (dt > MAX_GAP_MS) {
+            speed = instant;
+        } else {
+            speed += (instant - speed) * (dt / (dt + SMOOTHING_MS));
+        }
+        return speed;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.hidcontroller.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer/single-consumer ring of preallocated HID report slots.
+ * The producer copies a report into the next free slot and publishes it,
+ * the consumer reads slots in order and hands them back with {@link #release()}.
+ * Neither side locks, waits or allocates.
+ */
+public final class ReportRing {
+    public static final int MAX_REPORT_LENGTH = 8;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] reportIds;
+    private final int[] lengths;
+    private final long[] enqueueNanos;
+    private final long[] inputNanos;
+    private final byte[][] payloads;
+
+    // head = next slot to read (consumer), tail = next slot to write (producer)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long producerHeadCache = 0L;
+    private long consumerTailCache = 0L;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public ReportRing(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        reportIds = new int[this.capacity];
+        lengths = new int[this.capacity];
+        enqueueNanos = new long[this.capacity];
+        inputNanos = new long[this.capacity];
+        payloads = new byte[this.capacity][MAX_REPORT_LENGTH];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // ===== PRODUCER SIDE =====
+    /**
+     * Copy a report into the next free slot. Wait-free.
+     * @return false if the ring is full (report not queued)
+     */
+    public boolean offer(int reportId, byte[] report, int length, long nowNanos) {
+        return offer(reportId, report, length, nowNanos, 0L);
+    }
+
+    /**
+     * @param inputNanos time of the input event behind the report, 0 if unknown
+     */
+    public boolean offer(int reportId, byte[] report, int length, long nowNanos, long inputNanos) {
+        if (length > MAX_REPORT_LENGTH) {
+            throw new IllegalArgumentException("report too long: " + length);
+        }
+        long t = tail.get();
+        if (t - producerHeadCache >= capacity) {
+            producerHeadCache = head.get();
+            if (t - producerHeadCache >= capacity) {
+                return false;
+            }
+        }
+
+        int slot = (int) t & mask;
+        reportIds[slot] = reportId;
+        lengths[slot] = length;
+        enqueueNanos[slot] = nowNanos;
+        this.inputNanos[slot] = inputNanos;
+        System.arraycopy(report, 0, payloads[slot], 0, length);
+
+        // Volatile store publishes the slot and orders it before the producer's wake-up check
+        tail.set(t + 1);
+        return true;
+    }
+
+    // ===== CONSUMER SIDE =====
+    /**
+     * @return index of the oldest published slot, or -1 if the ring is empty
+     */
+    public int peek() {
+        long h = head.get();
+        if (h >= consumerTailCache) {
+            consumerTailCache = tail.get();
+            if (h >= consumerTailCache) {
+                return -1;
+            }
+        }
+        return (int) h & mask;
+    }
+
+    /**
+     * Hand the slot returned by {@link #peek()} back to the producer.
+     */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    public int reportId(int slot) {
+        return reportIds[slot];
+    }
+
+    public int length(int slot) {
+        return lengths[slot];
+    }
+
+    public long enqueueNanos(int slot) {
+        return enqueueNanos[slot];
+    }
+
+    public long inputNanos(int slot) {
+        return inputNanos[slot];
+    }
+
+    public byte[] payload(int slot) {
+        return payloads[slot];
+    }
+
+    // ===== EITHER SIDE =====
+    public int size() {
+        long h = head.get();
+        return (int) (tail.get() - h);
+    }
+
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+}
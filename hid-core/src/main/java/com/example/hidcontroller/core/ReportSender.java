@@ -0,0 +1,919 @@
+package com.example.hidcontroller.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves HID reports off the UI thread.
+ * The UI thread enqueues into {@link ReportRing}s (wait-free, no allocation) and a
+ * single sender thread drains them into the {@link ReportSink}, so a slow
+ * sendReport() binder call never blocks input dispatch.
+ * <p>
+ * There are two lanes. The control lane carries keyboard reports, key commands, clicks and
+ * mouse reports that change the buttons; it is drained first and nothing in it is dropped.
+ * If it ever fills up, the entry it cannot take is refused and the sender lets every key and
+ * button up once the entries queued before it are through, so a lost release cannot leave
+ * anything stuck; later mouse reports then press their buttons again.
+ * The motion lane carries mouse reports with unchanged buttons; motion queued before a button
+ * change is merged into the report sent ahead of it, and motion the link refuses is merged
+ * into the next report (or dropped once stale) rather than retried on its own.
+ * Refused keyboard reports and button changes are retried, backing off while the
+ * {@link LinkCongestion} state says the link is congested.
+ * Reports are paced by a {@link LinkPacer}: at most one report per report ID goes out per
+ * tick, so nothing backs up faster than the link can carry it. Motion inside a tick is
+ * merged by a {@link MouseCoalescer}, while button changes go out at once; keyboard reports cannot be merged without losing
+ * keystrokes, so they wait in a short backlog and go out one per tick.
+ * A {@link TextTyper} can be attached to stream text; its reports are paced by the typer but
+ * share the keyboard lane: a typing step waits for the keyboard backlog, and typer and key
+ * command reports each carry the keys the other holds, so neither lets the other's keys up.
+ * <p>
+ * Key presses, taps and clicks are queued as commands in the control lane, so they keep
+ * their order with plain reports. All delayed work (tap and click releases, typing
+ * steps, mouse ticks) runs on a {@link TimerWheel} owned by the sender thread.
+ * <p>
+ * Every report feeds per-stage {@link LatencyStats}; input listeners that stamp their events
+ * with {@link #setInputStamp(long, long)} get the whole way from the input event to the host.
+ */
+public final class ReportSender {
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final long DEFAULT_TICK_NANOS = LinkPacer.TICK_7_5_MS;
+
+    public static final long CLICK_HOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // Upper bound on a single park, in case a wake-up is ever missed
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // Refused motion older than this is dropped: a late jump of the cursor is worse than a lost nudge
+    private static final long MOTION_STALE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Ring entries above any HID report ID are commands for the sender thread
+    private static final int CMD_KEY_DOWN = 0x100;
+    private static final int CMD_KEY_UP = 0x101;
+    private static final int CMD_KEY_TAP = 0x102;
+    private static final int CMD_KEYS_RELEASE_ALL = 0x103;
+    private static final int CMD_MOUSE_CLICK = 0x105;
+
+    // Keyboard reports waiting for their tick; key input stays queued while it is nearly full
+    private static final int KEYBOARD_BACKLOG = 32;
+    // Most reports a single key command can produce (early release of the oldest tap, then the press)
+    private static final int REPORTS_PER_KEY_COMMAND = 2;
+
+    private final ReportRing controlRing;
+    private final ReportRing motionRing;
+    private final ReportSink sink;
+    private final ThreadFactory threadFactory;
+    // One reusable send buffer per report length, owned by the sender thread
+    private final byte[][] sendBuffers = new byte[ReportRing.MAX_REPORT_LENGTH + 1][];
+    private final MouseCoalescer mouseCoalescer = new MouseCoalescer();
+    private final LinkPacer pacer = new LinkPacer(DEFAULT_TICK_NANOS);
+    private final LinkCongestion congestion = new LinkCongestion();
+    private long nextMouseSendNanos = 0L;
+    private final AtomicReference<TextTyper> activeTyper = new AtomicReference<>();
+    // Producer-owned scratch for command arguments
+    private final byte[] commandArgs = new byte[2];
+    // Producer-owned: buttons of the last mouse report queued, to tell motion from button changes
+    private int producerButtons = 0;
+    // Producer-owned: enqueue times are kept strictly increasing so the lanes can be ordered by them
+    private long lastEnqueueNanos = Long.MIN_VALUE;
+    // Producer-owned: the input event being handled, 0 outside an input listener
+    private long inputEventNanos = 0L;
+    private long inputListenerNanos = 0L;
+    private boolean inputRecorded = false;
+    // Written by the producer only: control entries refused by a full lane, and when the last was
+    private volatile long controlOverflowCount = 0L;
+    private volatile long controlOverflowNanos = 0L;
+    // Written by the producer only: host state resets requested, and when the last was
+    private volatile long resetCount = 0L;
+    private volatile long resetNanos = 0L;
+
+    // ----- Sender thread state -----
+    private final TimerWheel timers = new TimerWheel();
+    private final KeyboardEngine keyboard;
+    private final TimerWheel.Timer mouseTimer = new TimerWheel.Timer(this::onMouseTick);
+    private final TimerWheel.Timer clickReleaseTimer = new TimerWheel.Timer(this::onClickRelease);
+    private final TimerWheel.Timer typerTimer = new TimerWheel.Timer(this::onTyperStep);
+    private final TimerWheel.Timer keyboardTimer = new TimerWheel.Timer(this::onKeyboardTick);
+    private final byte[][] keyboardBacklog = new byte[KEYBOARD_BACKLOG][HidReports.KEYBOARD_REPORT_LENGTH];
+    private final long[] keyboardBacklogOrigins = new long[KEYBOARD_BACKLOG];
+    private final long[] keyboardBacklogInputs = new long[KEYBOARD_BACKLOG];
+    private int keyboardBacklogHead = 0;
+    private volatile int keyboardBacklogCount = 0;
+    private long nextKeyboardSendNanos = 0L;
+    private boolean keyboardHeadRefused = false;
+    private TextTyper scheduledTyper;
+    // Control lane overflows whose release-all has gone out
+    private long releasedOverflowCount = 0L;
+    private long doneResetCount = 0L;
+    // Keys of the last typer report the host accepted, merged into key command reports
+    private final byte[] typerKeys = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+    private final byte[] typerReport = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+    // Key command state for merging into typer reports, and key command reports with the typer's keys
+    private final byte[] engineKeys = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+    private final byte[] mergedKeys = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+    // The link refused the last mouse report: nothing goes out before nextMouseSendNanos
+    private boolean mouseRefused = false;
+    // Enqueue time (or timer deadline) of what is being sent, for latency stats
+    private long originNanos = 0L;
+    // Input event time of what is being sent, 0 if not stamped
+    private long originInputNanos = 0L;
+    // Input event time of the oldest input in the pending mouse report
+    private long mouseInputNanos = 0L;
+
+    private final LatencyStats latency = new LatencyStats();
+
+    // Optional; null unless tracing is compiled in
+    private volatile TraceRing trace;
+
+    private volatile Thread thread;
+    private volatile boolean running = false;
+    private volatile boolean senderParked = false;
+
+    // Written by the producer only
+    private volatile long enqueuedCount = 0L;
+    private volatile long rejectedCount = 0L;
+    // Written by the sender thread only
+    private volatile long sentCount = 0L;
+    private volatile long sentKeyboardCount = 0L;
+    private volatile long sentMouseCount = 0L;
+    private volatile long failedCount = 0L;
+    private volatile long coalescedCount = 0L;
+    private volatile long droppedMotionCount = 0L;
+    private volatile long retriedCount = 0L;
+    private volatile long lastLatencyNanos = 0L;
+    private volatile long maxLatencyNanos = 0L;
+    private volatile long totalLatencyNanos = 0L;
+
+    public ReportSender(ReportSink sink, ThreadFactory threadFactory) {
+        this(sink, DEFAULT_CAPACITY, threadFactory);
+    }
+
+    public ReportSender(ReportSink sink, int capacity, ThreadFactory threadFactory) {
+        this.controlRing = new ReportRing(capacity);
+        this.motionRing = new ReportRing(capacity);
+        this.sink = sink;
+        this.threadFactory = threadFactory;
+        for (int len = 0; len < sendBuffers.length; len++) {
+            sendBuffers[len] = new byte[len];
+        }
+        this.keyboard = new KeyboardEngine(timers, this::sendKeyState);
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = threadFactory.newThread(this::runLoop);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Minimum spacing between two reports with the same ID while auto tuning is off.
+     * Mouse reports queued within one tick are merged.
+     * @param tickNanos 0 to send every report as queued
+     */
+    public void setTickNanos(long tickNanos) {
+        pacer.setFixedTickNanos(tickNanos);
+    }
+
+    /**
+     * Let the tick follow how long sendReport() takes, between 7.5 and 15 ms.
+     */
+    public void setAutoTick(boolean auto) {
+        pacer.setAuto(auto);
+    }
+
+    public long getTickNanos() {
+        return pacer.getTickNanos();
+    }
+
+    /**
+     * Record every send (and every report rejected by a full queue) into the given ring.
+     * @param trace null to stop tracing
+     */
+    public void setTrace(TraceRing trace) {
+        this.trace = trace;
+    }
+
+    // ===== PRODUCER API (single thread, usually the UI thread) =====
+    /**
+     * Stamp the reports queued from now on with the input event they come from, until
+     * {@link #clearInputStamp()}. Call at the top of an input listener.
+     * @param eventNanos when the event happened (System.nanoTime() base), 0 if unknown
+     * @param listenerNanos when the listener was entered
+     */
+    public void setInputStamp(long eventNanos, long listenerNanos) {
+        inputEventNanos = eventNanos;
+        inputListenerNanos = listenerNanos;
+        inputRecorded = false;
+    }
+
+    public void clearInputStamp() {
+        inputEventNanos = 0L;
+        inputListenerNanos = 0L;
+    }
+
+    /**
+     * Queue a report for sending. Wait-free; the report array may be reused as soon as this returns.
+     * Mouse reports with the same buttons as the previous one go to the motion lane.
+     * @return false if the queue is full and the report was dropped; if it was a key or button
+     *         change, every key and button is released instead
+     */
+    public boolean enqueue(int reportId, byte[] report) {
+        return enqueue(reportId, report, report.length);
+    }
+
+    public boolean enqueue(int reportId, byte[] report, int length) {
+        long now = Math.max(System.nanoTime(), lastEnqueueNanos + 1);
+        lastEnqueueNanos = now;
+        ReportRing lane = controlRing;
+        int buttons = producerButtons;
+        if (reportId == HidReports.MOUSE_REPORT_ID) {
+            buttons = report[0] & 0xFF;
+            if (buttons == producerButtons) lane = motionRing;
+        }
+        long input = 0L;
+        if (inputListenerNanos != 0L) {
+            input = inputEventNanos != 0L ? inputEventNanos : inputListenerNanos;
+            int type = latencyType(reportId);
+            if (!inputRecorded && inputEventNanos != 0L) {
+                latency.record(type, LatencyStats.STAGE_INPUT, inputListenerNanos - inputEventNanos);
+            }
+            inputRecorded = true;
+            latency.record(type, LatencyStats.STAGE_HANDLER, now - inputListenerNanos);
+        }
+        if (!lane.offer(reportId, report, length, now, input)) {
+            if (lane == controlRing) {
+                // The sender lets everything up after the entries before this one
+                controlOverflowNanos = now;
+                controlOverflowCount++;
+                producerButtons = 0;
+            }
+            rejectedCount++;
+            TraceRing t = trace;
+            if (t != null) t.record(now, TraceRing.QUEUE_FULL, reportId, 0, 0);
+            return false;
+        }
+        producerButtons = buttons;
+        enqueuedCount++;
+        if (senderParked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    // ----- Commands (same producer thread as enqueue) -----
+    /**
+     * Hold a key down until {@link #keyUp(int)}; modifiers given here are held with it.
+     * @return false if the queue is full
+     */
+    public boolean keyDown(int usage, int modifiers) {
+        return command(CMD_KEY_DOWN, usage, modifiers);
+    }
+
+    public boolean keyUp(int usage) {
+        return command(CMD_KEY_UP, usage, 0);
+    }
+
+    /**
+     * Press now and release {@link KeyboardEngine#TAP_HOLD_NANOS} later; other held keys stay down.
+     */
+    public boolean keyTap(int usage, int modifiers) {
+        return command(CMD_KEY_TAP, usage, modifiers);
+    }
+
+    public boolean releaseAllKeys() {
+        return command(CMD_KEYS_RELEASE_ALL, 0, 0);
+    }
+
+    /**
+     * Forget held keys and buttons without sending a release, e.g. after the host disconnected.
+     * Reports queued before this call are dropped and refused ones are not retried, so nothing
+     * meant for the old host reaches the next one. Does not wait behind a stalled lane.
+     */
+    public void resetHostState() {
+        // Everything queued so far belongs to the old host
+        lastEnqueueNanos = Math.max(System.nanoTime(), lastEnqueueNanos + 1);
+        resetNanos = lastEnqueueNanos;
+        resetCount++;
+        producerButtons = 0;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Press the given mouse buttons and release them {@link #CLICK_HOLD_NANOS} later.
+     */
+    public boolean mouseClick(int buttons) {
+        return command(CMD_MOUSE_CLICK, buttons, 0);
+    }
+
+    private static int latencyType(int reportId) {
+        return reportId == CMD_MOUSE_CLICK ? LatencyStats.TYPE_MOUSE : LatencyStats.typeOf(reportId);
+    }
+
+    private boolean command(int command, int arg0, int arg1) {
+        commandArgs[0] = (byte) arg0;
+        commandArgs[1] = (byte) arg1;
+        return enqueue(command, commandArgs, commandArgs.length);
+    }
+
+    /**
+     * The last keyboard report sent for key commands, for GET_REPORT replies. Any thread.
+     */
+    public void readKeyboardReport(byte[] dst) {
+        keyboard.readReport(dst);
+    }
+
+    /**
+     * Start streaming text. Only one typer runs at a time.
+     * @return false if another typer is still running
+     */
+    public boolean type(TextTyper typer) {
+        // A finished typer may not have been cleared by the sender thread yet
+        TextTyper current = activeTyper.get();
+        if (current != null && !current.isFinished()) return false;
+        if (!activeTyper.compareAndSet(current, typer)) return false;
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * The typer currently streaming, or null.
+     */
+    public TextTyper getActiveTyper() {
+        TextTyper typer = activeTyper.get();
+        return typer != null && !typer.isFinished() ? typer : null;
+    }
+
+    // ===== SENDER THREAD =====
+    private void runLoop() {
+        while (running) {
+            resetIfRequested();
+            long stalledAt = drainControl();
+            // Motion queued after a stalled control entry waits for it
+            boolean blocked = stalledAt != Long.MAX_VALUE | drainMotion(stalledAt);
+            pickUpTyper();
+            // Timer work (tap and click releases) is not caused by an input event
+            originInputNanos = 0L;
+            // Timer tasks may unblock a lane or make new timers due: go round again
+            if (timers.advance(System.nanoTime()) > 0) continue;
+
+            long next = timers.nextDeadlineNanos();
+            long parkNanos = next == Long.MAX_VALUE ? IDLE_PARK_NANOS
+                    : Math.min(IDLE_PARK_NANOS, next - System.nanoTime());
+            if (parkNanos > 0) park(parkNanos, blocked);
+        }
+    }
+
+    /**
+     * Forget the host state after {@link #resetHostState()}: reports queued before it are dropped,
+     * and whatever was waiting or being retried is for a host that is gone.
+     */
+    private void resetIfRequested() {
+        // Count before time: a reset in between only drops more
+        long resets = resetCount;
+        if (resets == doneResetCount) return;
+        long resetAt = resetNanos;
+        dropQueuedBefore(controlRing, resetAt);
+        dropQueuedBefore(motionRing, resetAt);
+
+        keyboard.reset();
+        keyboardBacklogCount = 0;
+        keyboardHeadRefused = false;
+        timers.cancel(keyboardTimer);
+        mouseCoalescer.reset();
+        mouseRefused = false;
+        mouseInputNanos = 0L;
+        timers.cancel(mouseTimer);
+        timers.cancel(clickReleaseTimer);
+        congestion.reset();
+        doneResetCount = resets;
+    }
+
+    private static void dropQueuedBefore(ReportRing ring, long nanos) {
+        int slot;
+        while ((slot = ring.peek()) >= 0 && ring.enqueueNanos(slot) - nanos <= 0) {
+            ring.release();
+        }
+    }
+
+    /**
+     * Send, merge or execute everything in the control lane. Stops early at a button change
+     * the link has refused until the mouse tick, or at key input while the keyboard backlog is full.
+     * @return enqueue time of the entry it stopped at, or Long.MAX_VALUE if the lane is empty
+     */
+    private long drainControl() {
+        int slot;
+        while ((slot = controlRing.peek()) >= 0) {
+            int reportId = controlRing.reportId(slot);
+            long enqueuedAt = controlRing.enqueueNanos(slot);
+            if (!releaseAfterOverflow(enqueuedAt)) return controlOverflowNanos;
+            long input = controlRing.inputNanos(slot);
+            byte[] p = controlRing.payload(slot);
+
+            if (reportId == HidReports.MOUSE_REPORT_ID || reportId == CMD_MOUSE_CLICK) {
+                // Motion queued before this button change goes out with or ahead of it
+                if (drainMotion(enqueuedAt)) return enqueuedAt;
+            }
+            if (reportId == HidReports.MOUSE_REPORT_ID) {
+                if (!mergeMouse(p[0] & 0xFF, p[1], p[2], p[3], enqueuedAt, input)) return enqueuedAt;
+                controlRing.release();
+                continue;
+            }
+            if (reportId == HidReports.KEYBOARD_REPORT_ID && keyboardBacklogCount == KEYBOARD_BACKLOG) {
+                return enqueuedAt;
+            }
+            if (reportId >= CMD_KEY_DOWN) {
+                originNanos = enqueuedAt;
+                originInputNanos = input;
+                if (!runCommand(reportId, p[0] & 0xFF, p[1] & 0xFF, enqueuedAt)) return enqueuedAt;
+                controlRing.release();
+                continue;
+            }
+
+            int length = controlRing.length(slot);
+            byte[] buffer = sendBuffers[length];
+            System.arraycopy(p, 0, buffer, 0, length);
+            controlRing.release();
+
+            originNanos = enqueuedAt;
+            originInputNanos = input;
+            if (reportId == HidReports.KEYBOARD_REPORT_ID) {
+                sendKeyboard(reportId, buffer);
+            } else {
+                sendNow(reportId, buffer);
+            }
+        }
+        return releaseAfterOverflow(Long.MAX_VALUE) ? Long.MAX_VALUE : controlOverflowNanos;
+    }
+
+    /**
+     * Let every key and button up if the control lane refused an entry queued before the given time.
+     * @param nextNanos enqueue time of the next control entry, Long.MAX_VALUE if the lane is empty
+     * @return false if the release has to wait for the next mouse or keyboard tick
+     */
+    private boolean releaseAfterOverflow(long nextNanos) {
+        // Count before time: an overflow in between only moves the release later
+        long overflows = controlOverflowCount;
+        if (overflows == releasedOverflowCount) return true;
+        long overflowAt = controlOverflowNanos;
+        if (nextNanos != Long.MAX_VALUE && nextNanos - overflowAt < 0) return true;
+
+        if (keyboardBacklogCount > KEYBOARD_BACKLOG - REPORTS_PER_KEY_COMMAND) return false;
+        originNanos = overflowAt;
+        originInputNanos = 0L;
+        if (drainMotion(overflowAt) || !mergeMouse(0, 0, 0, 0, overflowAt, 0L)) return false;
+        timers.cancel(clickReleaseTimer);
+        keyboard.releaseAll();
+        releasedOverflowCount = overflows;
+        return true;
+    }
+
+    /**
+     * Merge motion queued up to the given time into the pending mouse report.
+     * @return true if stopped at motion that has to wait for a refused button change
+     */
+    private boolean drainMotion(long upToNanos) {
+        int slot;
+        while ((slot = motionRing.peek()) >= 0) {
+            long enqueuedAt = motionRing.enqueueNanos(slot);
+            if (enqueuedAt - upToNanos > 0) return false;
+            byte[] p = motionRing.payload(slot);
+            if (!mergeMouse(p[0] & 0xFF, p[1], p[2], p[3], enqueuedAt, motionRing.inputNanos(slot))) return true;
+            motionRing.release();
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the command has to wait for the next mouse or keyboard tick
+     */
+    private boolean runCommand(int command, int arg0, int arg1, long enqueuedAt) {
+        if (command <= CMD_KEYS_RELEASE_ALL
+                && keyboardBacklogCount > KEYBOARD_BACKLOG - REPORTS_PER_KEY_COMMAND) {
+            return false;
+        }
+        switch (command) {
+            case CMD_KEY_DOWN:
+                keyboard.keyDown(arg0, arg1);
+                return true;
+            case CMD_KEY_UP:
+                keyboard.keyUp(arg0);
+                return true;
+            case CMD_KEY_TAP:
+                keyboard.tap(arg0, arg1, System.nanoTime());
+                return true;
+            case CMD_KEYS_RELEASE_ALL:
+                keyboard.releaseAll();
+                return true;
+            case CMD_MOUSE_CLICK:
+                return click(arg0, enqueuedAt);
+            default:
+                return true;
+        }
+    }
+
+    private boolean click(int buttons, long enqueuedAt) {
+        // A click before the previous one was released: release that one first
+        if (clickReleaseTimer.isScheduled()) {
+            if (!mergeMouse(0, 0, 0, 0, enqueuedAt, originInputNanos)) return false;
+            timers.cancel(clickReleaseTimer);
+        }
+        if (!mergeMouse(buttons, 0, 0, 0, enqueuedAt, originInputNanos)) return false;
+        timers.schedule(clickReleaseTimer, System.nanoTime() + CLICK_HOLD_NANOS);
+        return true;
+    }
+
+    private void onClickRelease() {
+        if (!mergeMouse(0, 0, 0, 0, clickReleaseTimer.getDeadlineNanos(), 0L)) {
+            // The link refused the report before it: release once that has been retried
+            timers.schedule(clickReleaseTimer, nextMouseSendNanos);
+        }
+    }
+
+    /**
+     * Fold mouse input into the pending report. Motion waits for the mouse tick; a button
+     * change is sent at once, after the motion pending before it.
+     * @param inputNanos input event time, 0 if unknown
+     * @return false if a refused report has to be retried before the buttons can change
+     */
+    private boolean mergeMouse(int buttons, int dx, int dy, int wheel, long enqueuedAt, long inputNanos) {
+        boolean wasPending = mouseCoalescer.hasPending();
+        if (!mouseCoalescer.merge(buttons, dx, dy, wheel, enqueuedAt)) {
+            if (mouseRefused && System.nanoTime() - nextMouseSendNanos < 0) return false;
+            if (!flushMouse()) return false;
+            mouseCoalescer.merge(buttons, dx, dy, wheel, enqueuedAt);
+            mouseInputNanos = inputNanos;
+        } else if (wasPending) {
+            coalescedCount++;
+            if (mouseInputNanos == 0L) mouseInputNanos = inputNanos;
+        } else {
+            mouseInputNanos = inputNanos;
+        }
+
+        if (buttons != mouseCoalescer.getSentButtons() || pacer.getTickNanos() == 0) {
+            // Button changes (and everything, when unpaced) do not wait for the tick
+            if (!mouseRefused || System.nanoTime() - nextMouseSendNanos >= 0) flushMouse();
+        }
+        if (mouseCoalescer.hasPending() && !mouseTimer.isScheduled()) {
+            timers.schedule(mouseTimer, Math.max(System.nanoTime(), nextMouseSendNanos));
+        }
+        return true;
+    }
+
+    private void onMouseTick() {
+        if (mouseCoalescer.hasPending()) flushMouse();
+    }
+
+    /**
+     * Send everything pending now. A refused report is put back in the coalescer: its button
+     * change is retried after a tick, its motion merged into the retry unless it is stale.
+     * @return false if the link refused a report
+     */
+    private boolean flushMouse() {
+        byte[] buffer = sendBuffers[HidReports.MOUSE_REPORT_LENGTH];
+        // More than one report only if the sums overflowed a single one
+        while (mouseCoalescer.hasPending()) {
+            long now = System.nanoTime();
+            int hostButtons = mouseCoalescer.getSentButtons();
+            long oldest = mouseCoalescer.getOldestEnqueueNanos();
+            originNanos = oldest;
+            originInputNanos = mouseInputNanos;
+            mouseCoalescer.emit(buffer);
+            if (mouseRefused) retriedCount++;
+            mouseRefused = !sendNow(HidReports.MOUSE_REPORT_ID, buffer);
+            if (mouseRefused) {
+                boolean keepMotion = now - oldest < MOTION_STALE_NANOS;
+                if (!keepMotion && (buffer[1] != 0 || buffer[2] != 0 || buffer[3] != 0)) droppedMotionCount++;
+                mouseCoalescer.restore(buffer, hostButtons, keepMotion, oldest);
+                nextMouseSendNanos = now + Math.max(pacer.getTickNanos(), congestion.getRetryDelayNanos());
+                if (mouseCoalescer.hasPending()) timers.schedule(mouseTimer, nextMouseSendNanos);
+                return false;
+            }
+            nextMouseSendNanos = now + pacer.getTickNanos();
+            // Clamped overflow waits for the next tick unless unpaced
+            if (pacer.getTickNanos() > 0) break;
+        }
+        if (mouseCoalescer.hasPending()) {
+            timers.schedule(mouseTimer, nextMouseSendNanos);
+        } else {
+            timers.cancel(mouseTimer);
+        }
+        return true;
+    }
+
+    /**
+     * Sink for {@link KeyboardEngine}: its report plus whatever the typer holds.
+     */
+    private boolean sendKeyState(int reportId, byte[] report) {
+        System.arraycopy(report, 0, mergedKeys, 0, HidReports.KEYBOARD_REPORT_LENGTH);
+        mergeKeys(mergedKeys, typerKeys);
+        return sendKeyboard(reportId, mergedKeys);
+    }
+
+    /**
+     * Add the modifiers and keys held in one keyboard report to another, in place.
+     * Keys that do not fit in the six slots are left out.
+     */
+    private static void mergeKeys(byte[] report, byte[] held) {
+        report[0] |= held[0];
+        for (int i = 2; i < HidReports.KEYBOARD_REPORT_LENGTH; i++) {
+            byte usage = held[i];
+            if (usage == 0) continue;
+            int free = -1;
+            for (int k = HidReports.KEYBOARD_REPORT_LENGTH - 1; k >= 2; k--) {
+                if (report[k] == usage) {
+                    free = -1;
+                    break;
+                }
+                if (report[k] == 0) free = k;
+            }
+            if (free >= 0) report[free] = usage;
+        }
+    }
+
+    /**
+     * Send a keyboard report, or keep it in the backlog until the keyboard tick comes round.
+     * A refused report stays at the head of the backlog and is retried.
+     */
+    private boolean sendKeyboard(int reportId, byte[] report) {
+        long now = System.nanoTime();
+        long tick = pacer.getTickNanos();
+        boolean refused = false;
+        if (keyboardBacklogCount == 0 && (tick == 0 || now - nextKeyboardSendNanos >= 0)) {
+            if (sendNow(reportId, report)) {
+                nextKeyboardSendNanos = now + tick;
+                return true;
+            }
+            // It becomes the head of the backlog and is retried from there
+            refused = true;
+            nextKeyboardSendNanos = now + Math.max(tick, congestion.getRetryDelayNanos());
+        } else if (keyboardBacklogCount == KEYBOARD_BACKLOG) {
+            // Only tap releases can get here. Every report holds the whole key state, so when
+            // the oldest cannot go out early it is superseded by the ones after it
+            sendOldestKeyboard();
+            popKeyboard();
+        }
+        int slot = (keyboardBacklogHead + keyboardBacklogCount) % KEYBOARD_BACKLOG;
+        System.arraycopy(report, 0, keyboardBacklog[slot], 0, HidReports.KEYBOARD_REPORT_LENGTH);
+        keyboardBacklogOrigins[slot] = originNanos;
+        keyboardBacklogInputs[slot] = originInputNanos;
+        keyboardBacklogCount++;
+        if (refused) keyboardHeadRefused = true;
+        if (!keyboardTimer.isScheduled()) timers.schedule(keyboardTimer, nextKeyboardSendNanos);
+        return true;
+    }
+
+    private void onKeyboardTick() {
+        if (keyboardBacklogCount == 0) return;
+        long now = System.nanoTime();
+        long tick = pacer.getTickNanos();
+        if (sendOldestKeyboard()) {
+            popKeyboard();
+            nextKeyboardSendNanos = now + tick;
+        } else {
+            nextKeyboardSendNanos = now + Math.max(tick, congestion.getRetryDelayNanos());
+        }
+        if (keyboardBacklogCount > 0) timers.schedule(keyboardTimer, nextKeyboardSendNanos);
+    }
+
+    private boolean sendOldestKeyboard() {
+        int slot = keyboardBacklogHead;
+        originNanos = keyboardBacklogOrigins[slot];
+        originInputNanos = keyboardBacklogInputs[slot];
+        if (keyboardHeadRefused) retriedCount++;
+        keyboardHeadRefused = !sendNow(HidReports.KEYBOARD_REPORT_ID, keyboardBacklog[slot]);
+        return !keyboardHeadRefused;
+    }
+
+    private void popKeyboard() {
+        keyboardBacklogHead = (keyboardBacklogHead + 1) % KEYBOARD_BACKLOG;
+        keyboardBacklogCount--;
+        keyboardHeadRefused = false;
+    }
+
+    private void pickUpTyper() {
+        TextTyper typer = activeTyper.get();
+        if (typer == null || typer == scheduledTyper || typer.isFinished()) return;
+        scheduledTyper = typer;
+        timers.schedule(typerTimer, Math.max(System.nanoTime(), typer.getNextDueNanos()));
+    }
+
+    private void onTyperStep() {
+        TextTyper typer = scheduledTyper;
+        if (typer == null) return;
+
+        long now = System.nanoTime();
+        if (keyboardBacklogCount > 0) {
+            // Key command reports queued before this step go first
+            timers.schedule(typerTimer, Math.max(now, nextKeyboardSendNanos));
+            return;
+        }
+        if (!typer.writeNext(typerReport, now)) {
+            scheduledTyper = null;
+            activeTyper.compareAndSet(typer, null);
+            Arrays.fill(typerKeys, (byte) 0);
+            return;
+        }
+        byte[] buffer = sendBuffers[HidReports.KEYBOARD_REPORT_LENGTH];
+        System.arraycopy(typerReport, 0, buffer, 0, HidReports.KEYBOARD_REPORT_LENGTH);
+        keyboard.readReport(engineKeys);
+        mergeKeys(buffer, engineKeys);
+        boolean ok = sink.sendReport(HidReports.KEYBOARD_REPORT_ID, buffer);
+        long done = System.nanoTime();
+        pacer.onSendCompleted(done - now);
+        congestion.onSendResult(ok, done);
+        recordSend(HidReports.KEYBOARD_REPORT_ID, ok, done - now);
+        latency.record(LatencyStats.TYPE_KEYBOARD, LatencyStats.STAGE_SEND, done - now);
+        traceSend(HidReports.KEYBOARD_REPORT_ID, ok, done, done - now, done - now);
+        typer.onSendResult(ok, done);
+        if (typer.isFinished()) {
+            // Its last report let its keys up, or it gave up on a link that takes nothing
+            Arrays.fill(typerKeys, (byte) 0);
+        } else if (ok) {
+            System.arraycopy(typerReport, 0, typerKeys, 0, HidReports.KEYBOARD_REPORT_LENGTH);
+        }
+        // Key command reports after this one wait for their tick as usual
+        nextKeyboardSendNanos = done + pacer.getTickNanos();
+        timers.schedule(typerTimer, Math.max(done, typer.getNextDueNanos()));
+    }
+
+    /**
+     * Send one report now (sender thread).
+     */
+    private boolean sendNow(int reportId, byte[] report) {
+        long start = System.nanoTime();
+        boolean ok = sink.sendReport(reportId, report);
+        long done = System.nanoTime();
+        pacer.onSendCompleted(done - start);
+        congestion.onSendResult(ok, done);
+        recordSend(reportId, ok, done - originNanos);
+        recordLatency(reportId, ok, start, done);
+        traceSend(reportId, ok, done, done - originNanos, done - start);
+        return ok;
+    }
+
+    private void recordLatency(int reportId, boolean ok, long startNanos, long doneNanos) {
+        int type = LatencyStats.typeOf(reportId);
+        latency.record(type, LatencyStats.STAGE_SEND, doneNanos - startNanos);
+        if (!ok) return;
+        latency.record(type, LatencyStats.STAGE_QUEUE, startNanos - originNanos);
+        if (originInputNanos != 0L) latency.record(type, LatencyStats.STAGE_TOTAL, doneNanos - originInputNanos);
+    }
+
+    private void traceSend(int reportId, boolean ok, long doneNanos, long latencyNanos, long sendNanos) {
+        TraceRing t = trace;
+        if (t == null) return;
+        t.record(doneNanos, ok ? TraceRing.SEND_OK : TraceRing.SEND_REFUSED, reportId,
+                (int) TimeUnit.NANOSECONDS.toMicros(latencyNanos), (int) TimeUnit.NANOSECONDS.toMicros(sendNanos));
+    }
+
+    /**
+     * @param blocked true if the lanes are waiting on a mouse or keyboard tick,
+     *                so there is nothing to do until the next timer
+     */
+    private void park(long nanos, boolean blocked) {
+        senderParked = true;
+        if (running && (blocked || (controlRing.isEmpty() && motionRing.isEmpty()))) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        senderParked = false;
+    }
+
+    private void recordSend(int reportId, boolean ok, long latencyNanos) {
+        if (ok) {
+            sentCount++;
+            if (reportId == HidReports.KEYBOARD_REPORT_ID) {
+                sentKeyboardCount++;
+            } else if (reportId == HidReports.MOUSE_REPORT_ID) {
+                sentMouseCount++;
+            }
+        } else {
+            failedCount++;
+        }
+        lastLatencyNanos = latencyNanos;
+        totalLatencyNanos += latencyNanos;
+        if (latencyNanos > maxLatencyNanos) {
+            maxLatencyNanos = latencyNanos;
+        }
+    }
+
+    // ===== STATS =====
+    /** Reports queued but not yet picked up by the sender thread. */
+    public int getQueueDepth() {
+        return controlRing.size() + motionRing.size();
+    }
+
+    public int getQueueCapacity() {
+        return controlRing.capacity() + motionRing.capacity();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueuedCount;
+    }
+
+    /** Reports dropped because the queue was full. */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * Reports with the given ID the link accepted.
+     * @param reportId {@link HidReports#KEYBOARD_REPORT_ID} or {@link HidReports#MOUSE_REPORT_ID}; 0 for other IDs
+     */
+    public long getSentCount(int reportId) {
+        if (reportId == HidReports.KEYBOARD_REPORT_ID) return sentKeyboardCount;
+        if (reportId == HidReports.MOUSE_REPORT_ID) return sentMouseCount;
+        return 0L;
+    }
+
+    /** Reports the sink refused (sendReport returned false). */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /** Mouse reports merged into an already pending one instead of being sent separately. */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /** Refused mouse reports whose motion was dropped as stale instead of being merged into a retry. */
+    public long getDroppedMotionCount() {
+        return droppedMotionCount;
+    }
+
+    /** Enqueue-to-send latency of the most recent report. */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    public long getMeanLatencyNanos() {
+        long n = sentCount + failedCount;
+        return n == 0 ? 0L : totalLatencyNanos / n;
+    }
+
+    /** Keyboard reports waiting for the keyboard tick. Sender thread's view, any thread may read it. */
+    public int getKeyboardBacklog() {
+        return keyboardBacklogCount;
+    }
+
+    /** Refused keyboard and mouse reports sent again. */
+    public long getRetriedCount() {
+        return retriedCount;
+    }
+
+    /**
+     * Congestion state for the UI; its listener is called on the sender thread.
+     */
+    public LinkCongestion getCongestion() {
+        return congestion;
+    }
+
+    /**
+     * The report tick and the sendReport() completion times it is tuned from. Any thread.
+     */
+    public LinkPacer getPacer() {
+        return pacer;
+    }
+
+    /**
+     * Per-stage latency histograms by report type, from input event to sendReport(). Any thread.
+     */
+    public LatencyStats getLatencyStats() {
+        return latency;
+    }
+
+    /**
+     * Timer wheel for delayed work; its lateness stats (microseconds) may be read from any thread.
+     */
+    public TimerWheel getTimerWheel() {
+        return timers;
+    }
+}
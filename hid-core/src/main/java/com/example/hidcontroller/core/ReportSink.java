@@ -0,0 +1,9 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Destination for finished HID reports (e.g. BluetoothHidDevice.sendReport).
+ * Called only from the report sender thread; the array is reused after the call returns.
+ */
+public interface ReportSink {
+    boolean sendReport(int reportId, byte[] report);
+}
@@ -0,0 +1,64 @@
+package com.example.hidcontroller.core;
+
+/**
+ * Turns fractional pointer motion into whole HID counts without losing the fractions.
+ * Motion is added as floats; {@link #emit()} takes the whole counts (towards zero, clamped
+ * to +/-127) and carries the rest into the next event, so the counts sent never differ from
+ * the motion added by a whole count or more. Slow finger motion of a fraction of a count per
+ * event still moves the cursor, and in the right direction.
+ * Not thread-safe, allocation-free.
+ */
+public final class SubpixelCarry {
+    // Remainders in double so that long slow traces do not drift
+    private double x = 0.0;
+    private double y = 0.0;
+    private int emittedX = 0;
+    private int emittedY = 0;
+
+    public void add(float dx, float dy) {
+        x += dx;
+        y += dy;
+    }
+
+    /**
+     * @return true if at least one whole count is pending on either axis
+     */
+    public boolean hasCounts() {
+        return Math.abs(x) >= 1.0 || Math.abs(y) >= 1.0;
+    }
+
+    /**
+     * Take the whole counts pending, at most {@link HidReports#MOUSE_DELTA_MAX} per axis;
+     * read them with {@link #getX()} and {@link #getY()}.
+     * @return false if there was nothing whole to send
+     */
+    public boolean emit() {
+        emittedX = take(x);
+        emittedY = take(y);
+        x -= emittedX;
+        y -= emittedY;
+        return emittedX != 0 || emittedY != 0;
+    }
+
+    public int getX() {
+        return emittedX;
+    }
+
+    public int getY() {
+        return emittedY;
+    }
+
+    /**
+     * Forget pending fractions, e.g. at finger down.
+     */
+    public void reset() {
+        x = 0.0;
+        y = 0.0;
+        emittedX = 0;
+        emittedY = 0;
+    }
+
+    private static int take(double value) {
+        return (int) Math.max(-HidReports.MOUSE_DELTA_MAX, Math.min(HidReports.MOUSE_DELTA_MAX, value));
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.hidcontroller.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a string into a stream of keyboard reports using the US-layout tables in
+ * {@link HIDKeyCode}; Shift is added where a character needs it.
+ * <p>
+ * Pipelined (the default): the report that lets one key up presses the next, so a run of
+ * N different keys costs N+1 reports instead of 2N. A repeated key or a change of
+ * modifiers still gets a release report in between, since the host would otherwise see
+ * no new keystroke or apply the wrong Shift state.
+ * <p>
+ * Pacing adapts to the link: every accepted report shortens the gap to the next one,
+ * every refused report doubles it and is retried, so no character is dropped or repeated.
+ * Driven by the {@link ReportSender} thread: {@link #writeNext(byte[], long)}, send, then
+ * {@link #onSendResult(boolean, long)}. Progress getters and {@link #cancel()} may be
+ * called from any thread.
+ */
+public final class TextTyper {
+    public static final long DEFAULT_MIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    public static final long INITIAL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+    public static final long MAX_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(64);
+    // Consecutive refused reports before giving up (about 3 s at the max interval)
+    public static final int MAX_CONSECUTIVE_FAILURES = 50;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    public static final int STATE_TYPING = 0;
+    public static final int STATE_COMPLETED = 1;
+    public static final int STATE_CANCELLED = 2;
+    public static final int STATE_FAILED = 3;
+
+    /**
+     * Called on the sender thread; keep it short (e.g. post to the UI thread).
+     */
+    public interface Listener {
+        void onProgress(int typed, int total, float charsPerSecond);
+        void onFinished(int typed, int skipped, int state);
+    }
+
+    private final CharSequence text;
+    private final Listener listener;
+    private final long minIntervalNanos;
+    private final KeyboardState keys = new KeyboardState();
+
+    // Report waiting to be sent (or re-sent after a failure)
+    private final byte[] pending = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+    private boolean hasPending = false;
+    // True if the pending report presses a character rather than releasing one
+    private boolean pendingIsPress = false;
+    private boolean keyDown = false;
+    private int heldUsage = HIDKeyCode.KEY_NONE;
+    private int heldModifiers = 0;
+    private int position = 0;
+    private boolean pipelined = true;
+
+    private long intervalNanos = INITIAL_INTERVAL_NANOS;
+    private long nextDueNanos = 0L;
+    private int consecutiveFailures = 0;
+    private boolean givingUp = false;
+    private long startNanos = 0L;
+    private long lastProgressNanos = 0L;
+
+    private volatile boolean cancelled = false;
+    private volatile int state = STATE_TYPING;
+    private volatile int typed = 0;
+    private volatile int skipped = 0;
+    private volatile long elapsedNanos = 0L;
+
+    public TextTyper(CharSequence text, Listener listener) {
+        this(text, listener, DEFAULT_MIN_INTERVAL_NANOS);
+    }
+
+    /**
+     * @param minIntervalNanos the shortest gap pacing may reach between two reports
+     */
+    public TextTyper(CharSequence text, Listener listener, long minIntervalNanos) {
+        this.text = text;
+        this.listener = listener;
+        this.minIntervalNanos = Math.max(0L, minIntervalNanos);
+        this.intervalNanos = Math.max(this.minIntervalNanos, INITIAL_INTERVAL_NANOS);
+    }
+
+    /**
+     * Overlap each release with the next press. Set before typing starts.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    // ===== SENDER THREAD =====
+    /**
+     * When the next report may go out, in System.nanoTime() terms.
+     */
+    public long getNextDueNanos() {
+        return nextDueNanos;
+    }
+
+    /**
+     * Write the next report to send.
+     * @return false once typing is over; the listener has then been told
+     */
+    public boolean writeNext(byte[] report, long nowNanos) {
+        if (state != STATE_TYPING) return false;
+        if (startNanos == 0L) {
+            startNanos = nowNanos;
+            lastProgressNanos = nowNanos;
+        }
+        if (!hasPending && !prepareNext(nowNanos)) return false;
+        System.arraycopy(pending, 0, report, 0, pending.length);
+        return true;
+    }
+
+    /**
+     * Feed back whether the report from {@link #writeNext(byte[], long)} was accepted.
+     */
+    public void onSendResult(boolean ok, long nowNanos) {
+        elapsedNanos = nowNanos - startNanos;
+        if (givingUp) {
+            // Best-effort all-up after the link stopped taking reports
+            hasPending = false;
+            keyDown = false;
+            finish(STATE_FAILED);
+            return;
+        }
+
+        if (!ok) {
+            consecutiveFailures++;
+            intervalNanos = Math.min(MAX_INTERVAL_NANOS, intervalNanos * 2);
+            nextDueNanos = nowNanos + intervalNanos;
+            if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) giveUp(nowNanos);
+            return;
+        }
+
+        consecutiveFailures = 0;
+        intervalNanos = Math.max(minIntervalNanos, intervalNanos - Math.max(1L, intervalNanos >> 4));
+        nextDueNanos = nowNanos + intervalNanos;
+        hasPending = false;
+        if (pendingIsPress) {
+            typed++;
+            if (nowNanos - lastProgressNanos >= PROGRESS_INTERVAL_NANOS) {
+                lastProgressNanos = nowNanos;
+                listener.onProgress(typed, text.length(), getCharsPerSecond());
+            }
+        }
+    }
+
+    private boolean prepareNext(long nowNanos) {
+        int next = cancelled ? -1 : skipToNextTypeable();
+        if (keyDown) {
+            keys.releaseAll();
+            keyDown = false;
+            if (pipelined && next >= 0 && canPipeline(text.charAt(next))) {
+                // Release and next press in one report
+                return press(text.charAt(position++));
+            }
+            return setPending(false);
+        }
+        if (cancelled) {
+            finish(STATE_CANCELLED);
+            return false;
+        }
+        if (next >= 0) {
+            return press(text.charAt(position++));
+        }
+
+        elapsedNanos = nowNanos - startNanos;
+        finish(STATE_COMPLETED);
+        return false;
+    }
+
+    /**
+     * Skip characters with no key on the layout.
+     * @return index of the next typeable character, or -1 at the end of the text
+     */
+    private int skipToNextTypeable() {
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (HIDKeyCode.getCharUsage(c) != HIDKeyCode.KEY_NONE) return position;
+            // CR of a CRLF pair is not a character of its own
+            if (c != '\r') skipped++;
+            position++;
+        }
+        return -1;
+    }
+
+    private boolean canPipeline(char c) {
+        return HIDKeyCode.getCharUsage(c) != heldUsage
+                && HIDKeyCode.getCharModifiers(c) == heldModifiers;
+    }
+
+    private boolean press(char c) {
+        heldUsage = HIDKeyCode.getCharUsage(c);
+        heldModifiers = HIDKeyCode.getCharModifiers(c);
+        keys.press(heldUsage, heldModifiers);
+        keyDown = true;
+        return setPending(true);
+    }
+
+    private boolean setPending(boolean isPress) {
+        keys.writeReport(pending);
+        pendingIsPress = isPress;
+        hasPending = true;
+        return true;
+    }
+
+    private void giveUp(long nowNanos) {
+        if (!keyDown) {
+            hasPending = false;
+            finish(STATE_FAILED);
+            return;
+        }
+        keys.releaseAll();
+        keys.writeReport(pending);
+        pendingIsPress = false;
+        givingUp = true;
+        nextDueNanos = nowNanos;
+    }
+
+    private void finish(int finalState) {
+        if (state != STATE_TYPING) return;
+        state = finalState;
+        listener.onProgress(typed, text.length(), getCharsPerSecond());
+        listener.onFinished(typed, skipped, finalState);
+    }
+
+    // ===== ANY THREAD =====
+    /**
+     * Stop after the current character; a held key is still released.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public boolean isFinished() {
+        return state != STATE_TYPING;
+    }
+
+    public int getTypedCount() {
+        return typed;
+    }
+
+    /** Characters with no key on the US layout. */
+    public int getSkippedCount() {
+        return skipped;
+    }
+
+    public int getTotalCount() {
+        return text.length();
+    }
+
+    public float getCharsPerSecond() {
+        long elapsed = elapsedNanos;
+        return elapsed <= 0L ? 0f : typed * 1e9f / elapsed;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.hidcontroller.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel for delayed HID actions (key and click releases, typing steps,
+ * mouse ticks). Timers are caller-owned {@link Timer} objects linked into the wheel's
+ * buckets, so scheduling, rescheduling and cancelling are O(1) and allocation-free.
+ * <p>
+ * Deadlines are System.nanoTime() values. A timer fires on the first {@link #advance(long)}
+ * at or after its deadline; how late that was is kept as stats, in microseconds.
+ * Scheduling and advancing are single-threaded (the report sender thread); the stats
+ * getters may be called from any thread.
+ */
+public final class TimerWheel {
+    public static final long DEFAULT_TICK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * A reusable timer. Schedule it again from its own task to repeat.
+     */
+    public static final class Timer {
+        private final Runnable task;
+        private long deadlineNanos;
+        private long deadlineTick;
+        private int bucket = -1;
+        private Timer prev;
+        private Timer next;
+
+        public Timer(Runnable task) {
+            this.task = task;
+        }
+
+        public boolean isScheduled() {
+            return bucket >= 0;
+        }
+
+        public long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    // Head of each bucket's doubly linked list
+    private final Timer[] buckets;
+    private long cursorTick;
+    // Until the first advance() the cursor has no notion of "now" and follows the earliest timer
+    private boolean advanced = false;
+    private int scheduledCount = 0;
+
+    // Written by the owning thread only
+    private volatile long firedCount = 0L;
+    private volatile long cancelledCount = 0L;
+    private volatile long lastLateNanos = 0L;
+    private volatile long maxLateNanos = 0L;
+    private volatile long totalLateNanos = 0L;
+
+    public TimerWheel() {
+        this(DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    public TimerWheel(long tickNanos, int wheelSize) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("tickNanos must be > 0");
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickNanos = tickNanos;
+        this.mask = size - 1;
+        this.buckets = new Timer[size];
+    }
+
+    /**
+     * Schedule (or move) a timer to fire at the given deadline.
+     */
+    public void schedule(Timer timer, long deadlineNanos) {
+        if (timer.isScheduled()) unlink(timer);
+
+        long tick = Math.floorDiv(deadlineNanos, tickNanos);
+        if (!advanced && (scheduledCount == 0 || tick < cursorTick)) cursorTick = tick;
+        // Already due: put it where the next advance() looks first
+        if (tick < cursorTick) tick = cursorTick;
+        timer.deadlineNanos = deadlineNanos;
+        timer.deadlineTick = tick;
+        link(timer, (int) (tick & mask));
+    }
+
+    /**
+     * @return true if the timer was scheduled and will no longer fire
+     */
+    public boolean cancel(Timer timer) {
+        if (!timer.isScheduled()) return false;
+        unlink(timer);
+        cancelledCount++;
+        return true;
+    }
+
+    /**
+     * Fire every timer whose deadline is at or before now, in bucket order.
+     * Tasks may schedule timers, including their own.
+     * @return number of timers fired
+     */
+    public int advance(long nowNanos) {
+        advanced = true;
+        if (scheduledCount == 0) {
+            cursorTick = Math.floorDiv(nowNanos, tickNanos);
+            return 0;
+        }
+
+        long nowTick = Math.floorDiv(nowNanos, tickNanos);
+        int fired = 0;
+        if (nowTick - cursorTick > mask) {
+            // Idle for more than a turn: one pass over every bucket instead of tick by tick
+            for (int bucket = 0; bucket <= mask; bucket++) {
+                fired += fireDue(bucket, nowTick, nowNanos);
+            }
+            cursorTick = nowTick;
+            return fired;
+        }
+        // The current tick is revisited on the next call: its later timers are not due yet
+        for (long tick = cursorTick; tick <= nowTick && scheduledCount > 0; tick++) {
+            cursorTick = tick;
+            fired += fireDue((int) (tick & mask), tick, nowNanos);
+        }
+        cursorTick = Math.max(cursorTick, nowTick);
+        return fired;
+    }
+
+    private int fireDue(int bucket, long tick, long nowNanos) {
+        int fired = 0;
+        Timer timer = buckets[bucket];
+        while (timer != null) {
+            Timer next = timer.next;
+            if (timer.deadlineTick <= tick && timer.deadlineNanos - nowNanos <= 0) {
+                unlink(timer);
+                recordLate(nowNanos - timer.deadlineNanos);
+                fired++;
+                timer.task.run();
+                // The task may have changed this bucket; start over on it
+                next = buckets[bucket];
+            }
+            timer = next;
+        }
+        return fired;
+    }
+
+    /**
+     * Earliest deadline of any scheduled timer, or Long.MAX_VALUE if there is none.
+     */
+    public long nextDeadlineNanos() {
+        if (scheduledCount == 0) return Long.MAX_VALUE;
+
+        // Usually the nearest non-empty bucket within one turn of the wheel holds it
+        for (int i = 0; i <= mask; i++) {
+            long tick = cursorTick + i;
+            long earliest = Long.MAX_VALUE;
+            for (Timer t = buckets[(int) (tick & mask)]; t != null; t = t.next) {
+                if (t.deadlineTick <= tick && t.deadlineNanos < earliest) earliest = t.deadlineNanos;
+            }
+            if (earliest != Long.MAX_VALUE) return earliest;
+        }
+
+        // Everything is more than one turn away
+        long earliest = Long.MAX_VALUE;
+        for (Timer head : buckets) {
+            for (Timer t = head; t != null; t = t.next) {
+                if (t.deadlineNanos < earliest) earliest = t.deadlineNanos;
+            }
+        }
+        return earliest;
+    }
+
+    public int size() {
+        return scheduledCount;
+    }
+
+    private void link(Timer timer, int bucket) {
+        Timer head = buckets[bucket];
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) head.prev = timer;
+        buckets[bucket] = timer;
+        timer.bucket = bucket;
+        scheduledCount++;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            buckets[timer.bucket] = timer.next;
+        }
+        if (timer.next != null) timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+        timer.bucket = -1;
+        scheduledCount--;
+    }
+
+    private void recordLate(long lateNanos) {
+        firedCount++;
+        lastLateNanos = lateNanos;
+        totalLateNanos += lateNanos;
+        if (lateNanos > maxLateNanos) {
+            maxLateNanos = lateNanos;
+        }
+    }
+
+    // ===== STATS (any thread) =====
+    public long getFiredCount() {
+        return firedCount;
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount;
+    }
+
+    /** How late the most recent timer fired after its deadline. */
+    public long getLastLateMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lastLateNanos);
+    }
+
+    public long getMaxLateMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxLateNanos);
+    }
+
+    public long getMeanLateMicros() {
+        long n = firedCount;
+        return n == 0 ? 0L : TimeUnit.NANOSECONDS.toMicros(totalLateNanos / n);
+    }
+
+    public void resetStats() {
+        firedCount = 0L;
+        cancelledCount = 0L;
+        lastLateNanos = 0L;
+        maxLateNanos = 0L;
+        totalLateNanos = 0L;
+    }
+}
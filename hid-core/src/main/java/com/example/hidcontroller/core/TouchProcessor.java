@@ -0,0 +1,294 @@
+package com.example.hidcontroller.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Touchpad gestures from plain touch samples, with no Android types, so they can be replayed
+ * and benchmarked on any JVM. Two surfaces: the pad ({@link #onPadTouch}) moves the pointer,
+ * taps click and hold-then-move drags; the strip ({@link #onStripTouch}) scrolls.
+ * <p>
+ * Pad samples go through the jitter filter, motion prediction, sensitivity and the
+ * acceleration curve, and whole counts go out as soon as a sample completes one, so feed
+ * batched samples one by one, oldest first. Only the pointer that went down first is
+ * followed ({@link #getPadPointerId()}); samples of other pointers are ignored, and the
+ * gesture ends when that pointer lifts, even if other fingers stay down.
+ * Actions are the masked MotionEvent values (getActionMasked()), and the pointer ID is the
+ * one the action refers to (getActionIndex() for pointer down and up).
+ * Not thread-safe (the UI thread); allocation-free.
+ */
+public final class TouchProcessor {
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+    public static final int ACTION_POINTER_DOWN = 5;
+    public static final int ACTION_POINTER_UP = 6;
+
+    public static final int BUTTON_LEFT = 0x01;
+
+    public static final long DRAG_START_MS = 250;   // Hold for 250ms to start drag
+    public static final float DRAG_SLOP_PX = 20f;   // Allow small movement while initiating drag
+    public static final long TAP_TIMEOUT_MS = 180;  // Tap must complete within 180ms
+    public static final float TAP_SLOP_PX = 20f;    // Tap movement tolerance
+    public static final float SCROLL_THRESHOLD_PX = 1f;
+    public static final int SCROLL_MULTIPLIER = 3;
+
+    public static final int NO_POINTER = -1;
+
+    /**
+     * Mouse intents, called from inside the onTouch methods.
+     */
+    public interface Output {
+        /** Pointer motion in counts (-127 to 127), with the buttons held. */
+        void move(int buttons, int dx, int dy);
+        /** Buttons pressed or released with no motion: drag start and end. */
+        void buttons(int buttons);
+        /** Press and release, e.g. a tap; 1 = left, 2 = right, 3 = middle. */
+        void click(int button);
+        /** Wheel, positive down. */
+        void scroll(int amount);
+    }
+
+    private final Output out;
+
+    // Settings
+    private float sensitivity = 1f;
+    private float scrollSensitivity = 1f;
+    private AccelerationCurve curve = AccelerationCurve.forProfile(AccelerationCurve.DEFAULT_PROFILE);
+    private boolean jitterFilter = true;
+
+    // Pad pipeline
+    private final OneEuroFilter filterX = new OneEuroFilter();
+    private final OneEuroFilter filterY = new OneEuroFilter();
+    private final MotionPredictor predictor = new MotionPredictor();
+    private final PointerVelocity velocity = new PointerVelocity();
+    // Accelerated movement not sent yet, fractions carried across samples
+    private final SubpixelCarry carry = new SubpixelCarry();
+
+    // Pad gesture state
+    private int padPointer = NO_POINTER;
+    private float lastX = 0f;
+    private float lastY = 0f;
+    private float downX = 0f;
+    private float downY = 0f;
+    private long downTimeMillis = 0L;
+    private boolean dragging = false;
+    private boolean moved = false;
+
+    // Strip state
+    private int stripPointer = NO_POINTER;
+    private float lastScrollY = 0f;
+
+    public TouchProcessor(Output out) {
+        this.out = out;
+    }
+
+    /**
+     * @param sensitivity pointer gain before acceleration
+     * @param scrollSensitivity wheel gain on the strip
+     */
+    public void setSensitivity(float sensitivity, float scrollSensitivity) {
+        this.sensitivity = sensitivity;
+        this.scrollSensitivity = scrollSensitivity;
+    }
+
+    public void setAccelerationCurve(AccelerationCurve curve) {
+        this.curve = curve;
+    }
+
+    /**
+     * @param minCutoffHz see {@link OneEuroFilter#configure}; 0 turns the filter off
+     */
+    public void setJitterFilter(float minCutoffHz, float beta) {
+        jitterFilter = minCutoffHz > 0f;
+        if (!jitterFilter) return;
+        filterX.configure(minCutoffHz, beta);
+        filterY.configure(minCutoffHz, beta);
+    }
+
+    /**
+     * @param horizonMillis see {@link MotionPredictor#setHorizonMillis}; 0 turns prediction off
+     */
+    public void setPredictionHorizonMillis(int horizonMillis) {
+        predictor.setHorizonMillis(horizonMillis);
+    }
+
+    /**
+     * One pad sample.
+     * @return false if it was ignored (another pointer, or no gesture in progress)
+     */
+    public boolean onPadTouch(int pointerId, int action, float x, float y, long timeNanos) {
+        long timeMillis = TimeUnit.NANOSECONDS.toMillis(timeNanos);
+        switch (action) {
+            case ACTION_DOWN:
+                padDown(pointerId, x, y, timeMillis);
+                return true;
+            case ACTION_MOVE:
+                if (pointerId != padPointer) return false;
+                padMove(x, y, timeMillis);
+                return true;
+            case ACTION_POINTER_UP:
+                if (pointerId != padPointer) return false;
+                padUp(x, y, timeMillis);
+                return true;
+            case ACTION_UP:
+            case ACTION_CANCEL:
+                // The last finger: whichever it is, nothing may stay pressed
+                if (padPointer == NO_POINTER) return false;
+                padUp(x, y, timeMillis);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * One scroll strip sample.
+     * @return false if it was ignored
+     */
+    public boolean onStripTouch(int pointerId, int action, float x, float y, long timeNanos) {
+        switch (action) {
+            case ACTION_DOWN:
+                stripPointer = pointerId;
+                lastScrollY = y;
+                return true;
+            case ACTION_MOVE:
+                if (pointerId != stripPointer) return false;
+                float dy = y - lastScrollY;
+                // Only respond to vertical movement
+                if (Math.abs(dy) > SCROLL_THRESHOLD_PX) {
+                    // Swipe down = scroll down (positive), swipe up = scroll up (negative)
+                    int direction = dy > 0 ? SCROLL_MULTIPLIER : -SCROLL_MULTIPLIER;
+                    // Sensitivity, then half speed
+                    out.scroll((int) (direction * scrollSensitivity) / 2);
+                }
+                lastScrollY = y;
+                return true;
+            case ACTION_POINTER_UP:
+                if (pointerId != stripPointer) return false;
+                stripPointer = NO_POINTER;
+                return true;
+            case ACTION_UP:
+            case ACTION_CANCEL:
+                if (stripPointer == NO_POINTER) return false;
+                stripPointer = NO_POINTER;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public boolean isDragging() {
+        return dragging;
+    }
+
+    /**
+     * Pointer the pad gesture follows, or {@link #NO_POINTER}; feed move samples of this pointer.
+     */
+    public int getPadPointerId() {
+        return padPointer;
+    }
+
+    /**
+     * Pointer the strip follows, or {@link #NO_POINTER}.
+     */
+    public int getStripPointerId() {
+        return stripPointer;
+    }
+
+    private void padDown(int pointerId, float x, float y, long timeMillis) {
+        // A gesture whose up never came: let the button go before starting over
+        if (dragging) out.buttons(0);
+        padPointer = pointerId;
+        lastX = x;
+        lastY = y;
+        downX = x;
+        downY = y;
+        downTimeMillis = timeMillis;
+        dragging = false;
+        moved = false;
+        carry.reset();
+        velocity.reset(timeMillis);
+        filterX.reset(x, timeMillis);
+        filterY.reset(y, timeMillis);
+        predictor.reset(x, y, timeMillis);
+    }
+
+    private void padMove(float x, float y, long timeMillis) {
+        addSample(x, y, timeMillis);
+
+        // Hold still long enough and the next move drags with the left button
+        if (!dragging && !moved
+                && timeMillis - downTimeMillis >= DRAG_START_MS
+                && Math.abs(x - downX) <= DRAG_SLOP_PX
+                && Math.abs(y - downY) <= DRAG_SLOP_PX) {
+            dragging = true;
+            out.buttons(BUTTON_LEFT);
+        }
+        sendCarried();
+    }
+
+    private void padUp(float x, float y, long timeMillis) {
+        // Take back whatever the prediction moved past the finger
+        if (predictor.getHorizonMillis() > 0) {
+            predictor.settle();
+            float dx = predictor.getX() - lastX;
+            float dy = predictor.getY() - lastY;
+            if (dx != 0f || dy != 0f) {
+                addCounts(dx, dy, velocity.getSpeed());
+                lastX = predictor.getX();
+                lastY = predictor.getY();
+                sendCarried();
+            }
+        }
+        if (dragging) {
+            out.buttons(0);
+        } else if (!moved
+                && timeMillis - downTimeMillis <= TAP_TIMEOUT_MS
+                && Math.abs(x - downX) <= TAP_SLOP_PX
+                && Math.abs(y - downY) <= TAP_SLOP_PX) {
+            out.click(1);
+        }
+        padPointer = NO_POINTER;
+        dragging = false;
+        moved = false;
+        carry.reset();
+    }
+
+    /**
+     * Jitter filter, prediction, then sensitivity and the acceleration curve for the finger's speed.
+     */
+    private void addSample(float x, float y, long timeMillis) {
+        if (jitterFilter) {
+            x = filterX.filter(x, timeMillis);
+            y = filterY.filter(y, timeMillis);
+        }
+        if (predictor.getHorizonMillis() > 0) {
+            predictor.update(x, y, timeMillis);
+            // Not before the pointer has really moved: extrapolated jitter would cancel taps and drags
+            if (moved) {
+                x = predictor.getX();
+                y = predictor.getY();
+            }
+        }
+        float stepX = x - lastX;
+        float stepY = y - lastY;
+        lastX = x;
+        lastY = y;
+        addCounts(stepX, stepY, velocity.update(stepX, stepY, timeMillis));
+    }
+
+    private void addCounts(float dx, float dy, float speed) {
+        carry.add(curve.apply(dx * sensitivity, speed), curve.apply(dy * sensitivity, speed));
+    }
+
+    /**
+     * Send the whole counts, in -127/127 chunks; fractions wait for the next sample.
+     */
+    private void sendCarried() {
+        while (carry.emit()) {
+            moved = true;
+            out.move(dragging ? BUTTON_LEFT : 0, carry.getX(), carry.getY());
+        }
+    }
+}
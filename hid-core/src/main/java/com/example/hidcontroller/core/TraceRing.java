@@ -0,0 +1,126 @@
+package com.example.hidcontroller.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Flight recorder for input events: a fixed ring of primitive records (time, type, usage,
+ * dx, dy) that keeps the newest {@code capacity} events. Recording is lock-free, allocation-free
+ * and safe from any number of threads, so it can stay on the touch, key and sender hot paths
+ * in place of per-event log lines. {@link #dump(OutputStream)} writes it out in a compact
+ * binary form for debugging input issues after the fact.
+ * <p>
+ * Callers guard their record() calls with a compile-time constant (the app's
+ * {@code BuildConfig.HID_TRACE}) so that release builds contain no tracing at all.
+ */
+public final class TraceRing {
+    // ----- Event types; what usage/dx/dy mean for each -----
+    /** Finger down on the touchpad: dx, dy = position in px. */
+    public static final int TOUCH_DOWN = 1;
+    /** Finger motion: dx, dy = raw delta in px from the previous touch sample, before filtering. */
+    public static final int TOUCH_MOVE = 2;
+    public static final int TOUCH_UP = 3;
+    /** Mouse report queued: usage = buttons, dx, dy = report deltas. */
+    public static final int MOUSE_REPORT = 4;
+    /** dy = wheel delta. */
+    public static final int SCROLL = 5;
+    /** usage = button bits. */
+    public static final int CLICK = 6;
+    /** usage = HID usage, dx = modifiers. */
+    public static final int KEY_DOWN = 7;
+    public static final int KEY_UP = 8;
+    public static final int KEY_TAP = 9;
+    /** A report left the sender: usage = report ID, dx = enqueue-to-send us, dy = sendReport() us. */
+    public static final int SEND_OK = 10;
+    public static final int SEND_REFUSED = 11;
+    /** The report queue was full: usage = report ID. */
+    public static final int QUEUE_FULL = 12;
+
+    /** First bytes of a dump, followed by a version int and the record count. */
+    public static final int DUMP_MAGIC = 0x48494454; // "HIDT"
+    public static final int DUMP_VERSION = 1;
+
+    // Per record: sequence + 1 (0 while being written), time, type/usage, dx/dy
+    private static final int STRIDE = 4;
+
+    private final int mask;
+    private final AtomicLongArray slots;
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * @param capacity number of records kept, rounded up to a power of two
+     */
+    public TraceRing(int capacity) {
+        if (capacity < 2) throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicLongArray(size * STRIDE);
+    }
+
+    public void record(int type, int usage, int dx, int dy) {
+        record(System.nanoTime(), type, usage, dx, dy);
+    }
+
+    public void record(long nanos, int type, int usage, int dx, int dy) {
+        long seq = cursor.getAndIncrement();
+        int base = ((int) seq & mask) * STRIDE;
+        // Readers skip the slot until the sequence is back
+        slots.set(base, 0L);
+        slots.lazySet(base + 1, nanos);
+        slots.lazySet(base + 2, ((long) type << 32) | (usage & 0xFFFFFFFFL));
+        slots.lazySet(base + 3, ((long) dx << 32) | (dy & 0xFFFFFFFFL));
+        slots.lazySet(base, seq + 1);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /** Events recorded since creation, including those already overwritten. */
+    public long getRecordedCount() {
+        return cursor.get();
+    }
+
+    /**
+     * Write the kept records, oldest first: magic, version, count, then per record
+     * long nanos, byte type, int usage, int dx, int dy (big-endian).
+     * Records being overwritten while dumping are left out.
+     * @return number of records written
+     */
+    public int dump(OutputStream out) throws IOException {
+        long end = cursor.get();
+        long start = Math.max(0L, end - capacity());
+        long[] copy = new long[(int) (end - start) * 3];
+        int count = 0;
+        for (long seq = start; seq < end; seq++) {
+            int base = ((int) seq & mask) * STRIDE;
+            if (slots.get(base) != seq + 1) continue;
+            long nanos = slots.get(base + 1);
+            long meta = slots.get(base + 2);
+            long delta = slots.get(base + 3);
+            // Overwritten meanwhile: the fields may be torn
+            if (slots.get(base) != seq + 1) continue;
+            copy[count * 3] = nanos;
+            copy[count * 3 + 1] = meta;
+            copy[count * 3 + 2] = delta;
+            count++;
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(DUMP_MAGIC);
+        data.writeInt(DUMP_VERSION);
+        data.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            data.writeLong(copy[i * 3]);
+            data.writeByte((int) (copy[i * 3 + 1] >>> 32));
+            data.writeInt((int) copy[i * 3 + 1]);
+            data.writeInt((int) (copy[i * 3 + 2] >>> 32));
+            data.writeInt((int) copy[i * 3 + 2]);
+        }
+        data.flush();
+        return count;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AccelerationCurveTest {
+    @Test
+    public void tablesFollowTheirCurves() {
+        for (int profile = 0; profile < AccelerationCurve.PROFILE_COUNT; profile++) {
+            AccelerationCurve curve = AccelerationCurve.forProfile(profile);
+            assertEquals(profile, curve.getProfile());
+            float previous = curve.gain(AccelerationCurve.ADAPTIVE_PLATEAU_END);
+            for (float speed = 0f; speed < 6f; speed += 0.01f) {
+                // Table steps are small enough that interpolating the kinks costs little
+                float exact = AccelerationCurve.computeGain(profile, Math.min(speed, 4f));
+                assertEquals("profile " + profile + " at " + speed, exact, curve.gain(speed), 0.02f);
+                if (speed > AccelerationCurve.ADAPTIVE_PLATEAU_END) {
+                    // Faster never means slower
+                    assertTrue(curve.gain(speed) >= previous - 1e-6f);
+                    previous = curve.gain(speed);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void profilesShapeSlowAndFastMotion() {
+        AccelerationCurve flat = AccelerationCurve.forProfile(AccelerationCurve.PROFILE_FLAT);
+        AccelerationCurve linear = AccelerationCurve.forProfile(AccelerationCurve.PROFILE_LINEAR);
+        AccelerationCurve adaptive = AccelerationCurve.forProfile(AccelerationCurve.PROFILE_ADAPTIVE);
+
+        assertEquals(1f, flat.gain(0f), 0f);
+        assertEquals(1f, flat.gain(10f), 0f);
+        assertEquals(5f, flat.apply(5f, 3f), 0f);
+
+        assertEquals(1f, linear.gain(0.1f), 0f);
+        assertEquals(AccelerationCurve.LINEAR_MAX_GAIN, linear.gain(5f), 1e-6f);
+
+        // Adaptive slows crawling motion down and speeds flicks up the most
+        assertEquals(AccelerationCurve.ADAPTIVE_MIN_GAIN, adaptive.gain(0f), 1e-6f);
+        assertEquals(1f, adaptive.gain(0.25f), 1e-6f);
+        assertEquals(AccelerationCurve.ADAPTIVE_MAX_GAIN, adaptive.gain(5f), 1e-6f);
+        assertEquals(-adaptive.apply(3f, 1f), adaptive.apply(-3f, 1f), 0f);
+
+        assertSame(AccelerationCurve.forProfile(AccelerationCurve.DEFAULT_PROFILE), AccelerationCurve.forProfile(42));
+    }
+}
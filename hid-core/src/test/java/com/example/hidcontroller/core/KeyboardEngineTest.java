@@ -0,0 +1,77 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class KeyboardEngineTest {
+    private static final int A = 0x04;
+    private static final int B = 0x05;
+    private static final long HOLD = KeyboardEngine.TAP_HOLD_NANOS;
+
+    private final TimerWheel wheel = new TimerWheel();
+    private final List<String> sent = new ArrayList<>();
+    private final KeyboardEngine engine = new KeyboardEngine(wheel, (reportId, report) -> {
+        sent.add(String.format("%02x:%02x,%02x", report[0], report[2], report[3]));
+        return true;
+    });
+
+    @Test
+    public void overlappingTapsRollOverAndReleaseOnTime() {
+        wheel.advance(0L);
+        engine.tap(A, 0, 0L);
+        engine.tap(B, 0, HOLD / 2);
+        wheel.advance(HOLD);
+        wheel.advance(HOLD + HOLD / 2);
+
+        assertEquals(List.of("00:04,00", "00:04,05", "00:05,00", "00:00,00"), sent);
+        assertEquals(0, engine.getPendingTapCount());
+    }
+
+    @Test
+    public void retapReleasesFirstAndHoldCancelsTapRelease() {
+        wheel.advance(0L);
+        engine.tap(A, HIDKeyCode.MODIFIER_LEFT_SHIFT, 0L);
+        engine.tap(A, 0, 1L);
+        // A finger now holds A: the tap's release must not let it up
+        engine.keyDown(A, 0);
+        wheel.advance(10 * HOLD);
+        engine.keyUp(A);
+
+        assertEquals(List.of("02:04,00", "00:00,00", "00:04,00", "00:00,00"), sent);
+    }
+
+    @Test
+    public void overlappingTapWithOtherModifiersReleasesFirst() {
+        wheel.advance(0L);
+        // '!' is Shift+1; 'a' tapped while it is still down must not come out as 'A'
+        int bang = HIDKeyCode.getCharUsage('!');
+        engine.tap(bang, HIDKeyCode.getCharModifiers('!'), 0L);
+        engine.tap(A, 0, 1L);
+        // Same modifiers: rolls over as usual
+        engine.tap(B, 0, HOLD / 2);
+        wheel.advance(HOLD + 1);
+        wheel.advance(HOLD + HOLD / 2);
+
+        assertEquals(List.of(String.format("02:%02x,00", bang), "00:00,00", "00:04,00", "00:04,05", "00:05,00", "00:00,00"), sent);
+        assertEquals(0, engine.getPendingTapCount());
+    }
+
+    @Test
+    public void snapshotFollowsSentReports() {
+        byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+        engine.keyDown(HIDKeyCode.KEY_LEFT_CTRL, 0);
+        engine.keyDown(B, 0);
+        engine.readReport(report);
+        assertEquals(HIDKeyCode.MODIFIER_LEFT_CTRL, report[0]);
+        assertEquals(B, report[2]);
+
+        engine.reset();
+        engine.readReport(report);
+        assertEquals(0, report[0]);
+        assertEquals(0, report[2]);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class KeyboardStateTest {
+    private static final int A = 0x04;
+    private static final int B = 0x05;
+    private static final int C = 0x06;
+    private static final int SHIFT = 0x02;
+
+    private final KeyboardState state = new KeyboardState();
+    private final byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+
+    @Test
+    public void overlappingKeysRollOver() {
+        state.press(A, 0);
+        assertTrue(state.pollReport(report));
+        assertReport(0, A);
+
+        state.press(B, 0);
+        assertTrue(state.pollReport(report));
+        assertReport(0, A, B);
+
+        // Releasing the first key keeps the second held
+        state.release(A);
+        assertTrue(state.pollReport(report));
+        assertReport(0, B);
+
+        state.release(B);
+        assertTrue(state.pollReport(report));
+        assertReport(0);
+    }
+
+    @Test
+    public void unchangedStateEmitsNothing() {
+        assertFalse(state.pollReport(report));
+
+        state.press(A, 0);
+        assertTrue(state.pollReport(report));
+        state.press(A, 0);
+        assertFalse(state.pollReport(report));
+
+        state.release(B);
+        assertFalse(state.pollReport(report));
+
+        // Down and up again between polls is no change for the host
+        state.press(C, 0);
+        state.release(C);
+        assertFalse(state.pollReport(report));
+    }
+
+    @Test
+    public void keyModifiersAreHeldWithTheirKey() {
+        state.press(A, SHIFT);
+        state.press(B, 0);
+        assertTrue(state.pollReport(report));
+        assertReport(SHIFT, A, B);
+
+        state.release(A);
+        assertTrue(state.pollReport(report));
+        assertReport(0, B);
+
+        // Modifier usages go into the modifier byte, not a key slot
+        state.press(HIDKeyCode.KEY_LEFT_CTRL, 0);
+        assertTrue(state.pollReport(report));
+        assertReport(HIDKeyCode.MODIFIER_LEFT_CTRL, B);
+        assertEquals(1, state.getKeyCount());
+    }
+
+    @Test
+    public void modifierKeyReleasesTheModifiersPressedWithIt() {
+        state.press(HIDKeyCode.KEY_LEFT_CTRL, SHIFT);
+        assertTrue(state.pollReport(report));
+        assertReport(HIDKeyCode.MODIFIER_LEFT_CTRL | SHIFT);
+
+        assertTrue(state.release(HIDKeyCode.KEY_LEFT_CTRL));
+        assertTrue(state.pollReport(report));
+        assertReport(0);
+
+        // Shift pressed on its own stays down when a key that brought it in goes up
+        state.pressModifiers(SHIFT);
+        state.press(HIDKeyCode.KEY_LEFT_CTRL, SHIFT);
+        state.release(HIDKeyCode.KEY_LEFT_CTRL);
+        assertTrue(state.pollReport(report));
+        assertReport(SHIFT);
+    }
+
+    @Test
+    public void modifiersPressedWithNoKeyAreReleasedWithNoKey() {
+        assertTrue(state.press(HIDKeyCode.KEY_NONE, SHIFT));
+        state.press(A, 0);
+        assertTrue(state.pollReport(report));
+        assertReport(SHIFT, A);
+
+        assertTrue(state.release(HIDKeyCode.KEY_NONE));
+        assertTrue(state.pollReport(report));
+        assertReport(0, A);
+        assertFalse(state.release(HIDKeyCode.KEY_NONE));
+    }
+
+    @Test
+    public void sixKeysAtMost() {
+        for (int i = 0; i < KeyboardState.MAX_KEYS; i++) {
+            assertTrue(state.press(A + i, 0));
+        }
+        assertTrue(state.isFull());
+        assertFalse(state.press(A + KeyboardState.MAX_KEYS, 0));
+        assertTrue(state.pollReport(report));
+        assertReport(0, A, A + 1, A + 2, A + 3, A + 4, A + 5);
+
+        state.releaseAll();
+        assertTrue(state.pollReport(report));
+        assertReport(0);
+    }
+
+    @Test
+    public void resetForgetsWhatWasSent() {
+        state.press(A, SHIFT);
+        assertTrue(state.pollReport(report));
+        state.reset();
+        assertFalse(state.pollReport(report));
+    }
+
+    private void assertReport(int modifiers, int... keys) {
+        byte[] expected = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+        expected[0] = (byte) modifiers;
+        for (int i = 0; i < keys.length; i++) {
+            expected[2 + i] = (byte) keys[i];
+        }
+        assertArrayEquals(expected, report);
+    }
+}
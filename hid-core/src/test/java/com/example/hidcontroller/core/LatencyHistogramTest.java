@@ -0,0 +1,86 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+    private static final String HOST = "00:11:22:33:44:55";
+
+    @Test
+    public void percentilesAreWithinOneBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int us = 1; us <= 10_000; us++) {
+            histogram.recordNanos(TimeUnit.MICROSECONDS.toNanos(us));
+        }
+        LatencyHistogram.Snapshot s = histogram.snapshot();
+        assertEquals(10_000, s.getCount());
+        assertEquals(10_000, s.getMaxMicros());
+        assertEquals(5_000, s.getMeanMicros());
+        assertWithinBucket(5_000, s.getP50Micros());
+        assertWithinBucket(9_500, s.getP95Micros());
+        assertWithinBucket(9_900, s.getP99Micros());
+
+        // Every value maps to a bucket whose upper bound is not below it
+        for (long us = 0; us < 100_000; us += 7) {
+            int bucket = LatencyHistogram.bucketOf(us);
+            assertTrue(us <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || us > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getP99Micros());
+    }
+
+    @Test
+    public void senderRecordsEveryStageOfAStampedReport() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(64);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.setTickNanos(0);
+        sender.start();
+
+        long listener = System.nanoTime();
+        sender.setInputStamp(listener - TimeUnit.MILLISECONDS.toNanos(4), listener);
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        HidReports.writeMouse(report, 0, 5, 5, 0);
+        sender.enqueue(HidReports.MOUSE_REPORT_ID, report);
+        sender.enqueue(HidReports.MOUSE_REPORT_ID, report);
+        sender.clearInputStamp();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (sender.getSentCount() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(20);
+        sender.stop();
+
+        LatencyStats stats = sender.getLatencyStats();
+        int mouse = LatencyStats.TYPE_MOUSE;
+        // One input event, two reports
+        assertEquals(1, stats.snapshot(mouse, LatencyStats.STAGE_INPUT).getCount());
+        assertEquals(2, stats.snapshot(mouse, LatencyStats.STAGE_HANDLER).getCount());
+        long sends = sender.getSentCount();
+        assertEquals(sends, sender.getSentCount(HidReports.MOUSE_REPORT_ID));
+        assertEquals(sends, stats.snapshot(mouse, LatencyStats.STAGE_QUEUE).getCount());
+        assertEquals(sends, stats.snapshot(mouse, LatencyStats.STAGE_SEND).getCount());
+        assertEquals(sends, stats.snapshot(mouse, LatencyStats.STAGE_TOTAL).getCount());
+        assertTrue(stats.snapshot(mouse, LatencyStats.STAGE_INPUT).getMaxMicros() >= 4_000);
+        assertTrue(stats.snapshot(mouse, LatencyStats.STAGE_TOTAL).getMaxMicros() >= 4_000);
+        assertEquals(0, stats.snapshot(LatencyStats.TYPE_KEYBOARD, LatencyStats.STAGE_SEND).getCount());
+
+        stats.reset();
+        assertEquals(0, stats.snapshot(mouse, LatencyStats.STAGE_TOTAL).getCount());
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        // Buckets are 1/8 of a power of two wide
+        assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 8 + 1);
+    }
+}
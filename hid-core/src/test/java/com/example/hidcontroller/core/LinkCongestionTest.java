@@ -0,0 +1,60 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class LinkCongestionTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void refusalsBackOffAndSuccessesClear() {
+        LinkCongestion congestion = new LinkCongestion();
+        List<Integer> states = new ArrayList<>();
+        congestion.setListener(states::add);
+
+        congestion.onSendResult(true, 0);
+        assertEquals(0, congestion.getRetryDelayNanos());
+        assertFalse(congestion.isCongested());
+
+        long[] expected = {2 * MS, 4 * MS, 8 * MS, 16 * MS, 32 * MS, 64 * MS, 64 * MS};
+        for (int i = 0; i < expected.length; i++) {
+            congestion.onSendResult(false, i * MS);
+            assertEquals(expected[i], congestion.getRetryDelayNanos());
+        }
+        assertEquals(LinkCongestion.STATE_CONGESTED, congestion.getState());
+
+        // One success resets the backoff but does not clear the state yet
+        congestion.onSendResult(true, 10 * MS);
+        assertEquals(0, congestion.getRetryDelayNanos());
+        assertTrue(congestion.isCongested());
+        for (int i = 0; i < 7; i++) {
+            congestion.onSendResult(true, 11 * MS);
+        }
+        assertEquals(LinkCongestion.STATE_CLEAR, congestion.getState());
+
+        assertEquals(2, states.size());
+        assertEquals(7, congestion.getRefusedCount());
+        assertEquals(1, congestion.getCongestionCount());
+    }
+
+    @Test
+    public void refusedForLongStalls() {
+        LinkCongestion congestion = new LinkCongestion();
+        congestion.onSendResult(false, 0);
+        congestion.onSendResult(false, LinkCongestion.STALL_NANOS - 1);
+        assertEquals(LinkCongestion.STATE_CONGESTED, congestion.getState());
+        congestion.onSendResult(false, LinkCongestion.STALL_NANOS);
+        assertEquals(LinkCongestion.STATE_STALLED, congestion.getState());
+
+        congestion.reset();
+        assertEquals(LinkCongestion.STATE_CLEAR, congestion.getState());
+        assertEquals(0, congestion.getRetryDelayNanos());
+    }
+}
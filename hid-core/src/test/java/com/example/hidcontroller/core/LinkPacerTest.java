@@ -0,0 +1,50 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LinkPacerTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void fixedTickUntilAuto() {
+        LinkPacer pacer = new LinkPacer(8 * MS);
+        feed(pacer, 10 * MS, 100);
+        assertEquals(8 * MS, pacer.getTickNanos());
+        pacer.setAuto(true);
+        assertEquals(LinkPacer.TICK_15_MS, pacer.getTickNanos());
+        pacer.setFixedTickNanos(0);
+        pacer.setAuto(false);
+        assertEquals(0, pacer.getTickNanos());
+    }
+
+    @Test
+    public void backsOffAtOnceAndRecoversSlowly() {
+        LinkPacer pacer = new LinkPacer(0);
+        pacer.setAuto(true);
+        feed(pacer, MS / 2, 64);
+        assertEquals(LinkPacer.TICK_7_5_MS, pacer.getTickNanos());
+
+        // Sends slow down: the first window after the smoothed time settles moves the tick up
+        feed(pacer, 5 * MS, 64);
+        assertEquals(LinkPacer.TICK_11_25_MS, pacer.getTickNanos());
+        feed(pacer, 9 * MS, 64);
+        assertEquals(LinkPacer.TICK_15_MS, pacer.getTickNanos());
+
+        // Fast again: one window is not enough to step down
+        feed(pacer, MS / 2, 40);
+        assertEquals(LinkPacer.TICK_15_MS, pacer.getTickNanos());
+        feed(pacer, MS / 2, 64);
+        assertEquals(LinkPacer.TICK_7_5_MS, pacer.getTickNanos());
+        assertEquals(9 * MS / 1000, pacer.getMaxCompletionMicros());
+    }
+
+    private static void feed(LinkPacer pacer, long durationNanos, int count) {
+        for (int i = 0; i < count; i++) {
+            pacer.onSendCompleted(durationNanos);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LoopbackTransportTest {
+    private static final String HOST = "00:11:22:33:44:55";
+
+    @Test
+    public void reportsOnlyFlowWhileConnected() {
+        LoopbackTransport transport = new LoopbackTransport(16);
+        int[] lastState = {-1};
+        transport.setCallback(new HidTransport.Callback() {
+            @Override
+            public void onRegistrationChanged(boolean registered) {}
+
+            @Override
+            public void onConnectionStateChanged(String address, int state) {
+                lastState[0] = state;
+            }
+
+            @Override
+            public void onGetReport(int type, int reportId, int bufferSize) {}
+        });
+
+        byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+        assertFalse(transport.connect(HOST));
+        assertFalse(transport.sendReport(HidReports.KEYBOARD_REPORT_ID, report));
+
+        assertTrue(transport.register(new byte[0]));
+        assertTrue(transport.connect(HOST));
+        assertEquals(HidTransport.STATE_CONNECTED, lastState[0]);
+        assertTrue(transport.sendReport(HidReports.KEYBOARD_REPORT_ID, report));
+
+        transport.failNextSends(1);
+        assertFalse(transport.sendReport(HidReports.KEYBOARD_REPORT_ID, report));
+        assertEquals(1, transport.getReportCount());
+
+        assertTrue(transport.disconnect(HOST));
+        assertEquals(HidTransport.STATE_DISCONNECTED, lastState[0]);
+        assertFalse(transport.sendReport(HidReports.KEYBOARD_REPORT_ID, report));
+    }
+
+    @Test
+    public void senderDeliversKeyboardReportsInOrder() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(4096);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        // Unpaced: 1000 keyboard reports would otherwise take 1000 ticks
+        sender.setTickNanos(0);
+        sender.start();
+
+        byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            HidReports.writeKeyboard(report, 0x00, 0x04 + (i % 26));
+            while (!sender.enqueue(HidReports.KEYBOARD_REPORT_ID, report)) {
+                Thread.yield();
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (transport.getReportCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        sender.stop();
+
+        assertEquals(count, transport.getRecordedCount());
+        for (int i = 0; i < count; i++) {
+            assertEquals(HidReports.KEYBOARD_REPORT_ID, transport.getReportId(i));
+            assertEquals(0x04 + (i % 26), transport.getByte(i, 2));
+            if (i > 0) {
+                assertTrue(transport.getTimestampNanos(i) >= transport.getTimestampNanos(i - 1));
+            }
+        }
+        assertEquals(count, sender.getSentCount());
+    }
+
+    @Test
+    public void tapsAndClicksAreReleasedOnTheSenderThread() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(64);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.start();
+
+        sender.keyTap(0x04, 0);
+        sender.keyTap(0x05, 0);
+        sender.mouseClick(0x01);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (transport.getReportCount() < 6 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        sender.stop();
+
+        assertEquals(6, transport.getRecordedCount());
+        int keyboardUps = 0;
+        int mouseUps = 0;
+        for (int i = 0; i < transport.getRecordedCount(); i++) {
+            if (transport.getReportId(i) == HidReports.KEYBOARD_REPORT_ID) {
+                if (transport.getByte(i, 2) == 0) keyboardUps++;
+            } else if (transport.getByte(i, 0) == 0) {
+                mouseUps++;
+            }
+        }
+        assertEquals(1, keyboardUps);
+        assertEquals(1, mouseUps);
+        assertTrue(sender.getTimerWheel().getFiredCount() >= 3);
+    }
+
+    @Test
+    public void autoTickKeepsLatencyFlatOnASlowLink() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(4096);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        // Each sendReport() blocks for 5 ms, like a controller with a full queue
+        transport.setSendDelayNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.setAutoTick(true);
+        sender.start();
+
+        // A 1.5 s swipe at 1 kHz, far more than the link can carry
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        HidReports.writeMouse(report, 0, 1, 0, 0);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+        int moves = 0;
+        while (System.nanoTime() < end) {
+            if (sender.enqueue(HidReports.MOUSE_REPORT_ID, report)) moves++;
+            Thread.sleep(1);
+        }
+        Thread.sleep(100);
+        sender.stop();
+
+        int dx = 0;
+        for (int i = 0; i < transport.getRecordedCount(); i++) {
+            dx += (byte) transport.getByte(i, 1);
+        }
+        assertEquals(moves, dx);
+        assertEquals(0, sender.getRejectedCount());
+        assertEquals(LinkPacer.TICK_11_25_MS, sender.getTickNanos());
+        // One tick of merging plus one slow send, never a growing backlog
+        assertTrue("max latency " + sender.getMaxLatencyNanos() + "ns",
+                sender.getMaxLatencyNanos() < TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    public void clickJumpsAheadOfPendingMotion() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(64);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.setTickNanos(LinkPacer.TICK_15_MS);
+        sender.start();
+
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        HidReports.writeMouse(report, 0, 1, 0, 0);
+        sender.enqueue(HidReports.MOUSE_REPORT_ID, report);
+        Thread.sleep(2);
+        // Held back by the tick...
+        for (int i = 0; i < 9; i++) {
+            sender.enqueue(HidReports.MOUSE_REPORT_ID, report);
+        }
+        // ...until the click needs them out of the way
+        long clickedAt = System.nanoTime();
+        sender.mouseClick(0x01);
+        Thread.sleep(50);
+        sender.stop();
+
+        int dx = 0;
+        int down = -1;
+        for (int i = 0; i < transport.getRecordedCount(); i++) {
+            if (down < 0 && transport.getByte(i, 0) == 0x01) {
+                down = i;
+                assertEquals(10, dx);
+            }
+            dx += (byte) transport.getByte(i, 1);
+        }
+        assertTrue(down > 0);
+        long wait = transport.getTimestampNanos(down) - clickedAt;
+        assertTrue("click waited " + wait + "ns", wait < TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(0x00, transport.getByte(transport.getRecordedCount() - 1, 0));
+    }
+
+    @Test
+    public void refusedMotionIsMergedIntoTheRetry() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(256);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.setTickNanos(TimeUnit.MILLISECONDS.toNanos(2));
+        sender.start();
+
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        HidReports.writeMouse(report, 0, 1, -1, 0);
+        transport.failNextSends(5);
+        for (int i = 0; i < 40; i++) {
+            sender.enqueue(HidReports.MOUSE_REPORT_ID, report);
+            Thread.sleep(1);
+        }
+        Thread.sleep(50);
+        sender.stop();
+
+        int dx = 0;
+        int dy = 0;
+        for (int i = 0; i < transport.getRecordedCount(); i++) {
+            dx += (byte) transport.getByte(i, 1);
+            dy += (byte) transport.getByte(i, 2);
+        }
+        assertEquals(40, dx);
+        assertEquals(-40, dy);
+        assertEquals(5, sender.getFailedCount());
+        assertEquals(0, sender.getDroppedMotionCount());
+        assertTrue(sender.getCoalescedCount() > 0);
+    }
+
+    @Test
+    public void refusedKeysAndClicksAreRetried() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(64);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        transport.failNextSends(4);
+        sender.start();
+
+        sender.keyTap(0x04, 0);
+        sender.mouseClick(0x01);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (transport.getReportCount() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        sender.stop();
+
+        // Nothing lost, nothing sent twice, each device in order
+        assertEquals(4, transport.getRecordedCount());
+        int[] keys = new int[2];
+        int[] buttons = new int[2];
+        int k = 0;
+        int b = 0;
+        for (int i = 0; i < transport.getRecordedCount(); i++) {
+            if (transport.getReportId(i) == HidReports.KEYBOARD_REPORT_ID) {
+                keys[k++] = transport.getByte(i, 2);
+            } else {
+                buttons[b++] = transport.getByte(i, 0);
+            }
+        }
+        assertEquals(0x04, keys[0]);
+        assertEquals(0x00, keys[1]);
+        assertEquals(0x01, buttons[0]);
+        assertEquals(0x00, buttons[1]);
+        assertEquals(4, sender.getFailedCount());
+        assertEquals(4, sender.getRetriedCount());
+        assertEquals(4, sender.getCongestion().getRefusedCount());
+    }
+
+    @Test
+    public void fullControlLaneLetsEverythingUp() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(64);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        ReportSender sender = new ReportSender(transport, 8, Thread::new);
+
+        // Sender not running yet: a drag and held keys fill the control lane...
+        byte[] mouse = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        HidReports.writeMouse(mouse, 0x01, 0, 0, 0);
+        assertTrue(sender.enqueue(HidReports.MOUSE_REPORT_ID, mouse));
+        int usage = 0x04;
+        while (sender.keyDown(usage, 0)) usage++;
+        // ...so the key releases are refused; after the overflow a button release is only
+        // motion, since the sender lets the buttons up anyway
+        for (int u = 0x04; u < usage; u++) {
+            assertFalse(sender.keyUp(u));
+        }
+        HidReports.writeMouse(mouse, 0x00, 0, 0, 0);
+        assertTrue(sender.enqueue(HidReports.MOUSE_REPORT_ID, mouse));
+        assertEquals(usage - 0x04 + 1, sender.getRejectedCount());
+
+        sender.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sender.getQueueDepth() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        int held = lastReport(transport, HidReports.MOUSE_REPORT_ID);
+
+        // The drag goes on after the overflow: its button is pressed again
+        HidReports.writeMouse(mouse, 0x01, 5, 0, 0);
+        assertTrue(sender.enqueue(HidReports.MOUSE_REPORT_ID, mouse));
+        Thread.sleep(50);
+        sender.stop();
+
+        int keyboard = lastReport(transport, HidReports.KEYBOARD_REPORT_ID);
+        for (int offset = 0; offset < HidReports.KEYBOARD_REPORT_LENGTH; offset++) {
+            assertEquals(0, transport.getByte(keyboard, offset));
+        }
+        assertEquals(0x00, transport.getByte(held, 0));
+        int drag = lastReport(transport, HidReports.MOUSE_REPORT_ID);
+        assertTrue(drag > held);
+        assertEquals(0x01, transport.getByte(drag, 0));
+        assertEquals(5, transport.getByte(drag, 1));
+    }
+
+    @Test
+    public void resetAfterDisconnectDropsRefusedButtonChange() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(64);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.start();
+
+        // The host goes away while a drag starts: the press is refused and retried,
+        // and the key press queued behind it waits
+        transport.disconnect(HOST);
+        byte[] mouse = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        HidReports.writeMouse(mouse, 0x01, 0, 0, 0);
+        assertTrue(sender.enqueue(HidReports.MOUSE_REPORT_ID, mouse));
+        assertTrue(sender.keyDown(0x04, 0));
+        Thread.sleep(30);
+        assertTrue(sender.getFailedCount() > 0);
+
+        sender.resetHostState();
+        Thread.sleep(30);
+        long failed = sender.getFailedCount();
+        Thread.sleep(100);
+        assertEquals("refused press still retried", failed, sender.getFailedCount());
+
+        // The next host only sees what is queued after the reset
+        transport.connect(HOST);
+        HidReports.writeMouse(mouse, 0x00, 3, 0, 0);
+        assertTrue(sender.enqueue(HidReports.MOUSE_REPORT_ID, mouse));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (transport.getReportCount() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        sender.stop();
+
+        assertEquals(1, transport.getRecordedCount());
+        assertEquals(HidReports.MOUSE_REPORT_ID, transport.getReportId(0));
+        assertEquals(0x00, transport.getByte(0, 0));
+        assertEquals(3, transport.getByte(0, 1));
+        assertEquals(0, sender.getQueueDepth());
+    }
+
+    private static int lastReport(LoopbackTransport transport, int reportId) {
+        for (int i = transport.getRecordedCount() - 1; i >= 0; i--) {
+            if (transport.getReportId(i) == reportId) return i;
+        }
+        return -1;
+    }
+}
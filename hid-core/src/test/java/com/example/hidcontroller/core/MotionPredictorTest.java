@@ -0,0 +1,94 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class MotionPredictorTest {
+    private static final int SAMPLE_MS = 4;
+    // Report delay on the link: two 7.5 ms connection intervals, rounded to samples
+    private static final int LINK_LATENCY_MS = 16;
+
+    @Test
+    public void predictionCutsPerceivedLagOnBackAndForthSwipes() {
+        // Horizon 0 sends the sample itself, as the touchpad did before prediction
+        double baselineLag = perceivedLagMillis(0);
+        double predictedLag = perceivedLagMillis(LINK_LATENCY_MS);
+        assertEquals(LINK_LATENCY_MS, baselineLag, 1.0);
+        assertTrue("lag " + baselineLag + " -> " + predictedLag + " ms", predictedLag < baselineLag / 2);
+    }
+
+    @Test
+    public void reversalSwitchesPredictionOffAndSettleEndsOnTheFinger() {
+        MotionPredictor predictor = new MotionPredictor(20);
+        predictor.reset(0f, 0f, 0L);
+        for (int i = 1; i <= 5; i++) {
+            predictor.update(i * 8f, 0f, i * SAMPLE_MS);
+        }
+        assertTrue(predictor.isPredicting());
+        assertEquals(2f, predictor.getVelocityX(), 0.01f);
+        assertEquals(40f + 2f * 20, predictor.getX(), 0.1f);
+
+        // Finger turns back: no prediction, the overshoot is taken back at once
+        assertFalse(predictor.update(34f, 0f, 6 * SAMPLE_MS));
+        assertEquals(34f, predictor.getX(), 0f);
+        assertEquals(1, predictor.getReversalCount());
+        predictor.update(28f, 0f, 7 * SAMPLE_MS);
+        assertTrue(predictor.update(22f, 0f, 8 * SAMPLE_MS));
+        assertTrue(predictor.getX() < 22f);
+
+        // Finger up mid-swipe: the cursor goes back to where the finger was
+        assertTrue(predictor.settle());
+        assertEquals(22f, predictor.getX(), 0f);
+        assertFalse(predictor.settle());
+
+        // A pause restarts the fit instead of extrapolating across it
+        assertFalse(predictor.update(30f, 0f, 8 * SAMPLE_MS + MotionPredictor.WINDOW_MS + 1));
+        assertEquals(30f, predictor.getX(), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void horizonIsBounded() {
+        new MotionPredictor(MotionPredictor.MAX_HORIZON_MS + 1);
+    }
+
+    /**
+     * Replay a finger moving back and forth (sensor noise included) and compare where it is with
+     * where the host shows the cursor {@link #LINK_LATENCY_MS} later; the mean gap over the mean
+     * speed is the lag a user sees, in ms. Overshoot past the turning points is checked too.
+     */
+    private static double perceivedLagMillis(int horizonMillis) {
+        Random random = new Random(5);
+        MotionPredictor predictor = new MotionPredictor(horizonMillis);
+        int samples = 2_000 / SAMPLE_MS;
+        float[] finger = new float[samples];
+        float[] sent = new float[samples];
+        float amplitude = 300f;
+        for (int i = 0; i < samples; i++) {
+            long t = (long) i * SAMPLE_MS;
+            finger[i] = amplitude * (float) Math.sin(2 * Math.PI * t / 800.0);
+            float sample = finger[i] + (float) (random.nextGaussian() * 0.3);
+            if (i == 0) {
+                predictor.reset(sample, 0f, t);
+            } else {
+                predictor.update(sample, 0f, t);
+            }
+            sent[i] = predictor.getX();
+        }
+        assertEquals("one switch-off per turn", 5, predictor.getReversalCount());
+
+        int delay = LINK_LATENCY_MS / SAMPLE_MS;
+        double gap = 0.0, speed = 0.0, overshoot = 0.0;
+        for (int i = delay + 1; i < samples; i++) {
+            gap += Math.abs(finger[i] - sent[i - delay]);
+            speed += Math.abs(finger[i] - finger[i - 1]) / SAMPLE_MS;
+            overshoot = Math.max(overshoot, Math.abs(sent[i]) - amplitude);
+        }
+        assertTrue("overshoot " + overshoot + " px", overshoot < 8.0);
+        return gap / speed;
+    }
+}
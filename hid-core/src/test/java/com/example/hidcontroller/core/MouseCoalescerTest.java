@@ -0,0 +1,190 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MouseCoalescerTest {
+
+    @Test
+    public void summedMotionIsPreserved() {
+        Random random = new Random(42);
+        MouseCoalescer coalescer = new MouseCoalescer();
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        long inX = 0, inY = 0, inWheel = 0;
+        long outX = 0, outY = 0, outWheel = 0;
+
+        for (int i = 0; i < 100_000; i++) {
+            int dx = random.nextInt(255) - 127;
+            int dy = random.nextInt(255) - 127;
+            int wheel = random.nextInt(7) - 3;
+            assertTrue(coalescer.merge(0, dx, dy, wheel, i));
+            inX += dx;
+            inY += dy;
+            inWheel += wheel;
+
+            // Emit on an irregular "tick" so several reports pile up in between
+            if (random.nextInt(5) == 0) {
+                coalescer.emit(report);
+                outX += report[1];
+                outY += report[2];
+                outWheel += report[3];
+            }
+        }
+        while (coalescer.hasPending()) {
+            coalescer.emit(report);
+            outX += report[1];
+            outY += report[2];
+            outWheel += report[3];
+        }
+
+        assertEquals(inX, outX);
+        assertEquals(inY, outY);
+        assertEquals(inWheel, outWheel);
+    }
+
+    @Test
+    public void overflowIsSplitAcrossReports() {
+        MouseCoalescer coalescer = new MouseCoalescer();
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        coalescer.merge(0, 100, -100, 0, 0);
+        coalescer.merge(0, 100, -100, 0, 0);
+
+        coalescer.emit(report);
+        assertEquals(127, report[1]);
+        assertEquals(-127, report[2]);
+        assertTrue(coalescer.hasPending());
+
+        coalescer.emit(report);
+        assertEquals(73, report[1]);
+        assertEquals(-73, report[2]);
+        assertFalse(coalescer.hasPending());
+    }
+
+    @Test
+    public void buttonChangeIsNotMergedAcross() {
+        MouseCoalescer coalescer = new MouseCoalescer();
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+
+        assertTrue(coalescer.merge(0x01, 0, 0, 0, 0));
+        assertTrue(coalescer.merge(0x01, 5, 5, 0, 0));
+        assertFalse(coalescer.merge(0x00, 0, 0, 0, 0));
+
+        coalescer.emit(report);
+        assertEquals(0x01, report[0]);
+        assertEquals(5, report[1]);
+
+        assertTrue(coalescer.merge(0x00, 0, 0, 0, 0));
+        assertTrue(coalescer.hasPending());
+        coalescer.emit(report);
+        assertEquals(0x00, report[0]);
+        assertFalse(coalescer.hasPending());
+    }
+
+    @Test
+    public void refusedReportIsRestored() {
+        MouseCoalescer coalescer = new MouseCoalescer();
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+
+        // Button down with motion, refused: both come back
+        coalescer.merge(0x01, 7, -3, 0, 10);
+        coalescer.emit(report);
+        coalescer.restore(report, 0x00, true, 10);
+        coalescer.merge(0x01, 1, 1, 0, 20);
+        coalescer.emit(report);
+        assertEquals(0x01, report[0]);
+        assertEquals(8, report[1]);
+        assertEquals(-2, report[2]);
+
+        // Button up refused with stale motion: the release is still pending, the motion is not
+        coalescer.merge(0x00, 4, 4, 0, 30);
+        coalescer.emit(report);
+        coalescer.restore(report, 0x01, false, 30);
+        assertTrue(coalescer.hasPending());
+        coalescer.emit(report);
+        assertEquals(0x00, report[0]);
+        assertEquals(0, report[1]);
+        assertFalse(coalescer.hasPending());
+
+        // Host gone with a press refused: reset forgets it, its motion and its age
+        coalescer.merge(0x01, 1, 0, 0, 40);
+        coalescer.emit(report);
+        coalescer.restore(report, 0x00, true, 40);
+        coalescer.reset();
+        assertFalse(coalescer.hasPending());
+        assertEquals(0x00, coalescer.getSentButtons());
+        assertEquals(0L, coalescer.getOldestEnqueueNanos());
+    }
+
+    @Test
+    public void senderSendsOneMouseReportPerInterval() throws Exception {
+        long interval = TimeUnit.MILLISECONDS.toNanos(5);
+        int inputs = 2_000;
+        // Stamped on entry to and exit from the sink, with no lock the checking thread could hold
+        long[] entries = new long[inputs];
+        long[] exits = new long[inputs];
+        int[] sentX = new int[inputs];
+        int[] sentY = new int[inputs];
+        AtomicInteger sent = new AtomicInteger();
+        ReportSender sender = new ReportSender((reportId, report) -> {
+            long now = System.nanoTime();
+            int i = sent.get();
+            if (i == inputs) return true;
+            entries[i] = now;
+            sentX[i] = report[1];
+            sentY[i] = report[2];
+            exits[i] = System.nanoTime();
+            sent.set(i + 1);
+            return true;
+        }, Thread::new);
+        sender.setTickNanos(interval);
+        long startedAt = System.nanoTime();
+        sender.start();
+
+        Random random = new Random(7);
+        byte[] report = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        long inX = 0, inY = 0;
+        for (int i = 0; i < inputs; i++) {
+            report[1] = (byte) (random.nextInt(255) - 127);
+            report[2] = (byte) (random.nextInt(255) - 127);
+            while (!sender.enqueue(HidReports.MOUSE_REPORT_ID, report)) {
+                Thread.yield();
+            }
+            inX += report[1];
+            inY += report[2];
+            if (i % 100 == 0) Thread.sleep(1);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        long outX, outY;
+        do {
+            Thread.sleep(10);
+            outX = 0;
+            outY = 0;
+            int count = sent.get();
+            for (int i = 0; i < count; i++) {
+                outX += sentX[i];
+                outY += sentY[i];
+            }
+        } while ((outX != inX || outY != inY) && System.nanoTime() < deadline);
+        sender.stop();
+
+        assertEquals(inX, outX);
+        assertEquals(inY, outY);
+        int count = sent.get();
+        assertTrue(count < inputs);
+        // The pacer times a report from just before its send, which is somewhere between the
+        // previous report's exit and its own entry: bounds that hold however the threads are scheduled
+        assertTrue(count + " reports", (count - 1) * interval <= entries[count - 1] - startedAt);
+        for (int i = 2; i < count; i++) {
+            long gap = entries[i] - exits[i - 2];
+            assertTrue("reports " + (i - 2) + " to " + i + " within " + gap + "ns", gap >= interval);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class OneEuroFilterTest {
+    // 240 Hz panel, sub-pixel sensor noise
+    private static final int SAMPLE_MS = 4;
+    private static final double NOISE_PX = 0.5;
+
+    @Test
+    public void restingFingerJitterIsSmoothedAway() {
+        Random random = new Random(3);
+        OneEuroFilter filter = new OneEuroFilter();
+        filter.reset(500f, 0L);
+        double rawSquares = 0.0, filteredSquares = 0.0;
+        int samples = 0;
+        for (long t = SAMPLE_MS; t <= 2_000; t += SAMPLE_MS) {
+            float raw = 500f + (float) (random.nextGaussian() * NOISE_PX);
+            float filtered = filter.filter(raw, t);
+            if (t < 500) continue;
+            rawSquares += (raw - 500.0) * (raw - 500.0);
+            filteredSquares += (filtered - 500.0) * (filtered - 500.0);
+            samples++;
+        }
+        double rawJitter = Math.sqrt(rawSquares / samples);
+        double filteredJitter = Math.sqrt(filteredSquares / samples);
+        assertTrue("jitter " + rawJitter + " -> " + filteredJitter, filteredJitter < rawJitter / 4);
+    }
+
+    @Test
+    public void addedLagShrinksWithSpeed() {
+        // Slow drag, normal swipe, fast flick
+        double slowLag = lagMillis(50f);
+        double swipeLag = lagMillis(500f);
+        double flickLag = lagMillis(2_000f);
+        assertTrue("slow " + slowLag + " ms, swipe " + swipeLag + " ms", swipeLag < slowLag);
+        assertTrue("swipe " + swipeLag + " ms, flick " + flickLag + " ms", flickLag < swipeLag);
+        // Less than a frame once the finger really moves
+        assertTrue("swipe lag " + swipeLag + " ms", swipeLag < 8.0);
+        assertTrue("flick lag " + flickLag + " ms", flickLag < 3.0);
+    }
+
+    @Test
+    public void sameTimestampSamplesAreHeld() {
+        OneEuroFilter filter = new OneEuroFilter(1f, 0f);
+        assertEquals(10f, filter.filter(10f, 100L), 0f);
+        float first = filter.filter(20f, 104L);
+        assertEquals(first, filter.filter(40f, 104L), 0f);
+        assertTrue(filter.filter(20f, 108L) > first);
+    }
+
+    /**
+     * Feed a noisy constant-speed trace and measure how far behind the filter runs, in ms.
+     */
+    private static double lagMillis(float pxPerSecond) {
+        Random random = new Random(11);
+        OneEuroFilter filter = new OneEuroFilter();
+        filter.reset(0f, 0L);
+        double behind = 0.0;
+        int samples = 0;
+        for (long t = SAMPLE_MS; t <= 1_000; t += SAMPLE_MS) {
+            float truth = pxPerSecond * t / 1000f;
+            float filtered = filter.filter(truth + (float) (random.nextGaussian() * NOISE_PX), t);
+            // Skip the start, where the filter is still picking up speed
+            if (t < 300) continue;
+            behind += truth - filtered;
+            samples++;
+        }
+        return behind / samples / pxPerSecond * 1000.0;
+    }
+}
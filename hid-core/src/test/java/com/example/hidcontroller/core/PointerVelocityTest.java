@@ -0,0 +1,42 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PointerVelocityTest {
+    @Test
+    public void speedDoesNotDependOnTheSampleRate() {
+        // The same 1 px/ms swipe seen by a 60 Hz and a 240 Hz panel
+        PointerVelocity slowPanel = new PointerVelocity();
+        PointerVelocity fastPanel = new PointerVelocity();
+        slowPanel.reset(0L);
+        fastPanel.reset(0L);
+        for (long t = 4; t <= 200; t += 4) {
+            fastPanel.update(4f, 0f, t);
+            if (t % 16 == 0) slowPanel.update(16f, 0f, t);
+        }
+        assertEquals(1f, slowPanel.getSpeed(), 0.01f);
+        assertEquals(1f, fastPanel.getSpeed(), 0.01f);
+
+        // And so does the gain: unlike the per-delta curve, splitting the motion changes nothing
+        AccelerationCurve curve = AccelerationCurve.forProfile(AccelerationCurve.PROFILE_ADAPTIVE);
+        assertEquals(curve.apply(16f, slowPanel.getSpeed()), 4 * curve.apply(4f, fastPanel.getSpeed()), 0.05f);
+    }
+
+    @Test
+    public void sameTimestampSamplesCountTowardsTheNextInterval() {
+        PointerVelocity velocity = new PointerVelocity();
+        velocity.reset(0L);
+        velocity.update(10f, 0f, 10L);
+        assertEquals(1f * 10 / (10 + PointerVelocity.SMOOTHING_MS), velocity.getSpeed(), 1e-4f);
+        // Two samples in the same millisecond: no division by zero, distance kept
+        float before = velocity.getSpeed();
+        assertEquals(before, velocity.update(3f, 4f, 10L), 0f);
+        float alpha = 10 / (10 + PointerVelocity.SMOOTHING_MS);
+        assertEquals(before + (0.5f - before) * alpha, velocity.update(0f, 0f, 20L), 1e-4f);
+
+        // A long rest restarts the average
+        assertEquals(0.01f, velocity.update(3f, 0f, 320L), 1e-4f);
+    }
+}
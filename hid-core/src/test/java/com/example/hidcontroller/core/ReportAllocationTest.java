@@ -0,0 +1,84 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state mouse motion and typing must not allocate on either the UI (producer)
+ * thread or the sender thread, with tracing on. Uses HotSpot's per-thread allocation counter.
+ */
+public class ReportAllocationTest {
+    private static final int WARMUP_EVENTS = 200_000;
+    private static final int MEASURED_EVENTS = 100_000;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private volatile long senderThreadId = -1L;
+    private volatile long sinkCalls = 0L;
+
+    @Test
+    public void mouseMoveAndTypingAreAllocationFree() throws Exception {
+        ReportSender sender = new ReportSender((reportId, report) -> {
+            senderThreadId = Thread.currentThread().getId();
+            sinkCalls++;
+            return true;
+        }, Thread::new);
+        sender.setTickNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        TraceRing trace = new TraceRing(1024);
+        sender.setTrace(trace);
+        sender.start();
+
+        byte[] mouseReport = new byte[HidReports.MOUSE_REPORT_LENGTH];
+        byte[] keyboardReport = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+
+        runEvents(sender, trace, mouseReport, keyboardReport, WARMUP_EVENTS);
+        awaitDrained(sender);
+
+        long producerThreadId = Thread.currentThread().getId();
+        long producerBefore = threads.getThreadAllocatedBytes(producerThreadId);
+        long senderBefore = threads.getThreadAllocatedBytes(senderThreadId);
+
+        runEvents(sender, trace, mouseReport, keyboardReport, MEASURED_EVENTS);
+        awaitDrained(sender);
+
+        long producerBytes = threads.getThreadAllocatedBytes(producerThreadId) - producerBefore;
+        long senderBytes = threads.getThreadAllocatedBytes(senderThreadId) - senderBefore;
+        sender.stop();
+
+        assertEquals("bytes allocated on the producer thread", 0L, producerBytes);
+        assertEquals("bytes allocated on the sender thread", 0L, senderBytes);
+    }
+
+    private static void runEvents(ReportSender sender, TraceRing trace, byte[] mouseReport, byte[] keyboardReport,
+                                  int count) {
+        for (int i = 0; i < count; i++) {
+            HidReports.writeMouse(mouseReport, 0x00, (i & 7) - 3, 3 - (i & 7), 0);
+            long now = System.nanoTime();
+            sender.setInputStamp(now - 1_000L, now);
+            trace.record(TraceRing.TOUCH_MOVE, 0, (i & 7) - 3, 3 - (i & 7));
+            while (!sender.enqueue(HidReports.MOUSE_REPORT_ID, mouseReport)) {
+                Thread.yield();
+            }
+            if ((i & 15) == 0) {
+                HidReports.writeKeyboard(keyboardReport, (i & 32) == 0 ? 0x00 : HIDKeyCode.MODIFIER_LEFT_SHIFT, 0x04 + (i & 15));
+                while (!sender.enqueue(HidReports.KEYBOARD_REPORT_ID, keyboardReport)) {
+                    Thread.yield();
+                }
+            }
+            sender.clearInputStamp();
+        }
+    }
+
+    private void awaitDrained(ReportSender sender) throws InterruptedException {
+        long calls;
+        do {
+            calls = sinkCalls;
+            Thread.sleep(20);
+        } while (sender.getQueueDepth() > 0 || calls != sinkCalls);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class SubpixelCarryTest {
+    @Test
+    public void randomSlowTracesAreReportedWithinOneCount() {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            PointerVelocity velocity = new PointerVelocity();
+            AccelerationCurve curve = AccelerationCurve.forProfile(random.nextInt(AccelerationCurve.PROFILE_COUNT));
+            float sensitivity = 0.5f + random.nextFloat() * 1.5f;
+            SubpixelCarry carry = new SubpixelCarry();
+            double scaledX = 0.0, scaledY = 0.0;
+            long sentX = 0L, sentY = 0L;
+            long time = 0L;
+            velocity.reset(time);
+
+            // A slow drag: mostly well under a count per event, drifting in direction
+            float dirX = random.nextFloat() * 2f - 1f;
+            float dirY = random.nextFloat() * 2f - 1f;
+            for (int event = 0; event < 2_000; event++) {
+                time += 4 + random.nextInt(13);
+                dirX += (random.nextFloat() - 0.5f) * 0.1f;
+                dirY += (random.nextFloat() - 0.5f) * 0.1f;
+                float rawX = dirX * random.nextFloat() * 0.6f;
+                float rawY = dirY * random.nextFloat() * 0.6f;
+                float speed = velocity.update(rawX, rawY, time);
+                float dx = curve.apply(rawX * sensitivity, speed);
+                float dy = curve.apply(rawY * sensitivity, speed);
+                scaledX += dx;
+                scaledY += dy;
+
+                carry.add(dx, dy);
+                if (carry.hasCounts()) {
+                    assertTrue(carry.emit());
+                    sentX += carry.getX();
+                    sentY += carry.getY();
+                }
+                assertEquals("seed " + seed + " event " + event, scaledX, sentX, 1.0);
+                assertEquals("seed " + seed + " event " + event, scaledY, sentY, 1.0);
+            }
+        }
+    }
+
+    @Test
+    public void fractionsAddUpAndLargeMovesAreSplit() {
+        SubpixelCarry carry = new SubpixelCarry();
+        // Thirds of a count: the old per-event truncation never moved the cursor
+        for (int i = 0; i < 2; i++) {
+            carry.add(0.34f, -0.34f);
+            assertFalse(carry.hasCounts());
+        }
+        carry.add(0.34f, -0.34f);
+        assertTrue(carry.emit());
+        assertEquals(1, carry.getX());
+        assertEquals(-1, carry.getY());
+        assertFalse(carry.hasCounts());
+
+        carry.add(300.5f, 0f);
+        assertTrue(carry.emit());
+        assertEquals(HidReports.MOUSE_DELTA_MAX, carry.getX());
+        assertEquals(0, carry.getY());
+        assertTrue(carry.emit());
+        assertEquals(HidReports.MOUSE_DELTA_MAX, carry.getX());
+        assertTrue(carry.emit());
+        assertEquals(300 - 2 * HidReports.MOUSE_DELTA_MAX, carry.getX());
+        assertFalse(carry.emit());
+
+        carry.add(0.9f, 0f);
+        carry.reset();
+        assertFalse(carry.hasCounts());
+        carry.add(0.2f, 0f);
+        assertFalse(carry.emit());
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TextTyperTest {
+    private static final String HOST = "00:11:22:33:44:55";
+    private static final String SAMPLE =
+            "server {\n\tlisten 8080;\n\troot \"/var/www\"; # C:\\path ~user@host!\n}\r\n"
+                    + "The Quick Brown Fox jumps over the lazy dog: 1234567890 -=[]',./ `_+{}|<>?\n"
+                    + "aa AA aA Aa ... !!! \u00e9 end";
+
+    @Test
+    public void typesTextExactlyOnLoopback() throws Exception {
+        LoopbackTransport transport = connectedLoopback(16384);
+        // Refuse every 25th report so retries are exercised
+        int[] sends = {0};
+        ReportSink flaky = (reportId, report) ->
+                ++sends[0] % 25 != 0 && transport.sendReport(reportId, report);
+
+        RecordingListener listener = new RecordingListener();
+        TextTyper typer = new TextTyper(SAMPLE, listener);
+        ReportSender sender = new ReportSender(flaky, Thread::new);
+        sender.start();
+        assertTrue(sender.type(typer));
+        assertTrue(listener.finished.await(10, TimeUnit.SECONDS));
+        sender.stop();
+
+        String expected = SAMPLE.replace("\r", "").replace("\u00e9", "");
+        assertEquals(TextTyper.STATE_COMPLETED, listener.state);
+        assertEquals(expected, decode(transport));
+        assertEquals(expected.length(), listener.typed);
+        assertEquals(1, listener.skipped);
+        // Last report lets every key up
+        assertAllUp(transport, transport.getRecordedCount() - 1);
+    }
+
+    @Test
+    public void typesSeveralHundredCharsPerSecond() throws Exception {
+        LoopbackTransport transport = connectedLoopback(4096);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 800) text.append("the quick brown fox jumps over the lazy dog ");
+
+        RecordingListener listener = new RecordingListener();
+        TextTyper typer = new TextTyper(text, listener);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.start();
+        sender.type(typer);
+        assertTrue(listener.finished.await(10, TimeUnit.SECONDS));
+        sender.stop();
+
+        assertEquals(text.toString(), decode(transport));
+        assertTrue("chars/sec " + listener.charsPerSecond, listener.charsPerSecond > 250f);
+    }
+
+    @Test
+    public void unpipelinedTypingMatchesPipelined() throws Exception {
+        LoopbackTransport transport = connectedLoopback(16384);
+        RecordingListener listener = new RecordingListener();
+        TextTyper typer = new TextTyper(SAMPLE, listener, 0L);
+        typer.setPipelined(false);
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.start();
+        sender.type(typer);
+        assertTrue(listener.finished.await(10, TimeUnit.SECONDS));
+        sender.stop();
+
+        String expected = SAMPLE.replace("\r", "").replace("\u00e9", "");
+        assertEquals(expected, decode(transport));
+        assertEquals(2 * expected.length(), transport.getRecordedCount());
+    }
+
+    @Test
+    public void keysPressedAroundTypingStayHeld() throws Exception {
+        int right = HIDKeyCode.getHIDCode("Right");
+        int left = HIDKeyCode.getHIDCode("Left");
+        LoopbackTransport transport = connectedLoopback(4096);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 200) text.append("the quick brown fox ");
+
+        RecordingListener listener = new RecordingListener();
+        ReportSender sender = new ReportSender(transport, Thread::new);
+        sender.start();
+        assertTrue(sender.keyDown(right, 0));
+        assertTrue(sender.type(new TextTyper(text, listener)));
+        Thread.sleep(50);
+        assertTrue(sender.keyTap(left, 0));
+        assertTrue(listener.finished.await(10, TimeUnit.SECONDS));
+        assertTrue(sender.keyUp(right));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!lastIsAllUp(transport) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        sender.stop();
+
+        // Arrow keys have no character: decode() writes them as '\0'
+        assertEquals(text.toString(), decode(transport).replace("\0", ""));
+        int last = transport.getRecordedCount() - 1;
+        assertAllUp(transport, last);
+        // Neither the typer's releases nor the tap let the held key up early
+        for (int i = 0; i < last; i++) {
+            assertTrue("held key missing from report " + i, holds(transport, i, right));
+        }
+        boolean tapped = false;
+        for (int i = 0; i < last; i++) tapped |= holds(transport, i, left);
+        assertTrue(tapped);
+    }
+
+    @Test
+    public void pipelinedRunOfDistinctKeysCostsOneReportPerChar() {
+        String run = "qwertyuiop";
+        LoopbackTransport transport = connectedLoopback(256);
+        TextTyper typer = new TextTyper(run, new RecordingListener(), 0L);
+        typeInline(typer, transport);
+
+        assertEquals(run, decode(transport));
+        assertEquals(run.length() + 1, transport.getRecordedCount());
+        // Each report holds exactly one key: the previous one is released in the same report
+        for (int i = 0; i < run.length(); i++) {
+            assertEquals(HIDKeyCode.getCharUsage(run.charAt(i)), transport.getByte(i, 2));
+            assertEquals(0, transport.getByte(i, 3));
+        }
+        assertAllUp(transport, run.length());
+    }
+
+    @Test
+    public void pipelinedRepeatsAndShiftChangesGetAReleaseInBetween() {
+        // ll, oo: same key; aA, Ab, 1!: Shift changes
+        String text = "hello moon aA Ab 1! ~~";
+        LoopbackTransport transport = connectedLoopback(256);
+        TextTyper typer = new TextTyper(text, new RecordingListener(), 0L);
+        typeInline(typer, transport);
+
+        assertEquals(text, decode(transport));
+        for (int i = 1; i < transport.getRecordedCount(); i++) {
+            int prevKey = transport.getByte(i - 1, 2);
+            int key = transport.getByte(i, 2);
+            if (prevKey == 0 || key == 0) continue;
+            assertTrue("same key pressed twice without a release at " + i, prevKey != key);
+            assertEquals("modifier change without a release at " + i,
+                    transport.getByte(i - 1, 0), transport.getByte(i, 0));
+        }
+    }
+
+    @Test
+    public void pacingBacksOffOnFailureAndSpeedsUpOnSuccess() {
+        RecordingListener listener = new RecordingListener();
+        TextTyper typer = new TextTyper("abcdefgh", listener);
+        typer.setPipelined(false);
+        byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+        long now = 1_000L;
+
+        assertTrue(typer.writeNext(report, now));
+        assertEquals(0x04, report[2]);
+        typer.onSendResult(true, now);
+        long gap = typer.getNextDueNanos() - now;
+        assertTrue(gap < TextTyper.INITIAL_INTERVAL_NANOS);
+
+        // Refused: same report again, after twice the gap
+        now = typer.getNextDueNanos();
+        assertTrue(typer.writeNext(report, now));
+        assertEquals(0x00, report[2]);
+        typer.onSendResult(false, now);
+        assertEquals(2 * gap, typer.getNextDueNanos() - now);
+        assertTrue(typer.writeNext(report, typer.getNextDueNanos()));
+        assertEquals(0x00, report[2]);
+
+        now = typer.getNextDueNanos();
+        typer.onSendResult(true, now);
+        assertTrue(typer.getNextDueNanos() - now < 2 * gap);
+        assertTrue(typer.writeNext(report, now));
+        assertEquals(0x05, report[2]);
+        assertEquals(1, typer.getTypedCount());
+    }
+
+    @Test
+    public void cancelReleasesHeldKey() {
+        RecordingListener listener = new RecordingListener();
+        TextTyper typer = new TextTyper("Hello", listener);
+        byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+
+        assertTrue(typer.writeNext(report, 1L));
+        assertEquals(HIDKeyCode.MODIFIER_LEFT_SHIFT, report[0]);
+        typer.onSendResult(true, 2L);
+        typer.cancel();
+
+        assertTrue(typer.writeNext(report, 3L));
+        assertEquals(0, report[0]);
+        assertEquals(0, report[2]);
+        typer.onSendResult(true, 4L);
+        assertFalse(typer.writeNext(report, 5L));
+        assertEquals(TextTyper.STATE_CANCELLED, listener.state);
+        assertEquals(1, listener.typed);
+    }
+
+    @Test
+    public void givesUpWhenTheLinkStaysDown() {
+        RecordingListener listener = new RecordingListener();
+        TextTyper typer = new TextTyper("ab", listener);
+        byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+        long now = 1L;
+
+        // Refuse the press of 'a' until the typer gives up
+        for (int i = 0; i < TextTyper.MAX_CONSECUTIVE_FAILURES; i++) {
+            assertTrue(typer.writeNext(report, now));
+            typer.onSendResult(false, now);
+            now = typer.getNextDueNanos();
+        }
+        assertTrue(typer.getNextDueNanos() - now <= TextTyper.MAX_INTERVAL_NANOS);
+
+        // One last all-up attempt, then done
+        assertTrue(typer.writeNext(report, now));
+        assertEquals(0, report[2]);
+        typer.onSendResult(false, now);
+        assertTrue(typer.isFinished());
+        assertEquals(TextTyper.STATE_FAILED, listener.state);
+    }
+
+    /**
+     * Drive a typer on the calling thread, no pacing waits.
+     */
+    static void typeInline(TextTyper typer, LoopbackTransport transport) {
+        byte[] report = new byte[HidReports.KEYBOARD_REPORT_LENGTH];
+        long now = 1L;
+        while (typer.writeNext(report, now)) {
+            typer.onSendResult(transport.sendReport(HidReports.KEYBOARD_REPORT_ID, report), now);
+            now = typer.getNextDueNanos();
+        }
+    }
+
+    static LoopbackTransport connectedLoopback(int capacity) {
+        LoopbackTransport transport = new LoopbackTransport(capacity);
+        transport.register(new byte[0]);
+        transport.connect(HOST);
+        return transport;
+    }
+
+    /**
+     * Host-side view: a character is typed when its usage appears in a report.
+     */
+    static String decode(LoopbackTransport transport) {
+        char[][] chars = new char[256][2];
+        for (char c = 0; c < 128; c++) {
+            int usage = HIDKeyCode.getCharUsage(c);
+            if (usage == HIDKeyCode.KEY_NONE) continue;
+            int shifted = HIDKeyCode.getCharModifiers(c) != 0 ? 1 : 0;
+            chars[usage][shifted] = c;
+        }
+
+        StringBuilder out = new StringBuilder();
+        int[] held = new int[0];
+        for (int i = 0; i < transport.getRecordedCount(); i++) {
+            assertEquals(HidReports.KEYBOARD_REPORT_ID, transport.getReportId(i));
+            int shifted = (transport.getByte(i, 0) & HIDKeyCode.MODIFIER_LEFT_SHIFT) != 0 ? 1 : 0;
+            int[] now = new int[HidReports.KEYBOARD_MAX_KEYS];
+            for (int k = 0; k < now.length; k++) {
+                int usage = transport.getByte(i, 2 + k);
+                now[k] = usage;
+                if (usage != 0 && !contains(held, usage)) out.append(chars[usage][shifted]);
+            }
+            held = now;
+        }
+        return out.toString();
+    }
+
+    static void assertAllUp(LoopbackTransport transport, int index) {
+        for (int offset = 0; offset < HidReports.KEYBOARD_REPORT_LENGTH; offset++) {
+            assertEquals(0, transport.getByte(index, offset));
+        }
+    }
+
+    private static boolean holds(LoopbackTransport transport, int index, int usage) {
+        for (int k = 0; k < HidReports.KEYBOARD_MAX_KEYS; k++) {
+            if (transport.getByte(index, 2 + k) == usage) return true;
+        }
+        return false;
+    }
+
+    private static boolean lastIsAllUp(LoopbackTransport transport) {
+        int last = transport.getRecordedCount() - 1;
+        for (int offset = 0; offset < HidReports.KEYBOARD_REPORT_LENGTH; offset++) {
+            if (transport.getByte(last, offset) != 0) return false;
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) return true;
+        }
+        return false;
+    }
+
+    static final class RecordingListener implements TextTyper.Listener {
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile int typed;
+        volatile int skipped;
+        volatile int state = -1;
+        volatile float charsPerSecond;
+
+        @Override
+        public void onProgress(int typed, int total, float charsPerSecond) {
+            this.charsPerSecond = charsPerSecond;
+        }
+
+        @Override
+        public void onFinished(int typed, int skipped, int state) {
+            this.typed = typed;
+            this.skipped = skipped;
+            this.state = state;
+            finished.countDown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class TimerWheelTest {
+    private static final long TICK = TimerWheel.DEFAULT_TICK_NANOS;
+
+    @Test
+    public void firesOnTimeAcrossTurns() {
+        TimerWheel wheel = new TimerWheel(TICK, 64);
+        List<Long> fired = new ArrayList<>();
+        Random random = new Random(7);
+        long start = 1_000_000_000L;
+        wheel.advance(start);
+
+        // Deadlines spread over several turns of the wheel
+        for (int i = 0; i < 500; i++) {
+            long deadline = start + (long) random.nextInt(2000) * TICK / 3;
+            TimerWheel.Timer[] self = new TimerWheel.Timer[1];
+            self[0] = new TimerWheel.Timer(() -> fired.add(self[0].getDeadlineNanos()));
+            wheel.schedule(self[0], deadline);
+        }
+
+        long now = start;
+        while (wheel.size() > 0) {
+            now += TICK / 2;
+            int before = fired.size();
+            wheel.advance(now);
+            for (int i = before; i < fired.size(); i++) {
+                // Never early, and at most one step late
+                assertTrue(fired.get(i) <= now);
+                assertTrue(now - fired.get(i) < TICK / 2);
+            }
+        }
+        assertEquals(500, fired.size());
+        assertEquals(500, wheel.getFiredCount());
+    }
+
+    @Test
+    public void cancelAndRescheduleAreHonoured() {
+        TimerWheel wheel = new TimerWheel();
+        int[] runs = new int[2];
+        TimerWheel.Timer a = new TimerWheel.Timer(() -> runs[0]++);
+        TimerWheel.Timer b = new TimerWheel.Timer(() -> runs[1]++);
+        long now = 5_000L;
+        wheel.advance(now);
+
+        wheel.schedule(a, now + TimeUnit.MILLISECONDS.toNanos(1));
+        wheel.schedule(b, now + TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(wheel.cancel(a));
+        assertFalse(wheel.cancel(a));
+        // Moving b later means it must not fire at the old deadline
+        wheel.schedule(b, now + TimeUnit.MILLISECONDS.toNanos(3));
+        assertEquals(1, wheel.size());
+
+        wheel.advance(now + TimeUnit.MILLISECONDS.toNanos(2));
+        assertEquals(0, runs[0]);
+        assertEquals(0, runs[1]);
+        assertEquals(now + TimeUnit.MILLISECONDS.toNanos(3), wheel.nextDeadlineNanos());
+
+        wheel.advance(now + TimeUnit.MILLISECONDS.toNanos(3));
+        assertEquals(1, runs[1]);
+        assertEquals(Long.MAX_VALUE, wheel.nextDeadlineNanos());
+        assertEquals(1, wheel.getCancelledCount());
+    }
+
+    @Test
+    public void repeatingTimerAndLateFiringStats() {
+        TimerWheel wheel = new TimerWheel();
+        long period = TimeUnit.MILLISECONDS.toNanos(2);
+        long[] now = {0L};
+        int[] runs = {0};
+        TimerWheel.Timer[] timer = new TimerWheel.Timer[1];
+        timer[0] = new TimerWheel.Timer(() -> {
+            runs[0]++;
+            wheel.schedule(timer[0], timer[0].getDeadlineNanos() + period);
+        });
+        wheel.advance(now[0]);
+        wheel.schedule(timer[0], period);
+
+        // Advance in 300 us steps: each firing is up to 300 us late
+        for (now[0] = 0L; now[0] <= TimeUnit.MILLISECONDS.toNanos(101); now[0] += TimeUnit.MICROSECONDS.toNanos(300)) {
+            wheel.advance(now[0]);
+        }
+        assertEquals(50, runs[0]);
+        assertTrue(wheel.getMaxLateMicros() < 300);
+        assertTrue(wheel.getMeanLateMicros() <= wheel.getMaxLateMicros());
+    }
+
+    @Test
+    public void longIdleFiresEverythingDue() {
+        TimerWheel wheel = new TimerWheel(TICK, 16);
+        int[] runs = {0};
+        wheel.advance(0L);
+        for (int i = 0; i < 10; i++) {
+            wheel.schedule(new TimerWheel.Timer(() -> runs[0]++), (i + 1) * TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        wheel.advance(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(10, runs[0]);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class TouchProcessorTest {
+    private static final long SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+
+    private final Recorder out = new Recorder();
+    private final TouchProcessor touch = new TouchProcessor(out);
+    private long now = 0L;
+
+    @Test
+    public void tapClicksAndSwipeMovesWithoutClicking() {
+        pad(TouchProcessor.ACTION_DOWN, 100f, 100f);
+        pad(TouchProcessor.ACTION_MOVE, 100.2f, 99.9f);
+        pad(TouchProcessor.ACTION_UP, 100.2f, 99.9f);
+        assertEquals(List.of("click 1"), out.events);
+
+        out.events.clear();
+        pad(TouchProcessor.ACTION_DOWN, 100f, 100f);
+        for (int i = 1; i <= 30; i++) {
+            pad(TouchProcessor.ACTION_MOVE, 100f + 8f * i, 100f);
+        }
+        pad(TouchProcessor.ACTION_UP, 340f, 100f);
+        assertTrue(out.events.size() > 1);
+        for (String event : out.events) {
+            assertTrue(event, event.startsWith("move 0 "));
+        }
+        assertTrue(out.movedX > 200);
+        assertEquals(0, out.movedY);
+    }
+
+    @Test
+    public void holdThenMoveDragsAndOtherPointersAreIgnored() {
+        pad(TouchProcessor.ACTION_DOWN, 50f, 50f);
+        while (now < TimeUnit.MILLISECONDS.toNanos(TouchProcessor.DRAG_START_MS)) {
+            pad(TouchProcessor.ACTION_MOVE, 50.1f, 50f);
+        }
+        assertFalse(touch.isDragging());
+        pad(TouchProcessor.ACTION_MOVE, 50f, 50f);
+        assertTrue(touch.isDragging());
+        assertEquals(List.of("buttons 1"), out.events);
+
+        // A second finger on the pad does not move the pointer
+        assertFalse(touch.onPadTouch(1, TouchProcessor.ACTION_MOVE, 500f, 500f, now));
+        for (int i = 1; i <= 20; i++) {
+            pad(TouchProcessor.ACTION_MOVE, 50f, 50f + 6f * i);
+        }
+        pad(TouchProcessor.ACTION_UP, 50f, 170f);
+        assertEquals("buttons 0", out.events.get(out.events.size() - 1));
+        for (String event : out.events.subList(1, out.events.size() - 1)) {
+            assertTrue(event, event.startsWith("move 1 0 "));
+        }
+        assertFalse(touch.isDragging());
+    }
+
+    @Test
+    public void dragEndsWhenTheFirstFingerLiftsFirst() {
+        startDrag();
+        // Second finger down, first finger up, then the second finger up
+        assertFalse(touch.onPadTouch(1, TouchProcessor.ACTION_POINTER_DOWN, 200f, 200f, now));
+        now += SAMPLE_NANOS;
+        assertTrue(touch.onPadTouch(0, TouchProcessor.ACTION_POINTER_UP, 50f, 50f, now));
+        assertFalse(touch.isDragging());
+        assertEquals(TouchProcessor.NO_POINTER, touch.getPadPointerId());
+        assertFalse(touch.onPadTouch(1, TouchProcessor.ACTION_MOVE, 260f, 200f, now));
+        now += SAMPLE_NANOS;
+        assertFalse(touch.onPadTouch(1, TouchProcessor.ACTION_UP, 260f, 200f, now));
+        assertEquals(List.of("buttons 1", "buttons 0"), out.events);
+
+        // An up the processor never saw still releases the button at the next down
+        out.events.clear();
+        startDrag();
+        pad(TouchProcessor.ACTION_DOWN, 80f, 80f);
+        assertEquals(List.of("buttons 1", "buttons 0"), out.events);
+        assertFalse(touch.isDragging());
+    }
+
+    @Test
+    public void stripScrollsPerMoveWithSensitivity() {
+        touch.setSensitivity(1f, 2f);
+        strip(TouchProcessor.ACTION_DOWN, 300f);
+        strip(TouchProcessor.ACTION_MOVE, 300.5f);
+        strip(TouchProcessor.ACTION_MOVE, 310f);
+        strip(TouchProcessor.ACTION_MOVE, 290f);
+        strip(TouchProcessor.ACTION_UP, 290f);
+        assertEquals(List.of("scroll 3", "scroll -3"), out.events);
+
+        // First finger lifts while a second stays: the strip stops following either
+        out.events.clear();
+        strip(TouchProcessor.ACTION_DOWN, 300f);
+        assertFalse(touch.onStripTouch(1, TouchProcessor.ACTION_POINTER_DOWN, 20f, 400f, now));
+        assertTrue(touch.onStripTouch(0, TouchProcessor.ACTION_POINTER_UP, 20f, 300f, now));
+        assertFalse(touch.onStripTouch(1, TouchProcessor.ACTION_MOVE, 20f, 450f, now));
+        assertFalse(touch.onStripTouch(1, TouchProcessor.ACTION_UP, 20f, 450f, now));
+        assertEquals(List.of(), out.events);
+    }
+
+    /**
+     * A million samples of scripted taps, swipes, drags and strip scrolls, under changing
+     * settings: every gesture must come out as itself, and no button may be left down.
+     */
+    @Test
+    public void millionSampleReplayKeepsEveryGesture() {
+        Random random = new Random(42);
+        int samples = 0;
+        int gestures = 0;
+        while (samples < 1_000_000) {
+            touch.setSensitivity(0.5f + random.nextFloat() * 1.5f, 0.5f + random.nextFloat() * 1.5f);
+            touch.setAccelerationCurve(AccelerationCurve.forProfile(random.nextInt(AccelerationCurve.PROFILE_COUNT)));
+            touch.setJitterFilter(random.nextBoolean() ? OneEuroFilter.DEFAULT_MIN_CUTOFF_HZ : 0f, OneEuroFilter.DEFAULT_BETA);
+            touch.setPredictionHorizonMillis(random.nextBoolean() ? 0 : random.nextInt(MotionPredictor.MAX_HORIZON_MS + 1));
+            out.reset();
+            now += TimeUnit.MILLISECONDS.toNanos(50 + random.nextInt(500));
+            float x = 100f + random.nextFloat() * 800f;
+            float y = 100f + random.nextFloat() * 800f;
+            String gesture = "gesture " + gestures++ + " at sample " + samples;
+
+            switch (random.nextInt(4)) {
+                case 0: {
+                    // Tap: a few jittery samples, up within the timeout
+                    pad(TouchProcessor.ACTION_DOWN, x, y);
+                    int moves = random.nextInt(20);
+                    for (int i = 0; i < moves; i++) {
+                        pad(TouchProcessor.ACTION_MOVE, jitter(random, x), jitter(random, y));
+                    }
+                    pad(TouchProcessor.ACTION_UP, x, y);
+                    samples += moves + 2;
+                    assertEquals(gesture, List.of("click 1"), out.events);
+                    break;
+                }
+                case 1: {
+                    // Swipe at 0.5-3 px/ms in any direction
+                    float angle = random.nextFloat() * 2f * (float) Math.PI;
+                    float speed = 0.5f + random.nextFloat() * 2.5f;
+                    float stepX = (float) Math.cos(angle) * speed * 4f;
+                    float stepY = (float) Math.sin(angle) * speed * 4f;
+                    pad(TouchProcessor.ACTION_DOWN, x, y);
+                    int moves = 20 + random.nextInt(200);
+                    for (int i = 0; i < moves; i++) {
+                        x += stepX;
+                        y += stepY;
+                        pad(TouchProcessor.ACTION_MOVE, jitter(random, x), jitter(random, y));
+                        // Now and then a second finger rests on the pad
+                        if (random.nextInt(16) == 0) touch.onPadTouch(1, TouchProcessor.ACTION_MOVE, 0f, 0f, now);
+                    }
+                    pad(TouchProcessor.ACTION_UP, x, y);
+                    samples += moves + 2;
+                    assertEquals(gesture, 0, out.clicks + out.buttonChanges);
+                    assertTrue(gesture, out.moves > 0);
+                    // Moved the way the finger did
+                    assertTrue(gesture, out.movedX * stepX + out.movedY * stepY > 0);
+                    break;
+                }
+                case 2: {
+                    // Hold past the drag delay, then drag
+                    pad(TouchProcessor.ACTION_DOWN, x, y);
+                    int moves = 0;
+                    long dragAt = now + TimeUnit.MILLISECONDS.toNanos(TouchProcessor.DRAG_START_MS);
+                    while (now <= dragAt) {
+                        pad(TouchProcessor.ACTION_MOVE, jitter(random, x), jitter(random, y));
+                        moves++;
+                    }
+                    int dragMoves = 20 + random.nextInt(100);
+                    for (int i = 0; i < dragMoves; i++) {
+                        x += 5f;
+                        pad(TouchProcessor.ACTION_MOVE, x, y);
+                    }
+                    pad(TouchProcessor.ACTION_UP, x, y);
+                    samples += moves + dragMoves + 2;
+                    assertEquals(gesture, "buttons 1", out.events.get(0));
+                    assertEquals(gesture, "buttons 0", out.events.get(out.events.size() - 1));
+                    assertEquals(gesture, 2, out.buttonChanges);
+                    assertEquals(gesture, out.moves, out.dragMoves);
+                    assertTrue(gesture, out.movedX > 0);
+                    break;
+                }
+                default: {
+                    // Scroll strip flick
+                    strip(TouchProcessor.ACTION_DOWN, y);
+                    int moves = 5 + random.nextInt(40);
+                    float step = random.nextBoolean() ? 3f : -3f;
+                    for (int i = 0; i < moves; i++) {
+                        y += step;
+                        strip(TouchProcessor.ACTION_MOVE, y);
+                    }
+                    strip(TouchProcessor.ACTION_UP, y);
+                    samples += moves + 2;
+                    assertEquals(gesture, moves, out.scrolls);
+                    assertEquals(gesture, 0, out.moves + out.clicks + out.buttonChanges);
+                    break;
+                }
+            }
+            assertFalse(gesture, touch.isDragging());
+        }
+    }
+
+    private void startDrag() {
+        pad(TouchProcessor.ACTION_DOWN, 50f, 50f);
+        while (!touch.isDragging()) {
+            pad(TouchProcessor.ACTION_MOVE, 50f, 50f);
+        }
+    }
+
+    private static float jitter(Random random, float position) {
+        return position + (random.nextFloat() - 0.5f) * 0.6f;
+    }
+
+    private void pad(int action, float x, float y) {
+        now += SAMPLE_NANOS;
+        assertTrue(touch.onPadTouch(0, action, x, y, now));
+    }
+
+    private void strip(int action, float y) {
+        now += SAMPLE_NANOS;
+        assertTrue(touch.onStripTouch(0, action, 20f, y, now));
+    }
+
+    private static final class Recorder implements TouchProcessor.Output {
+        final List<String> events = new ArrayList<>();
+        int moves, dragMoves, clicks, buttonChanges, scrolls;
+        long movedX, movedY;
+
+        @Override
+        public void move(int buttons, int dx, int dy) {
+            events.add("move " + buttons + " " + dx + " " + dy);
+            moves++;
+            if (buttons != 0) dragMoves++;
+            movedX += dx;
+            movedY += dy;
+        }
+
+        @Override
+        public void buttons(int buttons) {
+            events.add("buttons " + buttons);
+            buttonChanges++;
+        }
+
+        @Override
+        public void click(int button) {
+            events.add("click " + button);
+            clicks++;
+        }
+
+        @Override
+        public void scroll(int amount) {
+            events.add("scroll " + amount);
+            scrolls++;
+        }
+
+        void reset() {
+            events.clear();
+            moves = dragMoves = clicks = buttonChanges = scrolls = 0;
+            movedX = movedY = 0L;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.hidcontroller.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+public class TraceRingTest {
+    @Test
+    public void keepsTheNewestRecordsOldestFirst() throws IOException {
+        TraceRing trace = new TraceRing(6);
+        assertEquals(8, trace.capacity());
+        for (int i = 0; i < 20; i++) {
+            trace.record(1_000L + i, TraceRing.TOUCH_MOVE, 0x01, i, -i);
+        }
+        assertEquals(20, trace.getRecordedCount());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(8, trace.dump(out));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(TraceRing.DUMP_MAGIC, in.readInt());
+        assertEquals(TraceRing.DUMP_VERSION, in.readInt());
+        assertEquals(8, in.readInt());
+        for (int i = 12; i < 20; i++) {
+            assertEquals(1_000L + i, in.readLong());
+            assertEquals(TraceRing.TOUCH_MOVE, in.readByte());
+            assertEquals(0x01, in.readInt());
+            assertEquals(i, in.readInt());
+            assertEquals(-i, in.readInt());
+        }
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void concurrentWritersNeverProduceTornRecords() throws Exception {
+        TraceRing trace = new TraceRing(1024);
+        Thread[] writers = new Thread[3];
+        for (int w = 0; w < writers.length; w++) {
+            final int type = w + 1;
+            writers[w] = new Thread(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    // Fields derived from each other so a mixed-up record shows
+                    trace.record(i, type, i, i * type, -i * type);
+                }
+            });
+            writers[w].start();
+        }
+
+        // Dump while the ring is being overwritten
+        while (writers[0].isAlive() || writers[1].isAlive() || writers[2].isAlive()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            trace.dump(out);
+            check(out.toByteArray());
+        }
+        for (Thread writer : writers) writer.join();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1024, trace.dump(out));
+        check(out.toByteArray());
+        assertEquals(600_000, trace.getRecordedCount());
+    }
+
+    private static void check(byte[] dump) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(dump));
+        in.readInt();
+        in.readInt();
+        int count = in.readInt();
+        for (int r = 0; r < count; r++) {
+            long i = in.readLong();
+            int type = in.readByte();
+            assertEquals(i, in.readInt());
+            assertEquals(i * type, in.readInt());
+            assertEquals(-i * type, in.readInt());
+        }
+    }
+}
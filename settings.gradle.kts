@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "HID_Controller"
 include(":app")
+include(":hid-core")